@@ -147,6 +147,7 @@ public class BeaconNode {
   public void stop() {
     try {
       serviceController.stopAll(cliArgs);
+      this.validatorCoordinator.stop();
       this.p2pNetwork.close();
       this.fileProvider.close();
     } catch (IOException e) {
@@ -48,9 +48,9 @@ public class TimeSeriesAdapter implements DataAdapter<TimeSeriesRecord> {
     BeaconState finalizedState = this.input.getFinalizedState();
     int numValidators = headState.getValidator_registry().size();
 
-    Bytes32 lastJustifiedBlockRoot = HashTreeUtil.hash_tree_root(justifiedBlock.toBytes());
+    Bytes32 lastJustifiedBlockRoot = justifiedBlock.hashTreeRoot();
     Bytes32 lastJustifiedStateRoot = HashTreeUtil.hash_tree_root(justifiedState.toBytes());
-    Bytes32 lastFinalizedBlockRoot = HashTreeUtil.hash_tree_root(finalizedBlock.toBytes());
+    Bytes32 lastFinalizedBlockRoot = finalizedBlock.hashTreeRoot();
     Bytes32 lastFinalizedStateRoot = HashTreeUtil.hash_tree_root(finalizedState.toBytes());
 
     List<ValidatorJoin> validators = new ArrayList<>();
@@ -72,7 +72,7 @@ public class TimeSeriesAdapter implements DataAdapter<TimeSeriesRecord> {
         epoch,
         this.input.getHeadBlock().getState_root().toHexString(),
         this.input.getHeadBlock().getParent_root().toHexString(),
-        HashTreeUtil.hash_tree_root(this.input.getHeadBlock().toBytes()).toHexString(),
+        this.input.getHeadBlock().hashTreeRoot().toHexString(),
         lastJustifiedBlockRoot.toHexString(),
         lastJustifiedStateRoot.toHexString(),
         lastFinalizedBlockRoot.toHexString(),
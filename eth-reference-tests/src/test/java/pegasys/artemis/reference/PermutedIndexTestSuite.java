@@ -48,6 +48,15 @@ public class PermutedIndexTestSuite {
     assertEquals(indexExpected, indexActual);
   }
 
+  @ParameterizedTest(name = "{index}. Test shuffle {0}")
+  @MethodSource("readPermutedIndexTestVectors")
+  void testShuffle(int index, int listSize, int indexExpected, Bytes32 seed) {
+
+    int[] shuffling = BeaconStateUtil.shuffle(listSize, seed);
+
+    assertEquals(indexExpected, shuffling[index]);
+  }
+
   @MustBeClosed
   private static Stream<Arguments> findTests(String glob) throws IOException {
     return Resources.find(glob)
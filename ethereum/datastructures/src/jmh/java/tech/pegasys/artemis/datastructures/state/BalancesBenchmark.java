@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares boxed and primitive balance storage for reward application and state copies. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BalancesBenchmark {
+
+  private static final long BALANCE = 32_000_000_000L;
+  private static final long REWARD = 1_234L;
+
+  @Param({"16384", "131072", "1048576"})
+  public int validatorCount;
+
+  private List<Long> boxedBalances;
+  private LongList primitiveBalances;
+
+  @Setup(Level.Iteration)
+  public void setupBalances() {
+    boxedBalances = new ArrayList<>(validatorCount);
+    primitiveBalances = new LongList();
+    for (int i = 0; i < validatorCount; i++) {
+      boxedBalances.add(BALANCE);
+      primitiveBalances.addLong(BALANCE);
+    }
+  }
+
+  @Benchmark
+  public List<Long> applyRewardsBoxed() {
+    for (int i = 0; i < validatorCount; i++) {
+      boxedBalances.set(i, boxedBalances.get(i) + REWARD);
+    }
+    return boxedBalances;
+  }
+
+  @Benchmark
+  public LongList applyRewardsPrimitive() {
+    for (int i = 0; i < validatorCount; i++) {
+      primitiveBalances.increment(i, REWARD);
+    }
+    return primitiveBalances;
+  }
+
+  @Benchmark
+  public List<Long> copyAndRewardOneBoxed() {
+    List<Long> copy = new ArrayList<>(boxedBalances);
+    copy.set(0, copy.get(0) + REWARD);
+    return copy;
+  }
+
+  @Benchmark
+  public LongList copyAndRewardOnePrimitive() {
+    LongList copy = primitiveBalances.fork();
+    copy.increment(0, REWARD);
+    return copy;
+  }
+}
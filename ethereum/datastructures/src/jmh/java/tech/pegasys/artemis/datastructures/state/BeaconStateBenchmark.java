@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.tuweni.bytes.Bytes32;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.GenesisStateBuilder;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+/**
+ * Measures the state-wide operations every imported block pays for: copying the parent state,
+ * hashing the post-state and shuffling the validators into committees.
+ *
+ * <p>Genesis states are cached in the directory given by the artemis.jmh.genesisCache system
+ * property, since building one for hundreds of thousands of validators takes minutes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BeaconStateBenchmark {
+
+  @Param({"1000", "10000", "100000", "300000"})
+  public int validatorCount;
+
+  private BeaconStateWithCache state;
+  private Bytes32 seed;
+  private long epoch;
+
+  @Setup
+  public void setupGenesis() {
+    Security.addProvider(new BouncyCastleProvider());
+    Path cacheDirectory = Paths.get(System.getProperty("artemis.jmh.genesisCache", "build/jmh"));
+    state = GenesisStateBuilder.get_genesis_state(validatorCount, cacheDirectory);
+    epoch = BeaconStateUtil.get_current_epoch(state);
+    seed = BeaconStateUtil.generate_seed(state, epoch);
+  }
+
+  @Benchmark
+  public BeaconStateWithCache deepCopy() {
+    return BeaconStateWithCache.deepCopy(state);
+  }
+
+  @Benchmark
+  public Bytes32 hashTreeRoot() {
+    return HashTreeUtil.hash_tree_root(state.toBytes());
+  }
+
+  @Benchmark
+  public List<List<Integer>> getShuffling() {
+    // The uncached variant, i.e. what every new epoch pays once
+    return BeaconStateUtil.get_shuffling(seed, state.getValidator_registry(), epoch);
+  }
+
+  @Benchmark
+  public int[] shuffle() {
+    return BeaconStateUtil.shuffle(validatorCount, seed);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures;
+
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+/**
+ * Memoizes the SSZ encoding and hash tree root of a container once it has been sealed.
+ *
+ * <p>Until {@link #seal()} is called every lookup re-encodes the container, so objects that are
+ * still being assembled behave exactly as before. Every setter of the container must call {@link
+ * #invalidate()} before changing a field.
+ *
+ * <p>A container that is sealed as part of another sealed container is frozen instead, as its
+ * parent would not see the change: {@link #invalidate()} then throws, so its setters fail before
+ * changing anything. Objects without a cache of their own must not be modified once they are
+ * reachable from a sealed container.
+ */
+public final class EncodingCache {
+
+  private volatile boolean sealed;
+  private volatile boolean frozen;
+  private volatile Bytes encoding;
+  private volatile Bytes32 root;
+
+  public void seal() {
+    sealed = true;
+  }
+
+  public void freeze() {
+    sealed = true;
+    frozen = true;
+  }
+
+  public boolean isSealed() {
+    return sealed;
+  }
+
+  public void invalidate() {
+    if (frozen) {
+      throw new IllegalStateException("Cannot modify a part of a sealed container");
+    }
+    encoding = null;
+    root = null;
+  }
+
+  public Bytes encoding(Supplier<Bytes> encoder) {
+    if (!sealed) {
+      return encoder.get();
+    }
+    Bytes cached = encoding;
+    if (cached == null) {
+      cached = encoder.get();
+      encoding = cached;
+    }
+    return cached;
+  }
+
+  public Bytes32 root(Supplier<Bytes> encoder) {
+    Bytes32 cached = root;
+    if (cached == null) {
+      cached = HashTreeUtil.hash_tree_root(encoding(encoder));
+      if (sealed) {
+        root = cached;
+      }
+    }
+    return cached;
+  }
+}
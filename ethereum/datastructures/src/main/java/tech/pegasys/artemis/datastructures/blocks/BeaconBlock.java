@@ -23,6 +23,7 @@ import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.util.bls.BLSSignature;
 import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
 
@@ -41,6 +42,8 @@ public final class BeaconBlock {
   // Signature
   private BLSSignature signature;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public BeaconBlock(
       long slot,
       Bytes32 parent_root,
@@ -90,6 +93,24 @@ public final class BeaconBlock {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this block and its body as complete so that their encodings and roots are computed at
+   * most once. Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public BeaconBlock seal() {
+    body.freeze();
+    cache.seal();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeUInt64(slot);
@@ -137,6 +158,10 @@ public final class BeaconBlock {
   }
 
   public void setBody(BeaconBlockBody body) {
+    cache.invalidate();
+    if (cache.isSealed()) {
+      body.freeze();
+    }
     this.body = body;
   }
 
@@ -145,6 +170,7 @@ public final class BeaconBlock {
   }
 
   public void setSignature(BLSSignature signature) {
+    cache.invalidate();
     this.signature = signature;
   }
 
@@ -153,6 +179,7 @@ public final class BeaconBlock {
   }
 
   public void setEth1_data(Eth1Data eth1_data) {
+    cache.invalidate();
     this.eth1_data = eth1_data;
   }
 
@@ -161,6 +188,7 @@ public final class BeaconBlock {
   }
 
   public void setRandao_reveal(BLSSignature randao_reveal) {
+    cache.invalidate();
     this.randao_reveal = randao_reveal;
   }
 
@@ -169,6 +197,7 @@ public final class BeaconBlock {
   }
 
   public void setState_root(Bytes32 state_root) {
+    cache.invalidate();
     this.state_root = state_root;
   }
 
@@ -177,6 +206,7 @@ public final class BeaconBlock {
   }
 
   public void setParent_root(Bytes32 parent_root) {
+    cache.invalidate();
     this.parent_root = parent_root;
   }
 
@@ -185,6 +215,7 @@ public final class BeaconBlock {
   }
 
   public void setSlot(long slot) {
+    cache.invalidate();
     this.slot = slot;
   }
 
@@ -202,6 +233,6 @@ public final class BeaconBlock {
                 HashTreeUtil.hash_tree_root(state_root),
                 HashTreeUtil.hash_tree_root(randao_reveal.toBytes()),
                 HashTreeUtil.hash_tree_root(eth1_data.toBytes()),
-                HashTreeUtil.hash_tree_root(body.toBytes()))));
+                body.hashTreeRoot())));
   }
 }
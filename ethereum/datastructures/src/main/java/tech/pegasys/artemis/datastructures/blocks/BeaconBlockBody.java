@@ -13,11 +13,16 @@
 
 package tech.pegasys.artemis.datastructures.blocks;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.datastructures.operations.Attestation;
 import tech.pegasys.artemis.datastructures.operations.AttesterSlashing;
 import tech.pegasys.artemis.datastructures.operations.Deposit;
@@ -34,6 +39,8 @@ public class BeaconBlockBody {
   private List<VoluntaryExit> voluntaryExits;
   private List<Transfer> transfers;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public BeaconBlockBody(
       List<ProposerSlashing> proposer_slashings,
       List<AttesterSlashing> attester_slashings,
@@ -75,6 +82,48 @@ public class BeaconBlockBody {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this body and its operations as complete so that their encodings and roots are computed
+   * at most once. The operation lists become unmodifiable.
+   */
+  public BeaconBlockBody seal() {
+    sealOperations();
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this body and its operations as parts of a sealed block. Their setters throw from then
+   * on, since the block could not otherwise notice the change.
+   */
+  public BeaconBlockBody freeze() {
+    sealOperations();
+    cache.freeze();
+    return this;
+  }
+
+  private void sealOperations() {
+    proposer_slashings = sealAll(proposer_slashings, ProposerSlashing::freeze);
+    attester_slashings = sealAll(attester_slashings, AttesterSlashing::freeze);
+    attestations = sealAll(attestations, Attestation::freeze);
+    deposits = sealAll(deposits, Deposit::freeze);
+    voluntaryExits = sealAll(voluntaryExits, VoluntaryExit::freeze);
+    transfers = sealAll(transfers, Transfer::freeze);
+  }
+
+  private static <T> List<T> sealAll(List<T> operations, Consumer<T> sealer) {
+    operations.forEach(sealer);
+    return Collections.unmodifiableList(new ArrayList<>(operations));
+  }
+
+  private Bytes encode() {
     List<Bytes> proposerSlashingsBytes =
         proposer_slashings.stream().map(ProposerSlashing::toBytes).collect(Collectors.toList());
     List<Bytes> attesterSlashingsBytes =
@@ -134,6 +183,7 @@ public class BeaconBlockBody {
   }
 
   public void setAttestations(List<Attestation> attestations) {
+    cache.invalidate();
     this.attestations = attestations;
   }
 
@@ -142,6 +192,7 @@ public class BeaconBlockBody {
   }
 
   public void setProposer_slashings(List<ProposerSlashing> proposer_slashings) {
+    cache.invalidate();
     this.proposer_slashings = proposer_slashings;
   }
 
@@ -150,6 +201,7 @@ public class BeaconBlockBody {
   }
 
   public void setAttester_slashings(List<AttesterSlashing> attester_slashings) {
+    cache.invalidate();
     this.attester_slashings = attester_slashings;
   }
 
@@ -158,6 +210,7 @@ public class BeaconBlockBody {
   }
 
   public void setDeposits(List<Deposit> deposits) {
+    cache.invalidate();
     this.deposits = deposits;
   }
 
@@ -166,6 +219,7 @@ public class BeaconBlockBody {
   }
 
   public void setVoluntaryExits(List<VoluntaryExit> voluntaryExits) {
+    cache.invalidate();
     this.voluntaryExits = voluntaryExits;
   }
 
@@ -174,6 +228,7 @@ public class BeaconBlockBody {
   }
 
   public void setTransfers(List<Transfer> transfers) {
+    cache.invalidate();
     this.transfers = transfers;
   }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.blocks;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.ssz.SSZ;
+
+/**
+ * Read-only view over an SSZ encoded {@link BeaconBlock}.
+ *
+ * <p>Header fields are read from the underlying buffer on demand and returned as slices of it, so a
+ * block can be inspected without decoding its body or any of its BLS points. Use {@link #decode()}
+ * once the block is known to be worth processing.
+ */
+public final class BeaconBlockView {
+
+  private final Bytes bytes;
+
+  private BeaconBlockView(Bytes bytes) {
+    this.bytes = bytes;
+  }
+
+  public static BeaconBlockView wrap(Bytes bytes) {
+    return new BeaconBlockView(bytes);
+  }
+
+  public long getSlot() {
+    return SSZ.decode(bytes, reader -> reader.readUInt64());
+  }
+
+  public Bytes32 getParent_root() {
+    return SSZ.decode(
+        bytes,
+        reader -> {
+          reader.readUInt64();
+          return Bytes32.wrap(reader.readBytes());
+        });
+  }
+
+  public Bytes32 getState_root() {
+    return SSZ.decode(
+        bytes,
+        reader -> {
+          reader.readUInt64();
+          reader.readBytes();
+          return Bytes32.wrap(reader.readBytes());
+        });
+  }
+
+  public BeaconBlock decode() {
+    return BeaconBlock.fromBytes(bytes);
+  }
+
+  public Bytes toBytes() {
+    return bytes;
+  }
+}
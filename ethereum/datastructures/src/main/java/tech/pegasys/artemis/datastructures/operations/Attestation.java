@@ -15,7 +15,9 @@ package tech.pegasys.artemis.datastructures.operations;
 
 import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.util.bls.BLSSignature;
 
 public class Attestation {
@@ -25,6 +27,8 @@ public class Attestation {
   private Bytes custody_bitfield;
   private BLSSignature aggregate_signature;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public Attestation(
       Bytes aggregation_bitfield,
       AttestationData data,
@@ -48,6 +52,34 @@ public class Attestation {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this attestation and its data as complete so that their encodings and roots are computed
+   * at most once. Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public Attestation seal() {
+    data.freeze();
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this attestation and its data as parts of a sealed container. Their setters throw from
+   * then on, since the container could not otherwise notice the change.
+   */
+  public Attestation freeze() {
+    data.freeze();
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeBytes(aggregation_bitfield);
@@ -89,6 +121,7 @@ public class Attestation {
   }
 
   public void setAggregation_bitfield(Bytes aggregation_bitfield) {
+    cache.invalidate();
     this.aggregation_bitfield = aggregation_bitfield;
   }
 
@@ -97,6 +130,10 @@ public class Attestation {
   }
 
   public void setData(AttestationData data) {
+    cache.invalidate();
+    if (cache.isSealed()) {
+      data.freeze();
+    }
     this.data = data;
   }
 
@@ -105,6 +142,7 @@ public class Attestation {
   }
 
   public void setCustody_bitfield(Bytes custody_bitfield) {
+    cache.invalidate();
     this.custody_bitfield = custody_bitfield;
   }
 
@@ -113,6 +151,7 @@ public class Attestation {
   }
 
   public void setAggregate_signature(BLSSignature aggregate_signature) {
+    cache.invalidate();
     this.aggregate_signature = aggregate_signature;
   }
 
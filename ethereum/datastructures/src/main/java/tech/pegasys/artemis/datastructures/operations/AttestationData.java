@@ -17,6 +17,7 @@ import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.datastructures.state.Crosslink;
 
 public class AttestationData {
@@ -30,6 +31,8 @@ public class AttestationData {
   private long justified_epoch;
   private Bytes32 justified_block_root;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public AttestationData(
       long slot,
       long shard,
@@ -76,6 +79,32 @@ public class AttestationData {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this attestation data as complete so that its encoding and root are computed at most
+   * once. Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public AttestationData seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this attestation data as part of a sealed container. Its setters throw from then on,
+   * since the container could not otherwise notice the change.
+   */
+  public AttestationData freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeUInt64(slot);
@@ -133,6 +162,7 @@ public class AttestationData {
   }
 
   public void setSlot(long slot) {
+    cache.invalidate();
     this.slot = slot;
   }
 
@@ -141,6 +171,7 @@ public class AttestationData {
   }
 
   public void setBeacon_block_root(Bytes32 beacon_block_root) {
+    cache.invalidate();
     this.beacon_block_root = beacon_block_root;
   }
 
@@ -149,6 +180,7 @@ public class AttestationData {
   }
 
   public void setEpoch_boundary_root(Bytes32 epoch_boundary_root) {
+    cache.invalidate();
     this.epoch_boundary_root = epoch_boundary_root;
   }
 
@@ -157,6 +189,7 @@ public class AttestationData {
   }
 
   public void setCrosslink_data_root(Bytes32 crosslink_data_root) {
+    cache.invalidate();
     this.crosslink_data_root = crosslink_data_root;
   }
 
@@ -165,6 +198,7 @@ public class AttestationData {
   }
 
   public void setShard(long shard) {
+    cache.invalidate();
     this.shard = shard;
   }
 
@@ -173,6 +207,7 @@ public class AttestationData {
   }
 
   public void setLatest_crosslink(Crosslink latest_crosslink) {
+    cache.invalidate();
     this.latest_crosslink = latest_crosslink;
   }
 
@@ -181,6 +216,7 @@ public class AttestationData {
   }
 
   public void setJustified_epoch(long justified_epoch) {
+    cache.invalidate();
     this.justified_epoch = justified_epoch;
   }
 
@@ -189,6 +225,7 @@ public class AttestationData {
   }
 
   public void setJustified_block_root(Bytes32 justified_block_root) {
+    cache.invalidate();
     this.justified_block_root = justified_block_root;
   }
 }
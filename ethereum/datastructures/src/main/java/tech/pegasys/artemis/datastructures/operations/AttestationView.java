@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.operations;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.ssz.SSZ;
+
+/**
+ * Read-only view over an SSZ encoded {@link Attestation}.
+ *
+ * <p>The aggregation bitfield and the leading fields of the attestation data are read from the
+ * underlying buffer on demand and returned as slices of it, so an attestation can be inspected
+ * without decoding its crosslink or aggregate signature. Use {@link #decode()} once the attestation
+ * is known to be worth processing.
+ */
+public final class AttestationView {
+
+  private final Bytes bytes;
+
+  private AttestationView(Bytes bytes) {
+    this.bytes = bytes;
+  }
+
+  public static AttestationView wrap(Bytes bytes) {
+    return new AttestationView(bytes);
+  }
+
+  public Bytes getAggregation_bitfield() {
+    return SSZ.decode(bytes, reader -> reader.readBytes());
+  }
+
+  public long getSlot() {
+    return SSZ.decode(data(), reader -> reader.readUInt64());
+  }
+
+  public long getShard() {
+    return SSZ.decode(
+        data(),
+        reader -> {
+          reader.readUInt64();
+          return reader.readUInt64();
+        });
+  }
+
+  public Bytes32 getBeacon_block_root() {
+    return SSZ.decode(
+        data(),
+        reader -> {
+          reader.readUInt64();
+          reader.readUInt64();
+          return Bytes32.wrap(reader.readBytes());
+        });
+  }
+
+  public Attestation decode() {
+    return Attestation.fromBytes(bytes);
+  }
+
+  public Bytes toBytes() {
+    return bytes;
+  }
+
+  private Bytes data() {
+    return SSZ.decode(
+        bytes,
+        reader -> {
+          reader.readBytes();
+          return reader.readBytes();
+        });
+  }
+}
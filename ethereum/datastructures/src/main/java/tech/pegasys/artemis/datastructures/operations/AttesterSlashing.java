@@ -15,13 +15,17 @@ package tech.pegasys.artemis.datastructures.operations;
 
 import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 
 public class AttesterSlashing {
 
   private SlashableAttestation slashable_attestation_1;
   private SlashableAttestation slashable_attestation_2;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public AttesterSlashing(
       SlashableAttestation slashable_attestation_1, SlashableAttestation slashable_attestation_2) {
     this.slashable_attestation_1 = slashable_attestation_1;
@@ -38,6 +42,32 @@ public class AttesterSlashing {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this attester slashing as complete so that its encoding and root are computed at most
+   * once. Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public AttesterSlashing seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this attester slashing as part of a sealed container. Its setters throw from then on,
+   * since the container could not otherwise notice the change.
+   */
+  public AttesterSlashing freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeBytes(slashable_attestation_1.toBytes());
@@ -75,6 +105,7 @@ public class AttesterSlashing {
   }
 
   public void setSlashable_attestation_1(SlashableAttestation slashable_attestation_1) {
+    cache.invalidate();
     this.slashable_attestation_1 = slashable_attestation_1;
   }
 
@@ -83,6 +114,7 @@ public class AttesterSlashing {
   }
 
   public void setSlashable_attestation_2(SlashableAttestation slashable_attestation_2) {
+    cache.invalidate();
     this.slashable_attestation_2 = slashable_attestation_2;
   }
 }
@@ -19,6 +19,7 @@ import java.util.stream.Collectors;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 
 public class Deposit {
 
@@ -26,6 +27,8 @@ public class Deposit {
   private long index;
   private DepositData deposit_data;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public Deposit(List<Bytes32> branch, long index, DepositData deposit_data) {
     this.branch = branch;
     this.index = index;
@@ -43,6 +46,32 @@ public class Deposit {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this deposit as complete so that its encoding and root are computed at most once. Use the
+   * setters, which invalidate the cached values, for any later changes.
+   */
+  public Deposit seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this deposit as part of a sealed container. Its setters throw from then on, since the
+   * container could not otherwise notice the change.
+   */
+  public Deposit freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeBytesList(branch);
@@ -82,6 +111,7 @@ public class Deposit {
   }
 
   public void setBranch(List<Bytes32> branch) {
+    cache.invalidate();
     this.branch = branch;
   }
 
@@ -90,6 +120,7 @@ public class Deposit {
   }
 
   public void setIndex(long index) {
+    cache.invalidate();
     this.index = index;
   }
 
@@ -98,6 +129,7 @@ public class Deposit {
   }
 
   public void setDeposit_data(DepositData deposit_data) {
+    cache.invalidate();
     this.deposit_data = deposit_data;
   }
 }
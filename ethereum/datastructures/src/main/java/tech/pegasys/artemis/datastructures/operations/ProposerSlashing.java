@@ -15,7 +15,9 @@ package tech.pegasys.artemis.datastructures.operations;
 
 import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.datastructures.blocks.Proposal;
 
 public class ProposerSlashing {
@@ -24,6 +26,8 @@ public class ProposerSlashing {
   private Proposal proposal_1;
   private Proposal proposal_2;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public ProposerSlashing(long proposer_index, Proposal proposal_1, Proposal proposal_2) {
     this.proposer_index = proposer_index;
     this.proposal_1 = proposal_1;
@@ -41,6 +45,32 @@ public class ProposerSlashing {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this proposer slashing as complete so that its encoding and root are computed at most
+   * once. Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public ProposerSlashing seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this proposer slashing as part of a sealed container. Its setters throw from then on,
+   * since the container could not otherwise notice the change.
+   */
+  public ProposerSlashing freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeUInt64(proposer_index);
@@ -80,6 +110,7 @@ public class ProposerSlashing {
   }
 
   public void setProposer_index(long proposer_index) {
+    cache.invalidate();
     this.proposer_index = proposer_index;
   }
 
@@ -88,6 +119,7 @@ public class ProposerSlashing {
   }
 
   public void setProposal_1(Proposal proposal_1) {
+    cache.invalidate();
     this.proposal_1 = proposal_1;
   }
 
@@ -96,6 +128,7 @@ public class ProposerSlashing {
   }
 
   public void setProposal_2(Proposal proposal_2) {
+    cache.invalidate();
     this.proposal_2 = proposal_2;
   }
 }
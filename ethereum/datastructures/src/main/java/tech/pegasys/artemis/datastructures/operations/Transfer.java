@@ -15,7 +15,9 @@ package tech.pegasys.artemis.datastructures.operations;
 
 import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.util.bls.BLSPublicKey;
 import tech.pegasys.artemis.util.bls.BLSSignature;
 
@@ -28,6 +30,8 @@ public class Transfer {
   private BLSPublicKey pubkey;
   private BLSSignature signature;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public Transfer(
       long from,
       long to,
@@ -60,6 +64,32 @@ public class Transfer {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this transfer as complete so that its encoding and root are computed at most once. Use
+   * the setters, which invalidate the cached values, for any later changes.
+   */
+  public Transfer seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this transfer as part of a sealed container. Its setters throw from then on, since the
+   * container could not otherwise notice the change.
+   */
+  public Transfer freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeUInt64(from);
@@ -107,6 +137,7 @@ public class Transfer {
   }
 
   public void setFrom(long from) {
+    cache.invalidate();
     this.from = from;
   }
 
@@ -115,6 +146,7 @@ public class Transfer {
   }
 
   public void setTo(long to) {
+    cache.invalidate();
     this.to = to;
   }
 
@@ -123,6 +155,7 @@ public class Transfer {
   }
 
   public void setAmount(long amount) {
+    cache.invalidate();
     this.amount = amount;
   }
 
@@ -131,6 +164,7 @@ public class Transfer {
   }
 
   public void setFee(long fee) {
+    cache.invalidate();
     this.fee = fee;
   }
 
@@ -139,6 +173,7 @@ public class Transfer {
   }
 
   public void setSlot(long slot) {
+    cache.invalidate();
     this.slot = slot;
   }
 
@@ -147,6 +182,7 @@ public class Transfer {
   }
 
   public void setPubkey(BLSPublicKey pubkey) {
+    cache.invalidate();
     this.pubkey = pubkey;
   }
 
@@ -155,6 +191,7 @@ public class Transfer {
   }
 
   public void setSignature(BLSSignature signature) {
+    cache.invalidate();
     this.signature = signature;
   }
 }
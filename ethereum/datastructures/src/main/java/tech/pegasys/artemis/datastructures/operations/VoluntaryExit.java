@@ -18,6 +18,7 @@ import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
+import tech.pegasys.artemis.datastructures.EncodingCache;
 import tech.pegasys.artemis.util.bls.BLSSignature;
 import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
 
@@ -27,6 +28,8 @@ public class VoluntaryExit {
   private long validator_index;
   private BLSSignature signature;
 
+  private final EncodingCache cache = new EncodingCache();
+
   public VoluntaryExit(long epoch, long validator_index, BLSSignature signature) {
     this.epoch = epoch;
     this.validator_index = validator_index;
@@ -44,6 +47,32 @@ public class VoluntaryExit {
   }
 
   public Bytes toBytes() {
+    return cache.encoding(this::encode);
+  }
+
+  public Bytes32 hashTreeRoot() {
+    return cache.root(this::encode);
+  }
+
+  /**
+   * Marks this voluntary exit as complete so that its encoding and root are computed at most once.
+   * Use the setters, which invalidate the cached values, for any later changes.
+   */
+  public VoluntaryExit seal() {
+    cache.seal();
+    return this;
+  }
+
+  /**
+   * Seals this voluntary exit as part of a sealed container. Its setters throw from then on, since
+   * the container could not otherwise notice the change.
+   */
+  public VoluntaryExit freeze() {
+    cache.freeze();
+    return this;
+  }
+
+  private Bytes encode() {
     return SSZ.encode(
         writer -> {
           writer.writeUInt64(epoch);
@@ -83,6 +112,7 @@ public class VoluntaryExit {
   }
 
   public void setEpoch(long epoch) {
+    cache.invalidate();
     this.epoch = epoch;
   }
 
@@ -91,6 +121,7 @@ public class VoluntaryExit {
   }
 
   public void setValidator_index(long validator_index) {
+    cache.invalidate();
     this.validator_index = validator_index;
   }
 
@@ -99,6 +130,7 @@ public class VoluntaryExit {
   }
 
   public void setSignature(BLSSignature signature) {
+    cache.invalidate();
     this.signature = signature;
   }
 
@@ -13,13 +13,18 @@
 
 package tech.pegasys.artemis.datastructures.state;
 
+import static com.google.common.base.Preconditions.checkState;
 import static tech.pegasys.artemis.datastructures.Constants.ZERO_HASH;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.ssz.SSZ;
@@ -67,6 +72,8 @@ public class BeaconState {
 
   protected long deposit_index;
 
+  private StateJournal journal;
+
   public BeaconState() {
 
     this.slot = Constants.GENESIS_SLOT;
@@ -241,49 +248,90 @@ public class BeaconState {
 
   public Bytes toBytes() {
     List<Bytes> validator_registryBytes =
-        validator_registry.stream().map(Validator::toBytes).collect(Collectors.toList());
+        readOnlyStream(validator_registry).map(Validator::toBytes).collect(Collectors.toList());
     List<Bytes> latest_crosslinksBytes =
-        latest_crosslinks.stream().map(Crosslink::toBytes).collect(Collectors.toList());
+        readOnlyStream(latest_crosslinks).map(Crosslink::toBytes).collect(Collectors.toList());
     List<Bytes> latest_attestationBytes =
         latest_attestations.stream().map(PendingAttestation::toBytes).collect(Collectors.toList());
     List<Bytes> eth1_data_votesBytes =
         eth1_data_votes.stream().map(Eth1DataVote::toBytes).collect(Collectors.toList());
 
-    return SSZ.encode(
-        writer -> {
-          // Misc
-          writer.writeUInt64(slot);
-          writer.writeUInt64(genesis_time);
-          writer.writeBytes(fork.toBytes());
-          // Validator registry
-          writer.writeBytesList(validator_registryBytes);
-          writer.writeLongIntList(64, validator_balances);
-          writer.writeUInt64(validator_registry_update_epoch);
-          // Randomness and committees
-          writer.writeBytesList(latest_randao_mixes);
-          writer.writeUInt64(previous_shuffling_start_shard);
-          writer.writeUInt64(current_shuffling_start_shard);
-          writer.writeUInt64(previous_shuffling_epoch);
-          writer.writeUInt64(current_shuffling_epoch);
-          writer.writeBytes(previous_shuffling_seed);
-          writer.writeBytes(current_shuffling_seed);
-          // Finality
-          writer.writeUInt64(previous_justified_epoch);
-          writer.writeUInt64(justified_epoch);
-          writer.writeUInt64(justification_bitfield);
-          writer.writeUInt64(finalized_epoch);
-          // Recent state
-          writer.writeBytesList(latest_crosslinksBytes);
-          writer.writeBytesList(latest_block_roots);
-          writer.writeBytesList(latest_active_index_roots);
-          writer.writeLongIntList(64, latest_slashed_balances);
-          writer.writeBytesList(latest_attestationBytes);
-          writer.writeBytesList(batched_block_roots);
-          // Ethereum 1.0 chain data
-          writer.writeBytes(latest_eth1_data.toBytes());
-          writer.writeBytesList(eth1_data_votesBytes);
-          writer.writeUInt64(deposit_index);
-        });
+    // SSZ.encode only appends, so the state can be encoded field group by field group. The
+    // large lists of immutable values reuse their previous encoding when unchanged.
+    return Bytes.concatenate(
+        SSZ.encode(
+            writer -> {
+              // Misc
+              writer.writeUInt64(slot);
+              writer.writeUInt64(genesis_time);
+              writer.writeBytes(fork.toBytes());
+              // Validator registry
+              writer.writeBytesList(validator_registryBytes);
+            }),
+        encodeUInt64List(validator_balances),
+        SSZ.encode(writer -> writer.writeUInt64(validator_registry_update_epoch)),
+        // Randomness and committees
+        encodeBytes32List(latest_randao_mixes),
+        SSZ.encode(
+            writer -> {
+              writer.writeUInt64(previous_shuffling_start_shard);
+              writer.writeUInt64(current_shuffling_start_shard);
+              writer.writeUInt64(previous_shuffling_epoch);
+              writer.writeUInt64(current_shuffling_epoch);
+              writer.writeBytes(previous_shuffling_seed);
+              writer.writeBytes(current_shuffling_seed);
+              // Finality
+              writer.writeUInt64(previous_justified_epoch);
+              writer.writeUInt64(justified_epoch);
+              writer.writeUInt64(justification_bitfield);
+              writer.writeUInt64(finalized_epoch);
+              // Recent state
+              writer.writeBytesList(latest_crosslinksBytes);
+            }),
+        encodeBytes32List(latest_block_roots),
+        encodeBytes32List(latest_active_index_roots),
+        encodeUInt64List(latest_slashed_balances),
+        SSZ.encode(writer -> writer.writeBytesList(latest_attestationBytes)),
+        encodeBytes32List(batched_block_roots),
+        SSZ.encode(
+            writer -> {
+              // Ethereum 1.0 chain data
+              writer.writeBytes(latest_eth1_data.toBytes());
+              writer.writeBytesList(eth1_data_votesBytes);
+              writer.writeUInt64(deposit_index);
+            }));
+  }
+
+  private static Bytes encodeUInt64List(List<Long> list) {
+    Function<List<Long>, Bytes> encoder =
+        values -> SSZ.encode(writer -> writer.writeLongIntList(64, values));
+    if (list instanceof LongList) {
+      return ((LongList) list).encoded(encoder);
+    }
+    return encodeList(list, encoder);
+  }
+
+  private static Bytes encodeBytes32List(List<Bytes32> list) {
+    return encodeList(list, values -> SSZ.encode(writer -> writer.writeBytesList(values)));
+  }
+
+  private static <T> Bytes encodeList(List<T> list, Function<List<T>, Bytes> encoder) {
+    if (list instanceof CopyOnWriteChunkedList) {
+      return ((CopyOnWriteChunkedList<T>) list).encoded(encoder);
+    }
+    return encoder.apply(list);
+  }
+
+  /**
+   * Streams the elements of a list without taking ownership of shared chunks. Only for elements
+   * that are read and not mutated.
+   */
+  private static <T> Stream<T> readOnlyStream(List<T> list) {
+    if (list instanceof CopyOnWriteChunkedList) {
+      return IntStream.range(0, list.size())
+          .mapToObj(index -> CopyOnWriteChunkedList.peek(list, index));
+    }
+    return list.stream();
   }
 
   @Override
@@ -363,12 +411,63 @@ public class BeaconState {
         && Objects.equals(this.getDeposit_index(), other.getDeposit_index());
   }
 
+  /**
+   * Starts recording how to undo every write made to this state from here on, so that a block can
+   * be applied to the state in place and undone if it is invalid. Only a state whose lists are
+   * {@link ValidatorRegistry}, {@link LongList} and {@link CopyOnWriteChunkedList} lists, as in a
+   * {@link BeaconStateWithCache}, can be journaled.
+   *
+   * @return The journal, which has to be closed or rolled back before the next one is started.
+   */
+  public StateJournal startJournal() {
+    checkState(journal == null || !journal.isRecording(), "A journal is already recording");
+    journal = new StateJournal();
+    for (List<?> list :
+        Arrays.asList(
+            validator_registry,
+            validator_balances,
+            latest_randao_mixes,
+            latest_crosslinks,
+            latest_block_roots,
+            latest_active_index_roots,
+            latest_slashed_balances,
+            latest_attestations,
+            batched_block_roots,
+            eth1_data_votes)) {
+      attach(list);
+    }
+    return journal;
+  }
+
+  /**
+   * Records an entry that undoes a write, if a journal is recording.
+   *
+   * @param undo - Undoes the write.
+   */
+  protected void record(Runnable undo) {
+    if (journal != null && journal.isRecording()) {
+      journal.record(undo);
+    }
+  }
+
+  private void attach(List<?> list) {
+    if (journal != null && journal.isRecording()) {
+      checkState(
+          list instanceof StateJournal.Target,
+          "Writes to a %s cannot be journaled",
+          list.getClass().getSimpleName());
+      ((StateJournal.Target) list).setJournal(journal);
+    }
+  }
+
   /** ******************* * GETTERS & SETTERS * * ******************* */
   public long getSlot() {
     return slot;
   }
 
   public void setSlot(long slot) {
+    long previous = this.slot;
+    record(() -> this.slot = previous);
     this.slot = slot;
   }
 
@@ -377,6 +476,8 @@ public class BeaconState {
   }
 
   public void setGenesis_time(long genesis_time) {
+    long previous = this.genesis_time;
+    record(() -> this.genesis_time = previous);
     this.genesis_time = genesis_time;
   }
 
@@ -385,6 +486,8 @@ public class BeaconState {
   }
 
   public void setFork(Fork fork) {
+    Fork previous = this.fork;
+    record(() -> this.fork = previous);
     this.fork = fork;
   }
 
@@ -393,6 +496,9 @@ public class BeaconState {
   }
 
   public void setValidator_registry(List<Validator> validator_registry) {
+    List<Validator> previous = this.validator_registry;
+    record(() -> this.validator_registry = previous);
+    attach(validator_registry);
     this.validator_registry = validator_registry;
   }
 
@@ -401,6 +507,9 @@ public class BeaconState {
   }
 
   public void setValidator_balances(List<Long> validator_balances) {
+    List<Long> previous = this.validator_balances;
+    record(() -> this.validator_balances = previous);
+    attach(validator_balances);
     this.validator_balances = validator_balances;
   }
 
@@ -409,6 +518,8 @@ public class BeaconState {
   }
 
   public void setValidator_registry_update_epoch(long validator_registry_update_epoch) {
+    long previous = this.validator_registry_update_epoch;
+    record(() -> this.validator_registry_update_epoch = previous);
     this.validator_registry_update_epoch = validator_registry_update_epoch;
   }
 
@@ -417,6 +528,9 @@ public class BeaconState {
   }
 
   public void setLatest_randao_mixes(List<Bytes32> latest_randao_mixes) {
+    List<Bytes32> previous = this.latest_randao_mixes;
+    record(() -> this.latest_randao_mixes = previous);
+    attach(latest_randao_mixes);
     this.latest_randao_mixes = latest_randao_mixes;
   }
 
@@ -425,6 +539,8 @@ public class BeaconState {
   }
 
   public void setPrevious_shuffling_start_shard(long previous_shuffling_start_shard) {
+    long previous = this.previous_shuffling_start_shard;
+    record(() -> this.previous_shuffling_start_shard = previous);
     this.previous_shuffling_start_shard = previous_shuffling_start_shard;
   }
 
@@ -433,6 +549,8 @@ public class BeaconState {
   }
 
   public void setCurrent_shuffling_start_shard(long current_shuffling_start_shard) {
+    long previous = this.current_shuffling_start_shard;
+    record(() -> this.current_shuffling_start_shard = previous);
     this.current_shuffling_start_shard = current_shuffling_start_shard;
   }
 
@@ -441,6 +559,8 @@ public class BeaconState {
   }
 
   public void setPrevious_shuffling_epoch(long previous_shuffling_epoch) {
+    long previous = this.previous_shuffling_epoch;
+    record(() -> this.previous_shuffling_epoch = previous);
     this.previous_shuffling_epoch = previous_shuffling_epoch;
   }
 
@@ -449,6 +569,8 @@ public class BeaconState {
   }
 
   public void setCurrent_shuffling_epoch(long current_shuffling_epoch) {
+    long previous = this.current_shuffling_epoch;
+    record(() -> this.current_shuffling_epoch = previous);
     this.current_shuffling_epoch = current_shuffling_epoch;
   }
 
@@ -457,6 +579,8 @@ public class BeaconState {
   }
 
   public void setPrevious_shuffling_seed(Bytes32 previous_shuffling_seed) {
+    Bytes32 previous = this.previous_shuffling_seed;
+    record(() -> this.previous_shuffling_seed = previous);
     this.previous_shuffling_seed = previous_shuffling_seed;
   }
 
@@ -465,6 +589,8 @@ public class BeaconState {
   }
 
   public void setCurrent_shuffling_seed(Bytes32 current_shuffling_seed) {
+    Bytes32 previous = this.current_shuffling_seed;
+    record(() -> this.current_shuffling_seed = previous);
     this.current_shuffling_seed = current_shuffling_seed;
   }
 
@@ -473,6 +599,8 @@ public class BeaconState {
   }
 
   public void setPrevious_justified_epoch(long previous_justified_epoch) {
+    long previous = this.previous_justified_epoch;
+    record(() -> this.previous_justified_epoch = previous);
     this.previous_justified_epoch = previous_justified_epoch;
   }
 
@@ -481,6 +609,8 @@ public class BeaconState {
   }
 
   public void setJustified_epoch(long justified_epoch) {
+    long previous = this.justified_epoch;
+    record(() -> this.justified_epoch = previous);
     this.justified_epoch = justified_epoch;
   }
 
@@ -489,6 +619,8 @@ public class BeaconState {
   }
 
   public void setJustification_bitfield(long justification_bitfield) {
+    long previous = this.justification_bitfield;
+    record(() -> this.justification_bitfield = previous);
     this.justification_bitfield = justification_bitfield;
   }
 
@@ -497,6 +629,8 @@ public class BeaconState {
   }
 
   public void setFinalized_epoch(long finalized_epoch) {
+    long previous = this.finalized_epoch;
+    record(() -> this.finalized_epoch = previous);
     this.finalized_epoch = finalized_epoch;
   }
 
@@ -505,6 +639,9 @@ public class BeaconState {
   }
 
   public void setLatest_crosslinks(ArrayList<Crosslink> latest_crosslinks) {
+    List<Crosslink> previous = this.latest_crosslinks;
+    record(() -> this.latest_crosslinks = previous);
+    attach(latest_crosslinks);
     this.latest_crosslinks = latest_crosslinks;
   }
 
@@ -513,6 +650,9 @@ public class BeaconState {
   }
 
   public void setLatest_block_roots(List<Bytes32> latest_block_roots) {
+    List<Bytes32> previous = this.latest_block_roots;
+    record(() -> this.latest_block_roots = previous);
+    attach(latest_block_roots);
     this.latest_block_roots = latest_block_roots;
   }
 
@@ -521,6 +661,9 @@ public class BeaconState {
   }
 
   public void setLatest_active_index_roots(List<Bytes32> latest_active_index_roots) {
+    List<Bytes32> previous = this.latest_active_index_roots;
+    record(() -> this.latest_active_index_roots = previous);
+    attach(latest_active_index_roots);
     this.latest_active_index_roots = latest_active_index_roots;
   }
 
@@ -529,6 +672,9 @@ public class BeaconState {
   }
 
   public void setLatest_slashed_balances(List<Long> latest_slashed_balances) {
+    List<Long> previous = this.latest_slashed_balances;
+    record(() -> this.latest_slashed_balances = previous);
+    attach(latest_slashed_balances);
     this.latest_slashed_balances = latest_slashed_balances;
   }
 
@@ -537,6 +683,9 @@ public class BeaconState {
   }
 
   public void setLatest_attestations(List<PendingAttestation> latest_attestations) {
+    List<PendingAttestation> previous = this.latest_attestations;
+    record(() -> this.latest_attestations = previous);
+    attach(latest_attestations);
     this.latest_attestations = latest_attestations;
   }
 
@@ -545,6 +694,9 @@ public class BeaconState {
   }
 
   public void setBatched_block_roots(List<Bytes32> batched_block_roots) {
+    List<Bytes32> previous = this.batched_block_roots;
+    record(() -> this.batched_block_roots = previous);
+    attach(batched_block_roots);
     this.batched_block_roots = batched_block_roots;
   }
 
@@ -553,6 +705,8 @@ public class BeaconState {
   }
 
   public void setLatest_eth1_data(Eth1Data latest_eth1_data) {
+    Eth1Data previous = this.latest_eth1_data;
+    record(() -> this.latest_eth1_data = previous);
     this.latest_eth1_data = latest_eth1_data;
   }
 
@@ -561,6 +715,9 @@ public class BeaconState {
   }
 
   public void setEth1_data_votes(List<Eth1DataVote> eth1_data_votes) {
+    List<Eth1DataVote> previous = this.eth1_data_votes;
+    record(() -> this.eth1_data_votes = previous);
+    attach(eth1_data_votes);
     this.eth1_data_votes = eth1_data_votes;
   }
 
@@ -569,10 +726,14 @@ public class BeaconState {
   }
 
   public void setDeposit_index(long deposit_index) {
+    long previous = this.deposit_index;
+    record(() -> this.deposit_index = previous);
     this.deposit_index = deposit_index;
   }
 
   public void incrementSlot() {
+    long previous = this.slot;
+    record(() -> this.slot = previous);
     this.slot += 1;
   }
 }
@@ -13,31 +13,81 @@
 
 package tech.pegasys.artemis.datastructures.state;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.bytes.Bytes32;
-import tech.pegasys.artemis.datastructures.Copyable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
 import tech.pegasys.artemis.datastructures.blocks.Eth1Data;
+import tech.pegasys.artemis.datastructures.blocks.Eth1DataVote;
+import tech.pegasys.artemis.util.bls.BLSPublicKey;
 
 public final class BeaconStateWithCache extends BeaconState {
 
   protected int currentBeaconProposerIndex = -1;
+  protected ShufflingCache shufflingCache;
+  protected TreeMap<Long, int[]> activeValidatorIndices;
+  protected TreeMap<Long, TotalBalance> totalActiveBalances;
+  protected PubkeyIndex pubkeyIndex;
+  protected int indexedValidatorCount;
+
+  private static final int MAX_ACTIVE_INDEX_EPOCHS = 8;
 
   public BeaconStateWithCache() {
     super();
     this.currentBeaconProposerIndex = -1;
+    this.shufflingCache = new ShufflingCache();
+    this.activeValidatorIndices = new TreeMap<>();
+    this.totalActiveBalances = new TreeMap<>();
+    this.pubkeyIndex = new PubkeyIndex();
+    this.indexedValidatorCount = 0;
+    this.validator_registry = ValidatorRegistry.copyOf(validator_registry);
+    this.validator_balances = LongList.copyOf(validator_balances);
+    this.latest_randao_mixes = CopyOnWriteChunkedList.copyOf(latest_randao_mixes, null);
+    this.latest_crosslinks = CopyOnWriteChunkedList.copyOf(latest_crosslinks, Crosslink::copy);
+    this.latest_block_roots = CopyOnWriteChunkedList.copyOf(latest_block_roots, null);
+    this.latest_active_index_roots = CopyOnWriteChunkedList.copyOf(latest_active_index_roots, null);
+    this.latest_slashed_balances = LongList.copyOf(latest_slashed_balances);
+    this.latest_attestations = CopyOnWriteChunkedList.copyOf(latest_attestations, null);
+    this.batched_block_roots = CopyOnWriteChunkedList.copyOf(batched_block_roots, null);
+    this.eth1_data_votes = CopyOnWriteChunkedList.copyOf(eth1_data_votes, Eth1DataVote::copy);
   }
 
   public BeaconStateWithCache(BeaconStateWithCache state) {
+    // Shufflings are keyed by their inputs, so the copy can safely share the cache
+    this(state, state.getShufflingCache());
+    // Cached index arrays are replaced rather than mutated, so they can be shared as well
+    this.activeValidatorIndices = new TreeMap<>(state.activeValidatorIndices);
+    this.totalActiveBalances = new TreeMap<>(state.totalActiveBalances);
+    // The copy starts out with the same registry, so it shares the indexed prefix
+    this.pubkeyIndex = state.pubkeyIndex;
+    this.indexedValidatorCount = state.indexedValidatorCount;
+  }
+
+  /**
+   * Copies a state without caches, e.g. one decoded from SSZ, into a state with empty caches.
+   *
+   * @param state - The state to copy.
+   */
+  public BeaconStateWithCache(BeaconState state) {
+    this(state, new ShufflingCache());
+    this.activeValidatorIndices = new TreeMap<>();
+    this.totalActiveBalances = new TreeMap<>();
+    this.pubkeyIndex = new PubkeyIndex();
+    this.indexedValidatorCount = 0;
+  }
+
+  private BeaconStateWithCache(BeaconState state, ShufflingCache shufflingCache) {
+    // The lists are forked rather than copied, so only the fork and the Eth1 data are deep copied
+    this.shufflingCache = shufflingCache;
     this.slot = state.getSlot();
     this.genesis_time = state.getGenesis_time();
     this.fork = new Fork(state.getFork());
-    this.validator_registry = this.copyList(state.getValidator_registry(), new ArrayList<>());
-    this.validator_balances = new ArrayList<>(state.getValidator_balances());
+    this.validator_registry = ValidatorRegistry.copyOf(state.getValidator_registry());
+    this.validator_balances = LongList.copyOf(state.getValidator_balances());
     this.validator_registry_update_epoch = state.getValidator_registry_update_epoch();
-    this.latest_randao_mixes =
-        this.copyBytesList(state.getLatest_randao_mixes(), new ArrayList<>());
+    this.latest_randao_mixes = CopyOnWriteChunkedList.copyOf(state.getLatest_randao_mixes(), null);
     this.previous_shuffling_start_shard = state.getPrevious_shuffling_start_shard();
     this.current_shuffling_start_shard = state.getCurrent_shuffling_start_shard();
     this.previous_shuffling_epoch = state.getPrevious_shuffling_epoch();
@@ -48,33 +98,22 @@ public final class BeaconStateWithCache extends BeaconState {
     this.justified_epoch = state.getJustified_epoch();
     this.justification_bitfield = state.getJustification_bitfield();
     this.finalized_epoch = state.getFinalized_epoch();
-    this.latest_crosslinks = this.copyList(state.getLatest_crosslinks(), new ArrayList<>());
-    this.latest_block_roots = this.copyBytesList(state.getLatest_block_roots(), new ArrayList<>());
+    this.latest_crosslinks =
+        CopyOnWriteChunkedList.copyOf(state.getLatest_crosslinks(), Crosslink::copy);
+    this.latest_block_roots = CopyOnWriteChunkedList.copyOf(state.getLatest_block_roots(), null);
     this.latest_active_index_roots =
-        this.copyBytesList(state.getLatest_active_index_roots(), new ArrayList<>());
-    this.latest_slashed_balances = new ArrayList<>(state.getLatest_slashed_balances());
-    this.latest_attestations = this.copyList(state.getLatest_attestations(), new ArrayList<>());
-    this.batched_block_roots =
-        this.copyBytesList(state.getBatched_block_roots(), new ArrayList<>());
+        CopyOnWriteChunkedList.copyOf(state.getLatest_active_index_roots(), null);
+    this.latest_slashed_balances = LongList.copyOf(state.getLatest_slashed_balances());
+    // Pending attestations are only ever appended, never modified in place
+    this.latest_attestations =
+        CopyOnWriteChunkedList.copyOf(state.getLatest_attestations(), null);
+    this.batched_block_roots = CopyOnWriteChunkedList.copyOf(state.getBatched_block_roots(), null);
     this.latest_eth1_data = new Eth1Data(state.getLatest_eth1_data());
-    this.eth1_data_votes = this.copyList(state.getEth1_data_votes(), new ArrayList<>());
+    this.eth1_data_votes =
+        CopyOnWriteChunkedList.copyOf(state.getEth1_data_votes(), Eth1DataVote::copy);
     this.deposit_index = state.getDeposit_index();
   }
 
-  private <S extends Copyable<S>, T extends List<S>> T copyList(T sourceList, T destinationList) {
-    for (S sourceItem : sourceList) {
-      destinationList.add(sourceItem.copy());
-    }
-    return destinationList;
-  }
-
-  private <T extends List<Bytes32>> T copyBytesList(T sourceList, T destinationList) {
-    for (Bytes sourceItem : sourceList) {
-      destinationList.add((Bytes32) sourceItem.copy());
-    }
-    return destinationList;
-  }
-
   public static BeaconStateWithCache deepCopy(BeaconStateWithCache state) {
     return new BeaconStateWithCache(state);
   }
@@ -92,7 +131,205 @@ public final class BeaconStateWithCache extends BeaconState {
     return this;
   }
 
+  public ShufflingCache getShufflingCache() {
+    return this.shufflingCache;
+  }
+
+  @Override
+  public void setValidator_registry(List<Validator> validator_registry) {
+    super.setValidator_registry(validator_registry);
+    this.activeValidatorIndices.clear();
+    this.indexedValidatorCount = 0;
+  }
+
+  @Override
+  public void setLatest_attestations(List<PendingAttestation> latest_attestations) {
+    super.setLatest_attestations(chunked(latest_attestations, null));
+  }
+
+  @Override
+  public void setEth1_data_votes(List<Eth1DataVote> eth1_data_votes) {
+    super.setEth1_data_votes(chunked(eth1_data_votes, Eth1DataVote::copy));
+  }
+
+  /**
+   * Starts a journal like {@link BeaconState#startJournal()}, and also puts the caches derived from
+   * the state back as they were when the journal is rolled back. Lists that were set from outside,
+   * e.g. as array lists by a test, are converted first, without changing their contents.
+   *
+   * @return The journal, which has to be closed or rolled back before the next one is started.
+   */
+  @Override
+  public StateJournal startJournal() {
+    if (!(validator_registry instanceof ValidatorRegistry)) {
+      validator_registry = ValidatorRegistry.copyOf(validator_registry);
+    }
+    validator_balances = longs(validator_balances);
+    latest_randao_mixes = chunked(latest_randao_mixes, null);
+    latest_crosslinks = chunked(latest_crosslinks, Crosslink::copy);
+    latest_block_roots = chunked(latest_block_roots, null);
+    latest_active_index_roots = chunked(latest_active_index_roots, null);
+    latest_slashed_balances = longs(latest_slashed_balances);
+    latest_attestations = chunked(latest_attestations, null);
+    batched_block_roots = chunked(batched_block_roots, null);
+    eth1_data_votes = chunked(eth1_data_votes, Eth1DataVote::copy);
+    StateJournal journal = super.startJournal();
+
+    int proposerIndex = this.currentBeaconProposerIndex;
+    TreeMap<Long, int[]> activeIndices = new TreeMap<>(this.activeValidatorIndices);
+    TreeMap<Long, TotalBalance> totalBalances = new TreeMap<>(this.totalActiveBalances);
+    int indexedCount = this.indexedValidatorCount;
+    // Recorded first, so that it is undone last
+    journal.record(
+        () -> {
+          this.currentBeaconProposerIndex = proposerIndex;
+          this.activeValidatorIndices = activeIndices;
+          this.totalActiveBalances = totalBalances;
+          // The pubkey index only maps keys to indices that are checked against the registry on
+          // lookup, so it can stay shared; only the indexed prefix has to shrink with the registry
+          this.indexedValidatorCount = indexedCount;
+        });
+    return journal;
+  }
+
+  private static <E> List<E> chunked(List<E> list, UnaryOperator<E> elementCopier) {
+    return list instanceof CopyOnWriteChunkedList
+        ? list
+        : CopyOnWriteChunkedList.copyOf(list, elementCopier);
+  }
+
+  private static List<Long> longs(List<Long> list) {
+    return list instanceof LongList ? list : LongList.copyOf(list);
+  }
+
+  /**
+   * Returns the index of the validator with the given public key. Validators appended since the
+   * previous lookup are indexed first, so a lookup does not scan the whole registry.
+   *
+   * @param pubkey - The public key to look up.
+   * @return The index of the validator, or -1 if there is none.
+   */
+  public int getValidatorIndex(BLSPublicKey pubkey) {
+    List<Validator> validators = getValidator_registry();
+    if (indexedValidatorCount > validators.size()) {
+      indexedValidatorCount = 0;
+    }
+    for (; indexedValidatorCount < validators.size(); indexedValidatorCount++) {
+      pubkeyIndex.add(
+          PubkeyIndex.getPubkey(validators, indexedValidatorCount), indexedValidatorCount);
+    }
+    return pubkeyIndex.indexOf(validators, pubkey);
+  }
+
+  public PubkeyIndex getPubkeyIndex() {
+    return this.pubkeyIndex;
+  }
+
+  /**
+   * Returns the sorted indices of the validators active at the given epoch. The array is computed
+   * once per epoch and then kept up to date by {@link #updateActiveValidatorIndex(int)}, so callers
+   * must not modify it.
+   *
+   * @param epoch - The epoch under consideration.
+   * @return The indices of the active validators for the given epoch.
+   */
+  public int[] getActiveValidatorIndices(long epoch) {
+    int[] indices = activeValidatorIndices.get(epoch);
+    if (indices == null) {
+      List<Validator> validators = getValidator_registry();
+      int[] active = new int[validators.size()];
+      int count = 0;
+      if (validators instanceof ValidatorRegistry) {
+        // Only reads the two epoch columns instead of materializing a view per validator
+        ValidatorRegistry registry = (ValidatorRegistry) validators;
+        for (int index = 0; index < registry.size(); index++) {
+          if (registry.is_active_validator(index, epoch)) {
+            active[count++] = index;
+          }
+        }
+      } else {
+        for (int index = 0; index < validators.size(); index++) {
+          if (CopyOnWriteChunkedList.peek(validators, index).is_active_validator(epoch)) {
+            active[count++] = index;
+          }
+        }
+      }
+      indices = Arrays.copyOf(active, count);
+      activeValidatorIndices.put(epoch, indices);
+      while (activeValidatorIndices.size() > MAX_ACTIVE_INDEX_EPOCHS) {
+        activeValidatorIndices.pollFirstEntry();
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * Returns the total balance of the validators active at the given epoch. The total is reused for
+   * as long as neither the active set for the epoch nor the balances change.
+   *
+   * @param epoch - The epoch under consideration.
+   * @param total - Computes the total when it is not cached.
+   * @return The total balance of the active validators.
+   */
+  public long getTotalActiveBalance(long epoch, LongSupplier total) {
+    int[] indices = getActiveValidatorIndices(epoch);
+    if (!(validator_balances instanceof LongList)) {
+      return total.getAsLong();
+    }
+    long balancesVersion = ((LongList) validator_balances).version();
+    TotalBalance cached = totalActiveBalances.get(epoch);
+    if (cached == null || cached.indices != indices || cached.balancesVersion != balancesVersion) {
+      cached = new TotalBalance(indices, balancesVersion, total.getAsLong());
+      totalActiveBalances.put(epoch, cached);
+      while (totalActiveBalances.size() > MAX_ACTIVE_INDEX_EPOCHS) {
+        totalActiveBalances.pollFirstEntry();
+      }
+    }
+    return cached.total;
+  }
+
+  /**
+   * Re-evaluates a single validator against every cached epoch. Must be called whenever the
+   * activation or exit epoch of the validator at the given index changes, or when a validator is
+   * appended to the registry.
+   *
+   * @param index - The index of the validator that changed.
+   */
+  public void updateActiveValidatorIndex(int index) {
+    Validator validator = getValidator_registry().get(index);
+    for (Map.Entry<Long, int[]> entry : activeValidatorIndices.entrySet()) {
+      int[] indices = entry.getValue();
+      int position = Arrays.binarySearch(indices, index);
+      boolean active = validator.is_active_validator(entry.getKey());
+      if (active && position < 0) {
+        int insertAt = -position - 1;
+        int[] updated = new int[indices.length + 1];
+        System.arraycopy(indices, 0, updated, 0, insertAt);
+        updated[insertAt] = index;
+        System.arraycopy(indices, insertAt, updated, insertAt + 1, indices.length - insertAt);
+        entry.setValue(updated);
+      } else if (!active && position >= 0) {
+        int[] updated = new int[indices.length - 1];
+        System.arraycopy(indices, 0, updated, 0, position);
+        System.arraycopy(indices, position + 1, updated, position, updated.length - position);
+        entry.setValue(updated);
+      }
+    }
+  }
+
   public void invalidateCache() {
     this.currentBeaconProposerIndex = -1;
   }
+
+  private static final class TotalBalance {
+    private final int[] indices;
+    private final long balancesVersion;
+    private final long total;
+
+    private TotalBalance(int[] indices, long balancesVersion, long total) {
+      this.indices = indices;
+      this.balancesVersion = balancesVersion;
+      this.total = total;
+    }
+  }
 }
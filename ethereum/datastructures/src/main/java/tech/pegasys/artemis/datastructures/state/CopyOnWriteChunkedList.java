@@ -0,0 +1,280 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A list stored as fixed size chunks that can be forked in constant time. A fork shares every chunk
+ * with the list it was forked from, and a chunk is only copied the first time one of the two lists
+ * touches it afterwards, so forking a state only pays for what the fork changes.
+ *
+ * <p>Lists of mutable elements are created with an element copier. Since a caller can mutate an
+ * element returned by {@link #get(int)}, reading from a shared chunk of such a list copies the
+ * chunk and its elements first. {@link #peek(int)} skips that copy for callers that only read.
+ *
+ * <p>While a {@link StateJournal} is attached, every write records how to undo it. Reading an
+ * element of a list of mutable elements records a copy of it, since the caller may go on to mutate
+ * it in place.
+ *
+ * <p>Like {@link java.util.ArrayList}, a list must not be mutated or forked concurrently.
+ *
+ * @param <E> - The element type.
+ */
+public final class CopyOnWriteChunkedList<E> extends AbstractList<E>
+    implements RandomAccess, StateJournal.Target {
+
+  private static final int CHUNK_BITS = 8;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final UnaryOperator<E> elementCopier;
+  private Object[][] chunks;
+  private boolean[] owned;
+  private int size;
+  private long version;
+  private Bytes encoded;
+  private long encodedVersion;
+  private StateJournal journal;
+
+  private CopyOnWriteChunkedList(
+      UnaryOperator<E> elementCopier, Object[][] chunks, boolean[] owned, int size) {
+    this.elementCopier = elementCopier;
+    this.chunks = chunks;
+    this.owned = owned;
+    this.size = size;
+  }
+
+  /**
+   * Returns a list with the same elements as the source list. A CopyOnWriteChunkedList source is
+   * forked, any other list is copied.
+   *
+   * @param source - The list to copy.
+   * @param elementCopier - Copies a mutable element, or null if the elements are immutable.
+   * @return A list that can be mutated without affecting the source list.
+   */
+  public static <E> CopyOnWriteChunkedList<E> copyOf(
+      List<E> source, UnaryOperator<E> elementCopier) {
+    if (source instanceof CopyOnWriteChunkedList) {
+      return ((CopyOnWriteChunkedList<E>) source).fork();
+    }
+    CopyOnWriteChunkedList<E> list =
+        new CopyOnWriteChunkedList<>(elementCopier, new Object[0][], new boolean[0], 0);
+    for (E element : source) {
+      list.add(elementCopier == null || element == null ? element : elementCopier.apply(element));
+    }
+    return list;
+  }
+
+  /**
+   * Returns the element at the given index of any list without taking ownership of its chunk.
+   *
+   * @param list - The list to read from.
+   * @param index - The index of the element.
+   * @return The element, which must not be mutated.
+   */
+  public static <E> E peek(List<E> list, int index) {
+    if (list instanceof CopyOnWriteChunkedList) {
+      return ((CopyOnWriteChunkedList<E>) list).peek(index);
+    }
+    return list.get(index);
+  }
+
+  /**
+   * Returns a list that shares all chunks with this one.
+   *
+   * @return The forked list.
+   */
+  public CopyOnWriteChunkedList<E> fork() {
+    Arrays.fill(owned, false);
+    CopyOnWriteChunkedList<E> fork =
+        new CopyOnWriteChunkedList<>(
+            elementCopier, chunks.clone(), new boolean[chunks.length], size);
+    fork.version = version;
+    fork.encoded = encoded;
+    fork.encodedVersion = encodedVersion;
+    return fork;
+  }
+
+  @Override
+  public void setJournal(StateJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Returns the encoding of this list, reusing the previous result as long as the list has not been
+   * modified since. Only lists of immutable elements can be encoded this way, since changes made to
+   * a mutable element would go unnoticed.
+   *
+   * @param encoder - Encodes the whole list.
+   * @return The encoding of the list.
+   */
+  public Bytes encoded(Function<List<E>, Bytes> encoder) {
+    checkState(elementCopier == null, "Lists of mutable elements cannot be memoized");
+    if (encoded == null || encodedVersion != version) {
+      encoded = encoder.apply(this);
+      encodedVersion = version;
+    }
+    return encoded;
+  }
+
+  /**
+   * Returns the element at the given index without taking ownership of its chunk.
+   *
+   * @param index - The index of the element.
+   * @return The element, which must not be mutated.
+   */
+  @SuppressWarnings("unchecked")
+  public E peek(int index) {
+    checkElementIndex(index, size);
+    return (E) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    checkElementIndex(index, size);
+    int chunk = index >>> CHUNK_BITS;
+    if (elementCopier == null) {
+      return (E) chunks[chunk][index & CHUNK_MASK];
+    }
+    E element = (E) ownedChunk(chunk)[index & CHUNK_MASK];
+    if (element != null && journaling()) {
+      E saved = elementCopier.apply(element);
+      journal.record(() -> set(index, saved));
+    }
+    return element;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E set(int index, E element) {
+    checkElementIndex(index, size);
+    Object[] elements = ownedChunk(index >>> CHUNK_BITS);
+    E previous = (E) elements[index & CHUNK_MASK];
+    elements[index & CHUNK_MASK] = element;
+    version++;
+    if (journaling()) {
+      journal.record(() -> set(index, previous));
+    }
+    return previous;
+  }
+
+  @Override
+  public boolean add(E element) {
+    if (journaling()) {
+      int index = size;
+      journal.record(() -> remove(index));
+    }
+    int chunk = size >>> CHUNK_BITS;
+    if (chunk == chunks.length) {
+      int capacity = Math.max(1, chunks.length * 2);
+      chunks = Arrays.copyOf(chunks, capacity);
+      owned = Arrays.copyOf(owned, capacity);
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = new Object[CHUNK_SIZE];
+      owned[chunk] = true;
+    }
+    ownedChunk(chunk)[size & CHUNK_MASK] = element;
+    size++;
+    version++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void add(int index, E element) {
+    checkPositionIndex(index, size);
+    add(element);
+    for (int i = size - 1; i > index; i--) {
+      set(i, get(i - 1));
+    }
+    set(index, element);
+  }
+
+  @Override
+  public E remove(int index) {
+    E removed = get(index);
+    for (int i = index; i < size - 1; i++) {
+      set(i, get(i + 1));
+    }
+    set(size - 1, null);
+    size--;
+    version++;
+    modCount++;
+    if (journaling()) {
+      journal.record(() -> add(null));
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    if (journaling()) {
+      Object[][] previousChunks = chunks;
+      boolean[] previousOwned = owned;
+      int previousSize = size;
+      journal.record(
+          () -> {
+            chunks = previousChunks;
+            owned = previousOwned;
+            size = previousSize;
+            version++;
+            modCount++;
+          });
+    }
+    chunks = new Object[0][];
+    owned = new boolean[0];
+    size = 0;
+    version++;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private boolean journaling() {
+    return journal != null && journal.isRecording();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object[] ownedChunk(int chunk) {
+    if (!owned[chunk]) {
+      Object[] elements = chunks[chunk].clone();
+      if (elementCopier != null) {
+        for (int i = 0; i < elements.length; i++) {
+          if (elements[i] != null) {
+            elements[i] = elementCopier.apply((E) elements[i]);
+          }
+        }
+      }
+      chunks[chunk] = elements;
+      owned[chunk] = true;
+    }
+    return chunks[chunk];
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A growable list of primitive longs stored as copy-on-write chunks. It is a {@code List<Long>} so
+ * that it can sit behind the existing state getters, but hot paths should use {@link
+ * #getLong(int)}, {@link #setLong(int, long)} and {@link #increment(int, long)}, which do not box.
+ *
+ * <p>Like {@link CopyOnWriteChunkedList}, {@link #fork()} is constant time and a chunk is only
+ * copied the first time one of the lists sharing it writes to it.
+ *
+ * <p>While a {@link StateJournal} is attached, every write records how to undo it.
+ */
+public final class LongList extends AbstractList<Long>
+    implements RandomAccess, StateJournal.Target {
+
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  private long[][] chunks;
+  private boolean[] owned;
+  private int size;
+  private long version;
+  private boolean modified = true;
+  private Bytes encoded;
+  private long encodedVersion;
+  private StateJournal journal;
+
+  public LongList() {
+    this.chunks = new long[0][];
+    this.owned = new boolean[0];
+  }
+
+  /**
+   * Returns a list with the same values as the source list. A LongList source is forked, any other
+   * list is copied.
+   *
+   * @param source - The list to copy.
+   * @return A list that can be mutated without affecting the source list.
+   */
+  public static LongList copyOf(List<Long> source) {
+    if (source instanceof LongList) {
+      return ((LongList) source).fork();
+    }
+    LongList list = new LongList();
+    for (long value : source) {
+      list.addLong(value);
+    }
+    return list;
+  }
+
+  /**
+   * Returns a list that shares all chunks with this one.
+   *
+   * @return The forked list.
+   */
+  public LongList fork() {
+    Arrays.fill(owned, false);
+    LongList fork = new LongList();
+    fork.chunks = chunks.clone();
+    fork.owned = new boolean[chunks.length];
+    fork.size = size;
+    fork.version = version;
+    fork.modified = modified;
+    fork.encoded = encoded;
+    fork.encodedVersion = encodedVersion;
+    return fork;
+  }
+
+  @Override
+  public void setJournal(StateJournal journal) {
+    this.journal = journal;
+  }
+
+  public long getLong(int index) {
+    checkElementIndex(index, size);
+    return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+  }
+
+  public long setLong(int index, long value) {
+    checkElementIndex(index, size);
+    long[] values = ownedChunk(index >>> CHUNK_BITS);
+    long previous = values[index & CHUNK_MASK];
+    values[index & CHUNK_MASK] = value;
+    modified = true;
+    if (journaling()) {
+      journal.record(() -> setLong(index, previous));
+    }
+    return previous;
+  }
+
+  /**
+   * Adds the given delta to the value at the given index.
+   *
+   * @param index - The index of the value.
+   * @param delta - The amount to add, which may be negative.
+   */
+  public void increment(int index, long delta) {
+    checkElementIndex(index, size);
+    ownedChunk(index >>> CHUNK_BITS)[index & CHUNK_MASK] += delta;
+    modified = true;
+    if (journaling()) {
+      journal.record(() -> increment(index, -delta));
+    }
+  }
+
+  public void addLong(long value) {
+    if (journaling()) {
+      int index = size;
+      journal.record(() -> remove(index));
+    }
+    int chunk = size >>> CHUNK_BITS;
+    if (chunk == chunks.length) {
+      int capacity = Math.max(1, chunks.length * 2);
+      chunks = Arrays.copyOf(chunks, capacity);
+      owned = Arrays.copyOf(owned, capacity);
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = new long[CHUNK_SIZE];
+      owned[chunk] = true;
+    }
+    ownedChunk(chunk)[size & CHUNK_MASK] = value;
+    size++;
+    modified = true;
+    modCount++;
+  }
+
+  /**
+   * Returns a version that changes whenever the list is modified. Two lists reporting the same
+   * version hold the same values, even across forks.
+   *
+   * @return The current version of the list.
+   */
+  public long version() {
+    if (modified) {
+      version = VERSIONS.incrementAndGet();
+      modified = false;
+    }
+    return version;
+  }
+
+  /**
+   * Returns the encoding of this list, reusing the previous result as long as the list has not been
+   * modified since.
+   *
+   * @param encoder - Encodes the whole list.
+   * @return The encoding of the list.
+   */
+  public Bytes encoded(Function<List<Long>, Bytes> encoder) {
+    long currentVersion = version();
+    if (encoded == null || encodedVersion != currentVersion) {
+      encoded = encoder.apply(this);
+      encodedVersion = currentVersion;
+    }
+    return encoded;
+  }
+
+  @Override
+  public Long get(int index) {
+    return getLong(index);
+  }
+
+  @Override
+  public Long set(int index, Long value) {
+    return setLong(index, value);
+  }
+
+  @Override
+  public boolean add(Long value) {
+    addLong(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Long value) {
+    checkPositionIndex(index, size);
+    addLong(value);
+    for (int i = size - 1; i > index; i--) {
+      setLong(i, getLong(i - 1));
+    }
+    setLong(index, value);
+  }
+
+  @Override
+  public Long remove(int index) {
+    long removed = getLong(index);
+    for (int i = index; i < size - 1; i++) {
+      setLong(i, getLong(i + 1));
+    }
+    setLong(size - 1, 0L);
+    size--;
+    modCount++;
+    if (journaling()) {
+      journal.record(() -> addLong(0L));
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    if (journaling()) {
+      long[][] previousChunks = chunks;
+      boolean[] previousOwned = owned;
+      int previousSize = size;
+      journal.record(
+          () -> {
+            chunks = previousChunks;
+            owned = previousOwned;
+            size = previousSize;
+            modified = true;
+            modCount++;
+          });
+    }
+    chunks = new long[0][];
+    owned = new boolean[0];
+    size = 0;
+    modified = true;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private boolean journaling() {
+    return journal != null && journal.isRecording();
+  }
+
+  private long[] ownedChunk(int chunk) {
+    if (!owned[chunk]) {
+      chunks[chunk] = chunks[chunk].clone();
+      owned[chunk] = true;
+    }
+    return chunks[chunk];
+  }
+}
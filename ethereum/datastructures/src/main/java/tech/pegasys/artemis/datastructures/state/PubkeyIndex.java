@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.artemis.util.bls.BLSPublicKey;
+
+/**
+ * Maps validator public keys to their indices in the registry. Validators are only ever appended to
+ * the registry and never change their public key, so a state and all of its copies agree on the
+ * validator at every index up to the point where their registries diverge.
+ *
+ * <p>This allows a single index to be shared by a state and all of its copies. It records every
+ * index a public key has been seen at in any of them, and lookups confirm the candidates against
+ * the registry they are made for.
+ */
+public class PubkeyIndex {
+
+  private static final int[] NO_INDICES = new int[0];
+
+  private final Map<Bytes, int[]> indices = new HashMap<>();
+
+  /**
+   * Records that the validator at the given index of some registry has the given public key.
+   *
+   * @param pubkey - The public key of the validator.
+   * @param index - The index of the validator.
+   */
+  public void add(BLSPublicKey pubkey, int index) {
+    // Keyed by the serialized form, which unlike the curve point has a content based hash
+    Bytes key = pubkey.toBytes();
+    synchronized (indices) {
+      int[] candidates = indices.getOrDefault(key, NO_INDICES);
+      if (Arrays.stream(candidates).noneMatch(candidate -> candidate == index)) {
+        int[] updated = Arrays.copyOf(candidates, candidates.length + 1);
+        updated[candidates.length] = index;
+        indices.put(key, updated);
+      }
+    }
+  }
+
+  /**
+   * Returns the lowest index of the given registry holding a validator with the given public key.
+   *
+   * @param validators - The registry under consideration. All of its validators must have been
+   *     added.
+   * @param pubkey - The public key to look up.
+   * @return The index of the validator, or -1 if there is none.
+   */
+  public int indexOf(List<Validator> validators, BLSPublicKey pubkey) {
+    int[] candidates;
+    synchronized (indices) {
+      candidates = indices.getOrDefault(pubkey.toBytes(), NO_INDICES);
+    }
+    int index = -1;
+    for (int candidate : candidates) {
+      if (candidate < validators.size()
+          && (index < 0 || candidate < index)
+          && pubkey.equals(getPubkey(validators, candidate))) {
+        index = candidate;
+      }
+    }
+    return index;
+  }
+
+  public int size() {
+    synchronized (indices) {
+      return indices.size();
+    }
+  }
+
+  static BLSPublicKey getPubkey(List<Validator> validators, int index) {
+    if (validators instanceof ValidatorRegistry) {
+      return ((ValidatorRegistry) validators).getPubkey(index);
+    }
+    return CopyOnWriteChunkedList.peek(validators, index).getPubkey();
+  }
+}
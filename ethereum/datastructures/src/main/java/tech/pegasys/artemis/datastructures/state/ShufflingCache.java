@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Caches the result of get_shuffling(). A shuffling is fully determined by the seed, the shuffling
+ * epoch and the set of active validator indices, so entries are keyed by exactly those values and
+ * never need to be invalidated: a registry or seed change simply produces a different key.
+ *
+ * <p>Because entries are content addressed, a single cache can be shared by a state and all of its
+ * copies. Cached shufflings must be treated as read only.
+ */
+public class ShufflingCache {
+
+  // previous, current and next epoch, with and without a registry change, for a couple of forks
+  private static final int MAX_ENTRIES = 16;
+
+  private final Map<Key, List<List<Integer>>> shufflings =
+      new LinkedHashMap<Key, List<List<Integer>>>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<List<Integer>>> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  public List<List<Integer>> get(
+      Bytes32 seed,
+      long epoch,
+      int[] active_validator_indices,
+      Supplier<List<List<Integer>>> shuffling) {
+    Key key = new Key(seed, epoch, active_validator_indices);
+    synchronized (shufflings) {
+      List<List<Integer>> cached = shufflings.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // Compute outside of the lock, two threads racing on the same key produce equal results
+    List<List<Integer>> computed = shuffling.get();
+    synchronized (shufflings) {
+      shufflings.putIfAbsent(key, computed);
+    }
+    return computed;
+  }
+
+  public int size() {
+    synchronized (shufflings) {
+      return shufflings.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (shufflings) {
+      shufflings.clear();
+    }
+  }
+
+  private static final class Key {
+    private final Bytes32 seed;
+    private final long epoch;
+    private final int[] active_validator_indices;
+    private final int hashCode;
+
+    Key(Bytes32 seed, long epoch, int[] active_validator_indices) {
+      this.seed = seed;
+      this.epoch = epoch;
+      this.active_validator_indices = active_validator_indices;
+      this.hashCode = Objects.hash(seed, epoch, Arrays.hashCode(active_validator_indices));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return epoch == other.epoch
+          && hashCode == other.hashCode
+          && Objects.equals(seed, other.seed)
+          && Arrays.equals(active_validator_indices, other.active_validator_indices);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records how to undo the writes made to a state, so that a block can be applied to the state in
+ * place and undone if it turns out to be invalid, instead of being applied to a copy.
+ *
+ * <p>A journal is started with {@link BeaconState#startJournal()}. From then on the setters of the
+ * state and the write paths of its {@link ValidatorRegistry}, {@link LongList} and {@link
+ * CopyOnWriteChunkedList} lists record one entry per write. {@link #rollback()} runs the entries
+ * newest first, and since they go through the same write paths, the queues, encodings and versions
+ * kept by the lists stay consistent.
+ *
+ * <p>{@link #close()} stops recording but keeps the entries, so the state can still be taken back
+ * to where the journal started, provided every journal started after it has been rolled back first.
+ *
+ * <p>Like the lists, a journal must not be written to concurrently.
+ */
+public final class StateJournal {
+
+  private final Deque<Runnable> entries = new ArrayDeque<>();
+  private boolean recording = true;
+
+  /**
+   * Records an entry that undoes a write, unless the journal has been closed or rolled back.
+   *
+   * @param undo - Undoes the write.
+   */
+  public void record(Runnable undo) {
+    if (recording) {
+      entries.push(undo);
+    }
+  }
+
+  public boolean isRecording() {
+    return recording;
+  }
+
+  /** Stops recording writes, keeping the entries recorded so far. */
+  public void close() {
+    recording = false;
+  }
+
+  /** Stops recording writes and undoes every write recorded so far, newest first. */
+  public void rollback() {
+    recording = false;
+    while (!entries.isEmpty()) {
+      entries.pop().run();
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /** A list whose writes can be recorded in a journal. */
+  interface Target {
+
+    /**
+     * Records how to undo every later write to the list in the given journal, for as long as the
+     * journal is recording. Forks of the list do not inherit the journal.
+     *
+     * @param journal - The journal to record in.
+     */
+    void setJournal(StateJournal journal);
+  }
+}
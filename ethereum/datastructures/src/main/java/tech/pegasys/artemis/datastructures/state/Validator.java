@@ -36,6 +36,8 @@ public class Validator implements Copyable<Validator> {
   private boolean initiated_exit;
   // Was the validator slashed
   private boolean slashed;
+  // SSZ encoding, cleared by every setter
+  private Bytes encoded;
 
   public Validator(
       BLSPublicKey pubkey,
@@ -54,6 +56,9 @@ public class Validator implements Copyable<Validator> {
     this.slashed = slashed;
   }
 
+  /** Used by views onto a {@link ValidatorRegistry}, which keep their fields in the registry. */
+  Validator() {}
+
   public Validator(Validator validator) {
     this.pubkey = new BLSPublicKey(validator.getPubkey().getPublicKey());
     this.withdrawal_credentials = validator.getWithdrawal_credentials().copy();
@@ -62,6 +67,7 @@ public class Validator implements Copyable<Validator> {
     this.withdrawal_epoch = validator.getWithdrawal_epoch();
     this.initiated_exit = validator.hasInitiatedExit();
     this.slashed = validator.isSlashed();
+    this.encoded = validator.encoded;
   }
 
   @Override
@@ -84,6 +90,28 @@ public class Validator implements Copyable<Validator> {
   }
 
   public Bytes toBytes() {
+    if (encoded == null) {
+      encoded =
+          encode(
+              pubkey,
+              withdrawal_credentials,
+              activation_epoch,
+              exit_epoch,
+              withdrawal_epoch,
+              initiated_exit,
+              slashed);
+    }
+    return encoded;
+  }
+
+  static Bytes encode(
+      BLSPublicKey pubkey,
+      Bytes32 withdrawal_credentials,
+      long activation_epoch,
+      long exit_epoch,
+      long withdrawal_epoch,
+      boolean initiated_exit,
+      boolean slashed) {
     return SSZ.encode(
         writer -> {
           writer.writeBytes(pubkey.toBytes());
@@ -99,13 +127,13 @@ public class Validator implements Copyable<Validator> {
   @Override
   public int hashCode() {
     return Objects.hash(
-        pubkey,
-        withdrawal_credentials,
-        activation_epoch,
-        exit_epoch,
-        withdrawal_epoch,
-        initiated_exit,
-        slashed);
+        getPubkey(),
+        getWithdrawal_credentials(),
+        getActivation_epoch(),
+        getExit_epoch(),
+        getWithdrawal_epoch(),
+        hasInitiatedExit(),
+        isSlashed());
   }
 
   @Override
@@ -138,6 +166,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setPubkey(BLSPublicKey pubkey) {
     this.pubkey = pubkey;
+    this.encoded = null;
   }
 
   public Bytes32 getWithdrawal_credentials() {
@@ -146,6 +175,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setWithdrawal_credentials(Bytes32 withdrawal_credentials) {
     this.withdrawal_credentials = withdrawal_credentials;
+    this.encoded = null;
   }
 
   public long getActivation_epoch() {
@@ -154,6 +184,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setActivation_epoch(long activation_epoch) {
     this.activation_epoch = activation_epoch;
+    this.encoded = null;
   }
 
   public long getExit_epoch() {
@@ -162,6 +193,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setExit_epoch(long exit_epoch) {
     this.exit_epoch = exit_epoch;
+    this.encoded = null;
   }
 
   public long getWithdrawal_epoch() {
@@ -170,6 +202,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setWithdrawal_epoch(long withdrawal_epoch) {
     this.withdrawal_epoch = withdrawal_epoch;
+    this.encoded = null;
   }
 
   public boolean hasInitiatedExit() {
@@ -178,6 +211,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setInitiatedExit(boolean initiated_exit) {
     this.initiated_exit = initiated_exit;
+    this.encoded = null;
   }
 
   public boolean isSlashed() {
@@ -186,6 +220,7 @@ public class Validator implements Copyable<Validator> {
 
   public void setSlashed(boolean slashed) {
     this.slashed = slashed;
+    this.encoded = null;
   }
 
   /**
@@ -198,6 +233,10 @@ public class Validator implements Copyable<Validator> {
    *     - Spec v0.4</a>
    */
   public boolean is_active_validator(long epoch) {
+    return is_active_validator(activation_epoch, exit_epoch, epoch);
+  }
+
+  static boolean is_active_validator(long activation_epoch, long exit_epoch, long epoch) {
     if (exit_epoch == -1) {
       return activation_epoch <= epoch;
     }
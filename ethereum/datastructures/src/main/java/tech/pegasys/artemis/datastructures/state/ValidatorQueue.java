@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Validator indices ordered by an epoch, then by a second epoch, then by index. Epochs are compared
+ * as signed values, like the spec logic in this code base does, so that {@code FAR_FUTURE_EPOCH}
+ * sorts where it always has.
+ *
+ * <p>A queue is not thread-safe. {@link ValidatorRegistry} copies it before writing to a queue it
+ * shares with a fork.
+ */
+final class ValidatorQueue {
+
+  private final NavigableSet<Entry> entries;
+
+  ValidatorQueue() {
+    this.entries = new TreeSet<>();
+  }
+
+  private ValidatorQueue(NavigableSet<Entry> entries) {
+    this.entries = entries;
+  }
+
+  ValidatorQueue copy() {
+    return new ValidatorQueue(new TreeSet<>(entries));
+  }
+
+  void add(long epoch, long second_epoch, int index) {
+    entries.add(new Entry(epoch, second_epoch, index));
+  }
+
+  void remove(long epoch, long second_epoch, int index) {
+    entries.remove(new Entry(epoch, second_epoch, index));
+  }
+
+  /**
+   * Returns the indices queued at the given epoch whose second epoch is in the given range, in
+   * queue order.
+   *
+   * @param epoch - The epoch under consideration.
+   * @param from_second_epoch - The lowest second epoch to include.
+   * @param to_second_epoch - The highest second epoch to include.
+   * @param limit - The maximum number of indices to return.
+   * @return The indices, in queue order.
+   */
+  int[] get(long epoch, long from_second_epoch, long to_second_epoch, int limit) {
+    if (from_second_epoch > to_second_epoch || limit <= 0) {
+      return new int[0];
+    }
+    NavigableSet<Entry> range =
+        entries.subSet(
+            new Entry(epoch, from_second_epoch, Integer.MIN_VALUE),
+            true,
+            new Entry(epoch, to_second_epoch, Integer.MAX_VALUE),
+            true);
+    int[] indices = new int[Math.min(range.size(), limit)];
+    int count = 0;
+    for (Entry entry : range) {
+      if (count == indices.length) {
+        break;
+      }
+      indices[count++] = entry.index;
+    }
+    return Arrays.copyOf(indices, count);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static final class Entry implements Comparable<Entry> {
+    private final long epoch;
+    private final long secondEpoch;
+    private final int index;
+
+    private Entry(long epoch, long secondEpoch, int index) {
+      this.epoch = epoch;
+      this.secondEpoch = secondEpoch;
+      this.index = index;
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      int result = Long.compare(epoch, other.epoch);
+      if (result == 0) {
+        result = Long.compare(secondEpoch, other.secondEpoch);
+      }
+      return result != 0 ? result : Integer.compare(index, other.index);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Entry)) {
+        return false;
+      }
+      Entry other = (Entry) obj;
+      return epoch == other.epoch && secondEpoch == other.secondEpoch && index == other.index;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(epoch) * 31 * 31 + Long.hashCode(secondEpoch) * 31 + index;
+    }
+  }
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.util.bls.BLSPublicKey;
+
+/**
+ * The validator registry stored column by column: one array per {@link Validator} field and a
+ * bitset per flag. {@link #get(int)} returns a view whose getters and setters read and write the
+ * columns, so existing code keeps working on {@code List<Validator>} while scans over a single
+ * field only touch that field's array.
+ *
+ * <p>{@link #fork()} shares every column with the original registry. A column is cloned the first
+ * time either registry writes to it, so copying a state costs a few array clones at most.
+ *
+ * <p>The registry also keeps index-carrying queues of its validators, ordered by activation epoch
+ * and by withdrawal and exit epoch. A queue is built the first time it is queried, then kept up to
+ * date by every write, so finding e.g. the validators pending activation does not scan the
+ * registry. Queues are shared with forks the same way the columns are.
+ *
+ * <p>While a {@link StateJournal} is attached, every write through the registry or one of its views
+ * records how to undo it. Appending is undone without touching the queues; the rarer writes that
+ * shift validators around record a fork of the whole registry instead.
+ */
+public final class ValidatorRegistry extends AbstractList<Validator>
+    implements RandomAccess, StateJournal.Target {
+
+  private static final int PUBKEYS = 1;
+  private static final int WITHDRAWAL_CREDENTIALS = 1 << 1;
+  private static final int ACTIVATION_EPOCHS = 1 << 2;
+  private static final int EXIT_EPOCHS = 1 << 3;
+  private static final int WITHDRAWAL_EPOCHS = 1 << 4;
+  private static final int INITIATED_EXIT = 1 << 5;
+  private static final int SLASHED = 1 << 6;
+  private static final int ENCODED = 1 << 7;
+  private static final int ALL_COLUMNS = (1 << 8) - 1;
+  private static final int ACTIVATION_QUEUE = 1 << 8;
+  private static final int WITHDRAWAL_QUEUE = 1 << 9;
+
+  private BLSPublicKey[] pubkeys;
+  private Bytes32[] withdrawalCredentials;
+  private long[] activationEpochs;
+  private long[] exitEpochs;
+  private long[] withdrawalEpochs;
+  private long[] initiatedExit;
+  private long[] slashed;
+  private Bytes[] encoded;
+  private ValidatorQueue activationQueue;
+  private ValidatorQueue withdrawalQueue;
+  private int size;
+  private int owned;
+  private StateJournal journal;
+
+  public ValidatorRegistry() {
+    this(0);
+  }
+
+  private ValidatorRegistry(int capacity) {
+    pubkeys = new BLSPublicKey[capacity];
+    withdrawalCredentials = new Bytes32[capacity];
+    activationEpochs = new long[capacity];
+    exitEpochs = new long[capacity];
+    withdrawalEpochs = new long[capacity];
+    initiatedExit = new long[bitsetLength(capacity)];
+    slashed = new long[bitsetLength(capacity)];
+    encoded = new Bytes[capacity];
+    owned = ALL_COLUMNS;
+  }
+
+  /**
+   * Returns a registry with the same validators as the source list. A ValidatorRegistry source is
+   * forked, any other list is copied.
+   *
+   * @param source - The list to copy.
+   * @return A registry that can be mutated without affecting the source list.
+   */
+  public static ValidatorRegistry copyOf(List<Validator> source) {
+    if (source instanceof ValidatorRegistry) {
+      return ((ValidatorRegistry) source).fork();
+    }
+    ValidatorRegistry registry = new ValidatorRegistry(source.size());
+    for (Validator validator : source) {
+      registry.add(validator);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns a registry that shares all columns with this one.
+   *
+   * @return The forked registry.
+   */
+  public ValidatorRegistry fork() {
+    owned = 0;
+    ValidatorRegistry fork = new ValidatorRegistry();
+    fork.pubkeys = pubkeys;
+    fork.withdrawalCredentials = withdrawalCredentials;
+    fork.activationEpochs = activationEpochs;
+    fork.exitEpochs = exitEpochs;
+    fork.withdrawalEpochs = withdrawalEpochs;
+    fork.initiatedExit = initiatedExit;
+    fork.slashed = slashed;
+    fork.encoded = encoded;
+    fork.activationQueue = activationQueue;
+    fork.withdrawalQueue = withdrawalQueue;
+    fork.size = size;
+    fork.owned = 0;
+    return fork;
+  }
+
+  @Override
+  public void setJournal(StateJournal journal) {
+    this.journal = journal;
+  }
+
+  public BLSPublicKey getPubkey(int index) {
+    checkElementIndex(index, size);
+    return pubkeys[index];
+  }
+
+  public long getActivationEpoch(int index) {
+    checkElementIndex(index, size);
+    return activationEpochs[index];
+  }
+
+  public long getExitEpoch(int index) {
+    checkElementIndex(index, size);
+    return exitEpochs[index];
+  }
+
+  public long getWithdrawalEpoch(int index) {
+    checkElementIndex(index, size);
+    return withdrawalEpochs[index];
+  }
+
+  public boolean hasInitiatedExit(int index) {
+    checkElementIndex(index, size);
+    return isSet(initiatedExit, index);
+  }
+
+  public boolean isSlashed(int index) {
+    checkElementIndex(index, size);
+    return isSet(slashed, index);
+  }
+
+  /**
+   * Check if the validator with the given index is active in the given epoch, without creating a
+   * view.
+   *
+   * @param index - The index of the validator.
+   * @param epoch - The epoch under consideration.
+   * @return A boolean indicating if the validator is active.
+   */
+  public boolean is_active_validator(int index, long epoch) {
+    checkElementIndex(index, size);
+    return Validator.is_active_validator(activationEpochs[index], exitEpochs[index], epoch);
+  }
+
+  /**
+   * Returns the indices of the validators with the given activation epoch.
+   *
+   * @param activation_epoch - The activation epoch under consideration.
+   * @return The indices, in ascending order.
+   */
+  public int[] getActivationQueue(long activation_epoch) {
+    return buildActivationQueue().get(activation_epoch, 0, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the indices of the validators with the given withdrawal epoch whose exit epoch is in
+   * the given range.
+   *
+   * @param withdrawal_epoch - The withdrawal epoch under consideration.
+   * @param from_exit_epoch - The lowest exit epoch to include.
+   * @param to_exit_epoch - The highest exit epoch to include.
+   * @param limit - The maximum number of indices to return.
+   * @return The indices, ordered by exit epoch and then by index.
+   */
+  public int[] getWithdrawalQueue(
+      long withdrawal_epoch, long from_exit_epoch, long to_exit_epoch, int limit) {
+    return buildWithdrawalQueue().get(withdrawal_epoch, from_exit_epoch, to_exit_epoch, limit);
+  }
+
+  @Override
+  public Validator get(int index) {
+    checkElementIndex(index, size);
+    return new View(index);
+  }
+
+  @Override
+  public Validator set(int index, Validator validator) {
+    checkElementIndex(index, size);
+    Validator previous = get(index).copy();
+    moveInActivationQueue(index, validator.getActivation_epoch());
+    moveInWithdrawalQueue(index, validator.getWithdrawal_epoch(), validator.getExit_epoch());
+    write(index, validator);
+    record(() -> set(index, previous));
+    return previous;
+  }
+
+  @Override
+  public boolean add(Validator validator) {
+    record(this::removeLast);
+    if (size == pubkeys.length) {
+      grow(Math.max(16, size * 2));
+    }
+    size++;
+    write(size - 1, validator);
+    if (activationQueue != null) {
+      ownQueue(ACTIVATION_QUEUE).add(activationEpochs[size - 1], 0, size - 1);
+    }
+    if (withdrawalQueue != null) {
+      ownQueue(WITHDRAWAL_QUEUE).add(withdrawalEpochs[size - 1], exitEpochs[size - 1], size - 1);
+    }
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void add(int index, Validator validator) {
+    checkPositionIndex(index, size);
+    recordFork();
+    add(validator);
+    for (int i = size - 1; i > index; i--) {
+      write(i, get(i - 1));
+    }
+    write(index, validator);
+    // Shifting changes the index of every following validator, so the queues are rebuilt instead
+    dropQueues();
+  }
+
+  @Override
+  public Validator remove(int index) {
+    recordFork();
+    Validator removed = get(index).copy();
+    for (int i = index; i < size - 1; i++) {
+      write(i, get(i + 1));
+    }
+    size--;
+    dropQueues();
+    modCount++;
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    recordFork();
+    ValidatorRegistry empty = new ValidatorRegistry();
+    pubkeys = empty.pubkeys;
+    withdrawalCredentials = empty.withdrawalCredentials;
+    activationEpochs = empty.activationEpochs;
+    exitEpochs = empty.exitEpochs;
+    withdrawalEpochs = empty.withdrawalEpochs;
+    initiatedExit = empty.initiatedExit;
+    slashed = empty.slashed;
+    encoded = empty.encoded;
+    dropQueues();
+    size = 0;
+    owned = ALL_COLUMNS;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void record(Runnable undo) {
+    if (journal != null && journal.isRecording()) {
+      journal.record(undo);
+    }
+  }
+
+  /** Records a fork of the whole registry, for writes that are not worth undoing one by one. */
+  private void recordFork() {
+    if (journal != null && journal.isRecording()) {
+      ValidatorRegistry saved = fork();
+      journal.record(() -> restore(saved));
+    }
+  }
+
+  private void restore(ValidatorRegistry saved) {
+    pubkeys = saved.pubkeys;
+    withdrawalCredentials = saved.withdrawalCredentials;
+    activationEpochs = saved.activationEpochs;
+    exitEpochs = saved.exitEpochs;
+    withdrawalEpochs = saved.withdrawalEpochs;
+    initiatedExit = saved.initiatedExit;
+    slashed = saved.slashed;
+    encoded = saved.encoded;
+    activationQueue = saved.activationQueue;
+    withdrawalQueue = saved.withdrawalQueue;
+    size = saved.size;
+    owned = 0;
+    modCount++;
+  }
+
+  /** Undoes {@link #add(Validator)}, keeping the queues rather than dropping them. */
+  private void removeLast() {
+    int index = size - 1;
+    if (activationQueue != null) {
+      ownQueue(ACTIVATION_QUEUE).remove(activationEpochs[index], 0, index);
+    }
+    if (withdrawalQueue != null) {
+      ownQueue(WITHDRAWAL_QUEUE).remove(withdrawalEpochs[index], exitEpochs[index], index);
+    }
+    invalidateEncoding(index);
+    size--;
+    modCount++;
+  }
+
+  private void write(int index, Validator validator) {
+    ownPubkeys()[index] = validator.getPubkey();
+    ownWithdrawalCredentials()[index] = validator.getWithdrawal_credentials();
+    ownLongs(ACTIVATION_EPOCHS)[index] = validator.getActivation_epoch();
+    ownLongs(EXIT_EPOCHS)[index] = validator.getExit_epoch();
+    ownLongs(WITHDRAWAL_EPOCHS)[index] = validator.getWithdrawal_epoch();
+    setBit(INITIATED_EXIT, index, validator.hasInitiatedExit());
+    setBit(SLASHED, index, validator.isSlashed());
+    invalidateEncoding(index);
+  }
+
+  private Bytes encode(int index) {
+    Bytes encoding = encoded[index];
+    if (encoding == null) {
+      encoding =
+          Validator.encode(
+              pubkeys[index],
+              withdrawalCredentials[index],
+              activationEpochs[index],
+              exitEpochs[index],
+              withdrawalEpochs[index],
+              isSet(initiatedExit, index),
+              isSet(slashed, index));
+      // Any registry still sharing this column holds the same values at this index, since
+      // writing to the index would have cloned the column first.
+      encoded[index] = encoding;
+    }
+    return encoding;
+  }
+
+  private void invalidateEncoding(int index) {
+    if ((owned & ENCODED) == 0) {
+      encoded = encoded.clone();
+      owned |= ENCODED;
+    }
+    encoded[index] = null;
+  }
+
+  private ValidatorQueue buildActivationQueue() {
+    if (activationQueue == null) {
+      activationQueue = new ValidatorQueue();
+      for (int index = 0; index < size; index++) {
+        activationQueue.add(activationEpochs[index], 0, index);
+      }
+      owned |= ACTIVATION_QUEUE;
+    }
+    return activationQueue;
+  }
+
+  private ValidatorQueue buildWithdrawalQueue() {
+    if (withdrawalQueue == null) {
+      withdrawalQueue = new ValidatorQueue();
+      for (int index = 0; index < size; index++) {
+        withdrawalQueue.add(withdrawalEpochs[index], exitEpochs[index], index);
+      }
+      owned |= WITHDRAWAL_QUEUE;
+    }
+    return withdrawalQueue;
+  }
+
+  private void moveInActivationQueue(int index, long activation_epoch) {
+    if (activationQueue != null && activationEpochs[index] != activation_epoch) {
+      ValidatorQueue queue = ownQueue(ACTIVATION_QUEUE);
+      queue.remove(activationEpochs[index], 0, index);
+      queue.add(activation_epoch, 0, index);
+    }
+  }
+
+  private void moveInWithdrawalQueue(int index, long withdrawal_epoch, long exit_epoch) {
+    if (withdrawalQueue != null
+        && (withdrawalEpochs[index] != withdrawal_epoch || exitEpochs[index] != exit_epoch)) {
+      ValidatorQueue queue = ownQueue(WITHDRAWAL_QUEUE);
+      queue.remove(withdrawalEpochs[index], exitEpochs[index], index);
+      queue.add(withdrawal_epoch, exit_epoch, index);
+    }
+  }
+
+  private ValidatorQueue ownQueue(int queue) {
+    boolean shared = (owned & queue) == 0;
+    owned |= queue;
+    switch (queue) {
+      case ACTIVATION_QUEUE:
+        return shared ? (activationQueue = activationQueue.copy()) : activationQueue;
+      case WITHDRAWAL_QUEUE:
+        return shared ? (withdrawalQueue = withdrawalQueue.copy()) : withdrawalQueue;
+      default:
+        throw new IllegalArgumentException("Not a queue: " + queue);
+    }
+  }
+
+  private void dropQueues() {
+    activationQueue = null;
+    withdrawalQueue = null;
+  }
+
+  private BLSPublicKey[] ownPubkeys() {
+    if ((owned & PUBKEYS) == 0) {
+      pubkeys = pubkeys.clone();
+      owned |= PUBKEYS;
+    }
+    return pubkeys;
+  }
+
+  private Bytes32[] ownWithdrawalCredentials() {
+    if ((owned & WITHDRAWAL_CREDENTIALS) == 0) {
+      withdrawalCredentials = withdrawalCredentials.clone();
+      owned |= WITHDRAWAL_CREDENTIALS;
+    }
+    return withdrawalCredentials;
+  }
+
+  private long[] ownLongs(int column) {
+    boolean shared = (owned & column) == 0;
+    owned |= column;
+    switch (column) {
+      case ACTIVATION_EPOCHS:
+        return shared ? (activationEpochs = activationEpochs.clone()) : activationEpochs;
+      case EXIT_EPOCHS:
+        return shared ? (exitEpochs = exitEpochs.clone()) : exitEpochs;
+      case WITHDRAWAL_EPOCHS:
+        return shared ? (withdrawalEpochs = withdrawalEpochs.clone()) : withdrawalEpochs;
+      case INITIATED_EXIT:
+        return shared ? (initiatedExit = initiatedExit.clone()) : initiatedExit;
+      case SLASHED:
+        return shared ? (slashed = slashed.clone()) : slashed;
+      default:
+        throw new IllegalArgumentException("Not a long column: " + column);
+    }
+  }
+
+  private void setBit(int column, int index, boolean value) {
+    long[] bits = ownLongs(column);
+    if (value) {
+      bits[index >>> 6] |= 1L << index;
+    } else {
+      bits[index >>> 6] &= ~(1L << index);
+    }
+  }
+
+  private static boolean isSet(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  private static int bitsetLength(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
+  private void grow(int capacity) {
+    pubkeys = Arrays.copyOf(pubkeys, capacity);
+    withdrawalCredentials = Arrays.copyOf(withdrawalCredentials, capacity);
+    activationEpochs = Arrays.copyOf(activationEpochs, capacity);
+    exitEpochs = Arrays.copyOf(exitEpochs, capacity);
+    withdrawalEpochs = Arrays.copyOf(withdrawalEpochs, capacity);
+    initiatedExit = Arrays.copyOf(initiatedExit, bitsetLength(capacity));
+    slashed = Arrays.copyOf(slashed, bitsetLength(capacity));
+    encoded = Arrays.copyOf(encoded, capacity);
+    // Growing copies the columns, but leaves the queues shared
+    owned |= ALL_COLUMNS;
+  }
+
+  /** A validator whose fields live in the registry's columns. */
+  private final class View extends Validator {
+
+    private final int index;
+
+    private View(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public BLSPublicKey getPubkey() {
+      return new BLSPublicKey(pubkeys[index].getPublicKey());
+    }
+
+    @Override
+    public void setPubkey(BLSPublicKey pubkey) {
+      BLSPublicKey previous = pubkeys[index];
+      record(() -> setPubkey(previous));
+      ownPubkeys()[index] = pubkey;
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public Bytes32 getWithdrawal_credentials() {
+      return withdrawalCredentials[index].copy();
+    }
+
+    @Override
+    public void setWithdrawal_credentials(Bytes32 withdrawal_credentials) {
+      Bytes32 previous = withdrawalCredentials[index];
+      record(() -> setWithdrawal_credentials(previous));
+      ownWithdrawalCredentials()[index] = withdrawal_credentials;
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public long getActivation_epoch() {
+      return activationEpochs[index];
+    }
+
+    @Override
+    public void setActivation_epoch(long activation_epoch) {
+      long previous = activationEpochs[index];
+      record(() -> setActivation_epoch(previous));
+      moveInActivationQueue(index, activation_epoch);
+      ownLongs(ACTIVATION_EPOCHS)[index] = activation_epoch;
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public long getExit_epoch() {
+      return exitEpochs[index];
+    }
+
+    @Override
+    public void setExit_epoch(long exit_epoch) {
+      long previous = exitEpochs[index];
+      record(() -> setExit_epoch(previous));
+      moveInWithdrawalQueue(index, withdrawalEpochs[index], exit_epoch);
+      ownLongs(EXIT_EPOCHS)[index] = exit_epoch;
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public long getWithdrawal_epoch() {
+      return withdrawalEpochs[index];
+    }
+
+    @Override
+    public void setWithdrawal_epoch(long withdrawal_epoch) {
+      long previous = withdrawalEpochs[index];
+      record(() -> setWithdrawal_epoch(previous));
+      moveInWithdrawalQueue(index, withdrawal_epoch, exitEpochs[index]);
+      ownLongs(WITHDRAWAL_EPOCHS)[index] = withdrawal_epoch;
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public boolean hasInitiatedExit() {
+      return isSet(initiatedExit, index);
+    }
+
+    @Override
+    public void setInitiatedExit(boolean initiated_exit) {
+      boolean previous = isSet(initiatedExit, index);
+      record(() -> setInitiatedExit(previous));
+      setBit(INITIATED_EXIT, index, initiated_exit);
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public boolean isSlashed() {
+      return isSet(slashed, index);
+    }
+
+    @Override
+    public void setSlashed(boolean slashed) {
+      boolean previous = isSet(ValidatorRegistry.this.slashed, index);
+      record(() -> setSlashed(previous));
+      setBit(SLASHED, index, slashed);
+      invalidateEncoding(index);
+    }
+
+    @Override
+    public Bytes toBytes() {
+      return encode(index);
+    }
+
+    @Override
+    public boolean is_active_validator(long epoch) {
+      return ValidatorRegistry.this.is_active_validator(index, epoch);
+    }
+  }
+}
@@ -509,7 +509,7 @@ public class AttestationUtil {
   public static long total_attesting_balance(
       BeaconState state, CrosslinkCommittee crosslink_committee) {
     List<Integer> attesting_validators = attesting_validators(state, crosslink_committee);
-    LOG.log(Level.DEBUG, "Attesting validators: " + attesting_validators);
+    LOG.log(Level.DEBUG, () -> "Attesting validators: " + attesting_validators);
     return BeaconStateUtil.get_total_balance(state, attesting_validators);
   }
 
@@ -599,12 +599,12 @@ public class AttestationUtil {
     long slot = headState.getSlot();
     ArrayList<CrosslinkCommittee> crosslinkCommittees =
         BeaconStateUtil.get_crosslink_committees_at_slot(headState, slot);
-    Bytes32 headBlockRoot = HashTreeUtil.hash_tree_root(headBlock.toBytes());
+    Bytes32 headBlockRoot = headBlock.hashTreeRoot();
     Bytes32 crosslinkDataRoot = Bytes32.ZERO;
     long epochStartSlot = BeaconStateUtil.get_epoch_start_slot(BeaconStateUtil.slot_to_epoch(slot));
     Bytes32 epochBoundaryRoot;
     if (epochStartSlot == slot) {
-      epochBoundaryRoot = HashTreeUtil.hash_tree_root(headBlock.toBytes());
+      epochBoundaryRoot = headBlock.hashTreeRoot();
     } else {
       epochBoundaryRoot = BeaconStateUtil.get_block_root(headState, epochStartSlot);
     }
@@ -35,9 +35,11 @@ import static tech.pegasys.artemis.util.hashtree.HashTreeUtil.hash_tree_root;
 import static tech.pegasys.artemis.util.hashtree.HashTreeUtil.integerListHashTreeRoot;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Ints;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
@@ -45,7 +47,6 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
-import org.apache.tuweni.crypto.Hash;
 import tech.pegasys.artemis.datastructures.Constants;
 import tech.pegasys.artemis.datastructures.blocks.Eth1Data;
 import tech.pegasys.artemis.datastructures.operations.AttestationData;
@@ -57,11 +58,14 @@ import tech.pegasys.artemis.datastructures.state.BeaconState;
 import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 import tech.pegasys.artemis.datastructures.state.CrosslinkCommittee;
 import tech.pegasys.artemis.datastructures.state.Fork;
+import tech.pegasys.artemis.datastructures.state.LongList;
 import tech.pegasys.artemis.datastructures.state.Validator;
+import tech.pegasys.artemis.util.Hasher;
 import tech.pegasys.artemis.util.alogger.ALogger;
 import tech.pegasys.artemis.util.bls.BLSException;
 import tech.pegasys.artemis.util.bls.BLSPublicKey;
 import tech.pegasys.artemis.util.bls.BLSSignature;
+import tech.pegasys.artemis.util.hashtree.Merkleizer;
 
 public class BeaconStateUtil {
 
@@ -74,9 +78,11 @@ public class BeaconStateUtil {
       Eth1Data latest_eth1_data)
       throws IllegalStateException {
 
-    // Process genesis deposits
+    // Process genesis deposits. Their proofs of possession are independent of each other and
+    // dominate the cost of processing, so they are all verified up front, in parallel.
+    verify_proofs_of_possession(state, genesis_validator_deposits);
     for (Deposit deposit : genesis_validator_deposits) {
-      process_deposit(state, deposit);
+      process_deposit(state, deposit, false);
     }
     // Process genesis activations
     for (int validator_index = 0;
@@ -88,8 +94,7 @@ public class BeaconStateUtil {
     }
     Bytes32 genesis_active_index_root =
         integerListHashTreeRoot(
-            ValidatorsUtil.get_active_validator_indices(
-                state.getValidator_registry(), GENESIS_EPOCH));
+            ValidatorsUtil.get_active_validator_indices(state, GENESIS_EPOCH));
     for (int index = 0; index < LATEST_ACTIVE_INDEX_ROOTS_LENGTH; index++) {
       state.getLatest_active_index_roots().set(index, genesis_active_index_root);
     }
@@ -163,8 +168,7 @@ public class BeaconStateUtil {
       }
     }
 
-    List<List<Integer>> shuffling =
-        get_shuffling(seed, state.getValidator_registry(), shuffling_epoch);
+    List<List<Integer>> shuffling = get_shuffling(state, seed, shuffling_epoch);
     long offset = slot % SLOTS_PER_EPOCH;
     long committees_per_slot = committees_per_epoch / SLOTS_PER_EPOCH;
     long slot_start_shard =
@@ -203,10 +207,8 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   private static long get_previous_epoch_committee_count(BeaconState state) {
-    List<Integer> previous_active_validators =
-        ValidatorsUtil.get_active_validator_indices(
-            state.getValidator_registry(), state.getPrevious_shuffling_epoch());
-    return get_epoch_committee_count(previous_active_validators.size());
+    return get_epoch_committee_count(
+        ValidatorsUtil.get_active_validator_count(state, state.getPrevious_shuffling_epoch()));
   }
 
   /**
@@ -219,10 +221,8 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   public static long get_current_epoch_committee_count(BeaconState state) {
-    List<Integer> current_active_validators =
-        ValidatorsUtil.get_active_validator_indices(
-            state.getValidator_registry(), state.getCurrent_shuffling_epoch());
-    return get_epoch_committee_count(current_active_validators.size());
+    return get_epoch_committee_count(
+        ValidatorsUtil.get_active_validator_count(state, state.getCurrent_shuffling_epoch()));
   }
 
   /**
@@ -235,10 +235,8 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   private static long get_next_epoch_committee_count(BeaconState state) {
-    List<Integer> next_active_validators =
-        ValidatorsUtil.get_active_validator_indices(
-            state.getValidator_registry(), get_current_epoch(state) + 1);
-    return get_epoch_committee_count(next_active_validators.size());
+    return get_epoch_committee_count(
+        ValidatorsUtil.get_active_validator_count(state, get_current_epoch(state) + 1));
   }
 
   /**
@@ -256,7 +254,7 @@ public class BeaconStateUtil {
     Bytes32 randao_mix = get_randao_mix(state, epoch - Constants.MIN_SEED_LOOKAHEAD);
     Bytes32 index_root = get_active_index_root(state, epoch);
     Bytes32 epochBytes = int_to_bytes32(epoch);
-    return Hash.keccak256(Bytes.wrap(randao_mix, index_root, epochBytes));
+    return Hasher.hash(randao_mix, index_root, epochBytes);
   }
 
   /**
@@ -300,7 +298,41 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   public static long get_effective_balance(BeaconState state, int index) {
-    return Math.min(state.getValidator_balances().get(index), Constants.MAX_DEPOSIT_AMOUNT);
+    List<Long> balances = state.getValidator_balances();
+    long balance =
+        balances instanceof LongList ? ((LongList) balances).getLong(index) : balances.get(index);
+    return Math.min(balance, Constants.MAX_DEPOSIT_AMOUNT);
+  }
+
+  /**
+   * Increases the balance of the validator with the given index by the given delta.
+   *
+   * <p><b>Note:</b> This is a convenience method which is not defined in the spec.
+   *
+   * @param state - The BeaconState under consideration. NOTE: The state is mutated.
+   * @param index - The index of the validator.
+   * @param delta - The amount to add to the balance.
+   */
+  public static void increase_balance(BeaconState state, int index, long delta) {
+    List<Long> balances = state.getValidator_balances();
+    if (balances instanceof LongList) {
+      ((LongList) balances).increment(index, delta);
+    } else {
+      balances.set(index, balances.get(index) + delta);
+    }
+  }
+
+  /**
+   * Decreases the balance of the validator with the given index by the given delta.
+   *
+   * <p><b>Note:</b> This is a convenience method which is not defined in the spec.
+   *
+   * @param state - The BeaconState under consideration. NOTE: The state is mutated.
+   * @param index - The index of the validator.
+   * @param delta - The amount to subtract from the balance.
+   */
+  public static void decrease_balance(BeaconState state, int index, long delta) {
+    increase_balance(state, index, -delta);
   }
 
   /**
@@ -326,9 +358,33 @@ public class BeaconStateUtil {
    */
   public static long previous_total_balance(BeaconState state) {
     long previous_epoch = BeaconStateUtil.get_previous_epoch(state);
-    List<Integer> previous_active_validators =
-        ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), previous_epoch);
-    return get_total_balance(state, previous_active_validators);
+    return get_total_active_balance(state, previous_epoch);
+  }
+
+  /**
+   * Returns the combined effective balance of the validators active at the given epoch.
+   *
+   * <p><b>Note:</b> This is a convenience method which is not defined in the spec.
+   *
+   * @param state - The current BeaconState.
+   * @param epoch - The epoch under consideration.
+   * @return The combined effective balance of the active validators.
+   */
+  public static long get_total_active_balance(BeaconState state, long epoch) {
+    if (!(state instanceof BeaconStateWithCache)) {
+      return get_total_balance(state, ValidatorsUtil.get_active_validator_indices(state, epoch));
+    }
+    BeaconStateWithCache cachedState = (BeaconStateWithCache) state;
+    int[] active_validator_indices = cachedState.getActiveValidatorIndices(epoch);
+    return cachedState.getTotalActiveBalance(
+        epoch,
+        () -> {
+          long total_balance = 0;
+          for (int index : active_validator_indices) {
+            total_balance += get_effective_balance(state, index);
+          }
+          return total_balance;
+        });
   }
 
   /**
@@ -466,6 +522,7 @@ public class BeaconStateUtil {
     }
 
     validator.setExit_epoch(exit_epoch);
+    update_active_validator_index(state, index);
   }
 
   /**
@@ -497,14 +554,8 @@ public class BeaconStateUtil {
                 + get_effective_balance(state, index));
     int whistleblower_index = get_beacon_proposer_index(state, state.getSlot());
     long whistleblower_reward = get_effective_balance(state, index) / WHISTLEBLOWER_REWARD_QUOTIENT;
-    state
-        .getValidator_balances()
-        .set(
-            whistleblower_index,
-            state.getValidator_balances().get(whistleblower_index) + whistleblower_reward);
-    state
-        .getValidator_balances()
-        .set(index, state.getValidator_balances().get(index) - whistleblower_reward);
+    increase_balance(state, whistleblower_index, whistleblower_reward);
+    decrease_balance(state, index, whistleblower_reward);
 
     validator.setSlashed(true);
   }
@@ -574,14 +625,7 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   public static Bytes32 merkle_root(List<Bytes32> list) throws IllegalStateException {
-    Bytes32[] o = new Bytes32[list.size() * 2];
-    for (int i = 0; i < list.size(); i++) {
-      o[i + list.size()] = list.get(i);
-    }
-    for (int i = list.size() - 1; i > 0; i--) {
-      o[i] = Hash.keccak256(Bytes.wrap(o[i * 2], o[i * 2 + 1]));
-    }
-    return o[1];
+    return Merkleizer.merkleRoot(list);
   }
 
   /**
@@ -619,6 +663,35 @@ public class BeaconStateUtil {
 
     List<Integer> active_validator_indices =
         ValidatorsUtil.get_active_validator_indices(validators, epoch);
+    return compute_shuffling(seed, active_validator_indices);
+  }
+
+  /**
+   * Returns the shuffling for the given seed and epoch, reusing the state's shuffling cache when
+   * there is one so that an epoch's committees are only computed once.
+   *
+   * <p><b>This method is defined for convenience and is not mentioned in the spec.</b>
+   *
+   * @param state - The BeaconState under consideration.
+   * @param seed - A shuffling seed.
+   * @param epoch - Epoch under consideration.
+   * @return A list of committees (each of list of validator indices)
+   */
+  public static List<List<Integer>> get_shuffling(BeaconState state, Bytes32 seed, long epoch)
+      throws IllegalStateException {
+    if (!(state instanceof BeaconStateWithCache)) {
+      return compute_shuffling(
+          seed, ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), epoch));
+    }
+    int[] active_indices = ((BeaconStateWithCache) state).getActiveValidatorIndices(epoch);
+    List<Integer> active_validator_indices = Ints.asList(active_indices);
+    return ((BeaconStateWithCache) state)
+        .getShufflingCache()
+        .get(seed, epoch, active_indices, () -> compute_shuffling(seed, active_validator_indices));
+  }
+
+  private static List<List<Integer>> compute_shuffling(
+      Bytes32 seed, List<Integer> active_validator_indices) {
     int length = active_validator_indices.size();
 
     List<Integer> shuffled_indices =
@@ -632,7 +705,11 @@ public class BeaconStateUtil {
     int committeesPerEpoch = toIntExact(get_epoch_committee_count(length));
 
     List<List<Integer>> split = split(shuffled_active_validator_indices, committeesPerEpoch);
-    return split;
+    List<List<Integer>> committees = new ArrayList<>(split.size());
+    for (List<Integer> committee : split) {
+      committees.add(Collections.unmodifiableList(committee));
+    }
+    return Collections.unmodifiableList(committees);
   }
 
   /**
@@ -670,17 +747,20 @@ public class BeaconStateUtil {
 
     int indexRet = index;
     byte[] powerOfTwoNumbers = {1, 2, 4, 8, 16, 32, 64, (byte) 128};
+    byte[] seedBytes = seed.toArrayUnsafe();
+    // The round, followed by the position / 256 as 4 little endian bytes
+    byte[] suffix = new byte[5];
+    byte[] source = new byte[Hasher.HASH_LENGTH];
 
     for (int round = 0; round < SHUFFLE_ROUND_COUNT; round++) {
 
-      Bytes roundAsByte = Bytes.of((byte) round);
+      suffix[0] = (byte) round;
 
       // This needs to be unsigned modulo.
+      Hasher.hash(seedBytes, 0, seedBytes.length, suffix, 0, 1, source, 0);
       int pivot =
           toIntExact(
-              Long.remainderUnsigned(
-                  bytes_to_int(Hash.keccak256(Bytes.wrap(seed, roundAsByte)).slice(0, 8)),
-                  listSize));
+              Long.remainderUnsigned(bytes_to_int(Bytes.wrap(source, 0, Long.BYTES)), listSize));
       int flip = (pivot - indexRet) % listSize;
       if (flip < 0) {
         // Account for flip being negative
@@ -689,12 +769,16 @@ public class BeaconStateUtil {
 
       int position = (indexRet < flip) ? flip : indexRet;
 
-      Bytes positionDiv256 = int_to_bytes(position / 256, 4);
-      Bytes source = Hash.keccak256(Bytes.wrap(seed, roundAsByte, positionDiv256));
+      int positionDiv256 = position / 256;
+      suffix[1] = (byte) positionDiv256;
+      suffix[2] = (byte) (positionDiv256 >>> 8);
+      suffix[3] = (byte) (positionDiv256 >>> 16);
+      suffix[4] = (byte) (positionDiv256 >>> 24);
+      Hasher.hash(seedBytes, 0, seedBytes.length, suffix, 0, suffix.length, source, 0);
 
       // The byte type is signed in Java, but the right shift should be fine as we just use bit 0.
       // But we can't use % in the normal way because of signedness, so we `& 1` instead.
-      byte theByte = source.get(position % 256 / 8);
+      byte theByte = source[position % 256 / 8];
       byte theMask = powerOfTwoNumbers[position % 8];
       if ((theByte & theMask) != 0) {
         indexRet = flip;
@@ -713,66 +797,14 @@ public class BeaconStateUtil {
    * domain' algorithm on page 3.
    *
    * <p>The result of this should be the same as calling get_permuted_index() for each index in the
-   * list
+   * list. See {@link Shuffler} for how the rounds are computed.
    *
    * @param listSize The size of the list from which the element is taken. Must not exceed 2^31.
    * @param seed Initial seed value used for randomization.
    * @return The permuted arrays of indices
    */
   public static int[] shuffle(int listSize, Bytes32 seed) {
-
-    //  In the following, great care is needed around signed and unsigned values.
-    //  Note that the % (modulo) operator in Java behaves differently from the
-    //  modulo operator in python:
-    //    Python -1 % 13 = 12
-    //    Java   -1 % 13 = -1
-
-    // Note: this should be faster than manually creating the list in a for loop
-    // https://stackoverflow.com/questions/10242380/how-can-i-generate-a-list-or-array-of-sequential-integers-in-java
-    int[] indices = IntStream.rangeClosed(0, listSize - 1).toArray();
-
-    // int[] indices = new int[listSize];
-    // for (int i = 0; i < listSize; i++) {
-    //   indices[i] = i;
-    // }
-
-    byte[] powerOfTwoNumbers = {1, 2, 4, 8, 16, 32, 64, (byte) 128};
-
-    for (int round = 0; round < SHUFFLE_ROUND_COUNT; round++) {
-
-      Bytes roundAsByte = Bytes.of((byte) round);
-
-      Bytes hashBytes = Bytes.EMPTY;
-      for (int i = 0; i < (listSize + 255) / 256; i++) {
-        Bytes iAsBytes4 = int_to_bytes(i, 4);
-        hashBytes = Bytes.wrap(hashBytes, Hash.keccak256(Bytes.wrap(seed, roundAsByte, iAsBytes4)));
-      }
-
-      // This needs to be unsigned modulo.
-      int pivot =
-          toIntExact(
-              Long.remainderUnsigned(
-                  bytes_to_int(Hash.keccak256(Bytes.wrap(seed, roundAsByte)).slice(0, 8)),
-                  listSize));
-
-      for (int i = 0; i < listSize; i++) {
-
-        int flip = (pivot - indices[i]) % listSize;
-        if (flip < 0) {
-          // Account for flip being negative
-          flip += listSize;
-        }
-
-        int hashPosition = (indices[i] < flip) ? flip : indices[i];
-        byte theByte = hashBytes.get(hashPosition / 8);
-        byte theMask = powerOfTwoNumbers[hashPosition % 8];
-        if ((theByte & theMask) != 0) {
-          indices[i] = flip;
-        }
-      }
-    }
-
-    return indices;
+    return Shuffler.shuffle(listSize, seed);
   }
 
   /**
@@ -876,18 +908,28 @@ public class BeaconStateUtil {
    *     - Spec v0.4</a>
    */
   public static void process_deposit(BeaconState state, Deposit deposit) {
+    process_deposit(state, deposit, true);
+  }
+
+  /**
+   * Same as {@link #process_deposit(BeaconState, Deposit)}, except that verifying the proof of
+   * possession can be skipped when it has already been verified against the same state.
+   *
+   * @param state - The current BeaconState. NOTE: State will be mutated per spec logic.
+   * @param deposit - The deposit information to add as a new validator or top up.
+   * @param verify_proof_of_possession - False if the proof of possession was already verified.
+   */
+  public static void process_deposit(
+      BeaconState state, Deposit deposit, boolean verify_proof_of_possession) {
     // Retrieve DepositInput reference from Deposit
     DepositInput depositInput = deposit.getDeposit_data().getDeposit_input();
 
     // Validates the proof_of_possession is the valid BLS signature for the DepositInput (pubkey and
     // withdrawal credentials).
-    long domain = get_domain(state.getFork(), get_current_epoch(state), DOMAIN_DEPOSIT);
-    checkArgument(
-        bls_verify(
-            depositInput.getPubkey(),
-            depositInput.signedRoot("proof_of_possession"),
-            depositInput.getProof_of_possession(),
-            domain));
+    if (verify_proof_of_possession) {
+      long domain = get_domain(state.getFork(), get_current_epoch(state), DOMAIN_DEPOSIT);
+      checkArgument(verify_proof_of_possession(depositInput, domain));
+    }
 
     // Get Pubkey, Deposit Amount, and Withdrawal Credentials from Deposit
     BLSPublicKey pubkey = depositInput.getPubkey();
@@ -898,13 +940,19 @@ public class BeaconStateUtil {
     List<Validator> validatorRegistry = state.getValidator_registry();
     List<Long> validatorBalances = state.getValidator_balances();
 
-    // Retrieve the list of validator's public keys from the current state.
-    List<BLSPublicKey> validator_pubkeys =
-        validatorRegistry.stream().map(Validator::getPubkey).collect(Collectors.toList());
+    // Look up the pubkey among the validators of the current state.
+    int validatorIndex;
+    if (state instanceof BeaconStateWithCache) {
+      validatorIndex = ((BeaconStateWithCache) state).getValidatorIndex(pubkey);
+    } else {
+      List<BLSPublicKey> validator_pubkeys =
+          validatorRegistry.stream().map(Validator::getPubkey).collect(Collectors.toList());
+      validatorIndex = validator_pubkeys.indexOf(pubkey);
+    }
 
     // If the pubkey isn't in the state, add a new validator to the registry.
     // Otherwise, top up the balance for the validator whose pubkey was provided.
-    if (!validator_pubkeys.contains(pubkey)) {
+    if (validatorIndex < 0) {
       // We depend on our add operation appending the below objects at the same index.
       checkArgument(
           validatorRegistry.size() == validatorBalances.size(),
@@ -919,18 +967,50 @@ public class BeaconStateUtil {
               false,
               false));
       validatorBalances.add(amount);
+      update_active_validator_index(state, validatorRegistry.size() - 1);
     } else {
-      int validatorIndex = validator_pubkeys.indexOf(pubkey);
       checkArgument(
           validatorRegistry
               .get(validatorIndex)
               .getWithdrawal_credentials()
               .equals(withdrawal_credentials),
           "checkArgument threw and exception in process_deposit()");
-      validatorBalances.set(validatorIndex, validatorBalances.get(validatorIndex) + amount);
+      increase_balance(state, validatorIndex, amount);
     }
   }
 
+  /**
+   * Verifies the proofs of possession of the given deposits in parallel, as {@link
+   * #process_deposit(BeaconState, Deposit)} would for each of them against the given state.
+   *
+   * <p><b>Note:</b> This is a convenience method which is not defined in the spec.
+   *
+   * @param state - The state the deposits are processed against.
+   * @param deposits - The deposits to verify.
+   * @throws IllegalArgumentException if any of the proofs of possession is invalid.
+   */
+  public static void verify_proofs_of_possession(BeaconState state, List<Deposit> deposits) {
+    long domain = get_domain(state.getFork(), get_current_epoch(state), DOMAIN_DEPOSIT);
+    int invalid =
+        IntStream.range(0, deposits.size())
+            .parallel()
+            .filter(
+                i ->
+                    !verify_proof_of_possession(
+                        deposits.get(i).getDeposit_data().getDeposit_input(), domain))
+            .findFirst()
+            .orElse(-1);
+    checkArgument(invalid < 0, "Invalid proof of possession in deposit %s", invalid);
+  }
+
+  private static boolean verify_proof_of_possession(DepositInput depositInput, long domain) {
+    return bls_verify(
+        depositInput.getPubkey(),
+        depositInput.signedRoot("proof_of_possession"),
+        depositInput.getProof_of_possession(),
+        domain);
+  }
+
   /**
    * TODO It may make sense to move this to {@link Fork}.
    *
@@ -1010,6 +1090,21 @@ public class BeaconStateUtil {
    */
   public static boolean verify_slashable_attestation(
       BeaconState state, SlashableAttestation slashable_attestation) {
+    return verify_slashable_attestation(state, slashable_attestation, true);
+  }
+
+  /**
+   * Same as {@link #verify_slashable_attestation(BeaconState, SlashableAttestation)}, except that
+   * verifying the aggregate signature can be skipped when it has already been verified against the
+   * same state.
+   *
+   * @param state - The current BeaconState under consideration.
+   * @param slashable_attestation - The SlashableAttestation under consideration/to be validated.
+   * @param verify_signature - False if the aggregate signature was already verified.
+   * @return True if the given slashable attestation is valid, false otherwise.
+   */
+  public static boolean verify_slashable_attestation(
+      BeaconState state, SlashableAttestation slashable_attestation, boolean verify_signature) {
     if (!Objects.equals(
         slashable_attestation.getCustody_bitfield(),
         Bytes.wrap(new byte[slashable_attestation.getCustody_bitfield().size()])))
@@ -1032,6 +1127,40 @@ public class BeaconStateUtil {
     if (slashable_attestation.getValidator_indices().size() > MAX_INDICES_PER_SLASHABLE_VOTE)
       return false;
 
+    if (!verify_signature) {
+      return true;
+    }
+
+    List<BLSPublicKey> pubkeys = get_slashable_attestation_pubkeys(state, slashable_attestation);
+    List<Bytes32> messages =
+        Arrays.asList(
+            hash_tree_root(
+                new AttestationDataAndCustodyBit(slashable_attestation.getData(), false).toBytes()),
+            hash_tree_root(
+                new AttestationDataAndCustodyBit(slashable_attestation.getData(), true).toBytes()));
+    BLSSignature signature = slashable_attestation.getAggregate_signature();
+    long domain =
+        get_domain(
+            state.getFork(),
+            slot_to_epoch(slashable_attestation.getData().getSlot()),
+            DOMAIN_ATTESTATION);
+
+    return bls_verify_multiple(pubkeys, messages, signature, domain);
+  }
+
+  /**
+   * Returns the aggregate public keys of the custody bit 0 and custody bit 1 signers of the given
+   * slashable attestation, as verified by {@link #verify_slashable_attestation(BeaconState,
+   * SlashableAttestation)}.
+   *
+   * <p><b>Note:</b> This is a convenience method which is not defined in the spec.
+   *
+   * @param state - The current BeaconState under consideration.
+   * @param slashable_attestation - The SlashableAttestation under consideration.
+   * @return The custody bit 0 and custody bit 1 aggregate public keys.
+   */
+  public static List<BLSPublicKey> get_slashable_attestation_pubkeys(
+      BeaconState state, SlashableAttestation slashable_attestation) {
     ArrayList<Long> custody_bit_0_indices = new ArrayList<>();
     ArrayList<Long> custody_bit_1_indices = new ArrayList<>();
 
@@ -1053,24 +1182,8 @@ public class BeaconStateUtil {
       custody_bit_1_pubkeys.add(state.getValidator_registry().get(i).getPubkey());
     }
 
-    List<BLSPublicKey> pubkeys =
-        Arrays.asList(
-            bls_aggregate_pubkeys(custody_bit_0_pubkeys),
-            bls_aggregate_pubkeys(custody_bit_1_pubkeys));
-    List<Bytes32> messages =
-        Arrays.asList(
-            hash_tree_root(
-                new AttestationDataAndCustodyBit(slashable_attestation.getData(), false).toBytes()),
-            hash_tree_root(
-                new AttestationDataAndCustodyBit(slashable_attestation.getData(), true).toBytes()));
-    BLSSignature signature = slashable_attestation.getAggregate_signature();
-    long domain =
-        get_domain(
-            state.getFork(),
-            slot_to_epoch(slashable_attestation.getData().getSlot()),
-            DOMAIN_ATTESTATION);
-
-    return bls_verify_multiple(pubkeys, messages, signature, domain);
+    return Arrays.asList(
+        bls_aggregate_pubkeys(custody_bit_0_pubkeys), bls_aggregate_pubkeys(custody_bit_1_pubkeys));
   }
 
   /**
@@ -1154,6 +1267,20 @@ public class BeaconStateUtil {
                 ? GENESIS_EPOCH
                 : BeaconStateUtil.get_entry_exit_effect_epoch(
                     BeaconStateUtil.get_current_epoch(state)));
+    update_active_validator_index(state, validator_index);
+  }
+
+  /**
+   * Keeps the active validator index cache of the state in step with a change to the activation or
+   * exit epoch of the validator at the given index.
+   *
+   * @param state - The BeaconState under consideration.
+   * @param validator_index - The index of the validator that changed.
+   */
+  private static void update_active_validator_index(BeaconState state, int validator_index) {
+    if (state instanceof BeaconStateWithCache) {
+      ((BeaconStateWithCache) state).updateActiveValidatorIndex(validator_index);
+    }
   }
 
   /**
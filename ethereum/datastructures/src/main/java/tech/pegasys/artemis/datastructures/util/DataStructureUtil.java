@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.pegasys.artemis.datastructures.Constants;
 import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
@@ -312,28 +314,31 @@ public final class DataStructureUtil {
   }
 
   public static ArrayList<Deposit> newDeposits(int numDeposits) {
-    ArrayList<Deposit> deposits = new ArrayList<>();
+    // Each deposit only depends on its index, and generating the keypair and signing the proof of
+    // possession is expensive, so they are created in parallel
+    return IntStream.range(0, numDeposits)
+        .parallel()
+        .mapToObj(DataStructureUtil::newDeposit)
+        .collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  private static Deposit newDeposit(int i) {
+    // https://github.com/ethereum/eth2.0-specs/blob/0.4.0/specs/validator/0_beacon-chain-validator.md#submit-deposit
+    BLSKeyPair keypair = BLSKeyPair.random(i);
+    DepositInput deposit_input =
+        new DepositInput(keypair.getPublicKey(), Bytes32.ZERO, BLSSignature.empty());
+    BLSSignature proof_of_possession =
+        BLSSignature.sign(
+            keypair, deposit_input.signedRoot("proof_of_possession"), Constants.DOMAIN_DEPOSIT);
+    deposit_input.setProof_of_possession(proof_of_possession);
 
-    for (int i = 0; i < numDeposits; i++) {
-      // https://github.com/ethereum/eth2.0-specs/blob/0.4.0/specs/validator/0_beacon-chain-validator.md#submit-deposit
-      BLSKeyPair keypair = BLSKeyPair.random(i);
-      DepositInput deposit_input =
-          new DepositInput(keypair.getPublicKey(), Bytes32.ZERO, BLSSignature.empty());
-      BLSSignature proof_of_possession =
-          BLSSignature.sign(
-              keypair, deposit_input.signedRoot("proof_of_possession"), Constants.DOMAIN_DEPOSIT);
-      deposit_input.setProof_of_possession(proof_of_possession);
-
-      // TODO should this equal something else?
-      long timestamp = i;
-      DepositData deposit_data = new DepositData(MAX_DEPOSIT_AMOUNT, timestamp, deposit_input);
-      // TODO should this value equal something else?
-      long index = i;
-      List<Bytes32> branch = Arrays.asList(Bytes32.ZERO, Bytes32.ZERO, Bytes32.ZERO);
-      Deposit deposit = new Deposit(branch, index, deposit_data);
-      deposits.add(deposit);
-    }
-    return deposits;
+    // TODO should this equal something else?
+    long timestamp = i;
+    DepositData deposit_data = new DepositData(MAX_DEPOSIT_AMOUNT, timestamp, deposit_input);
+    // TODO should this value equal something else?
+    long index = i;
+    List<Bytes32> branch = Arrays.asList(Bytes32.ZERO, Bytes32.ZERO, Bytes32.ZERO);
+    return new Deposit(branch, index, deposit_data);
   }
 
   public static BeaconBlock newBeaconBlock(
@@ -359,12 +364,7 @@ public final class DataStructureUtil {
   }
 
   public static BeaconStateWithCache createInitialBeaconState(int numValidators) {
-    BeaconStateWithCache state = new BeaconStateWithCache();
-    return BeaconStateUtil.get_genesis_beacon_state(
-        state,
-        newDeposits(numValidators),
-        Constants.GENESIS_SLOT,
-        new Eth1Data(Bytes32.ZERO, Bytes32.ZERO));
+    return GenesisStateBuilder.get_genesis_state(numValidators, null);
   }
 
   public static Validator randomValidator() {
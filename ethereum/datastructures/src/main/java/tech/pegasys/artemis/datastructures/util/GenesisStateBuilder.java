@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.logging.log4j.Level;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.Eth1Data;
+import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.util.alogger.ALogger;
+
+/**
+ * Builds the genesis state of the simulated validators. The deposits are generated and their proofs
+ * of possession verified in parallel.
+ *
+ * <p>A genesis state is only built once per process and then handed out as copies, so that the
+ * components that need one do not each build their own. It can also be cached on disk, where it is
+ * keyed by the number of validators and the constants it depends on.
+ */
+public final class GenesisStateBuilder {
+
+  private static final ALogger LOG = new ALogger(GenesisStateBuilder.class.getName());
+
+  // Bump whenever the genesis state would be built differently for the same key
+  private static final int FORMAT_VERSION = 1;
+
+  private static final Map<String, BeaconStateWithCache> STATES = new HashMap<>();
+
+  private GenesisStateBuilder() {}
+
+  /**
+   * Returns the genesis state for the given number of simulated validators.
+   *
+   * @param numValidators - The number of validators with a genesis deposit.
+   * @param cacheDirectory - The directory to cache the state in, or null to not cache it on disk.
+   * @return A copy of the genesis state, which the caller is free to modify.
+   */
+  public static BeaconStateWithCache get_genesis_state(int numValidators, Path cacheDirectory) {
+    String key = get_cache_key(numValidators);
+    // Held while building, so that concurrent callers wait for the first build instead of
+    // repeating it, and while copying, so that no caller reads the shared state unguarded
+    synchronized (STATES) {
+      BeaconStateWithCache state = STATES.get(key);
+      if (state == null) {
+        state = load(numValidators, key, cacheDirectory);
+        if (state == null) {
+          state = build(numValidators);
+          store(state, key, cacheDirectory);
+        }
+        STATES.put(key, state);
+      }
+      return BeaconStateWithCache.deepCopy(state);
+    }
+  }
+
+  /**
+   * Builds a new genesis state for the given number of simulated validators.
+   *
+   * @param numValidators - The number of validators with a genesis deposit.
+   * @return The genesis state.
+   */
+  public static BeaconStateWithCache build(int numValidators) {
+    return BeaconStateUtil.get_genesis_beacon_state(
+        new BeaconStateWithCache(),
+        DataStructureUtil.newDeposits(numValidators),
+        Constants.GENESIS_SLOT,
+        new Eth1Data(Bytes32.ZERO, Bytes32.ZERO));
+  }
+
+  static String get_cache_key(int numValidators) {
+    String constants =
+        String.join(
+            ",",
+            String.valueOf(FORMAT_VERSION),
+            String.valueOf(Constants.GENESIS_SLOT),
+            String.valueOf(Constants.GENESIS_EPOCH),
+            String.valueOf(Constants.GENESIS_FORK_VERSION),
+            String.valueOf(Constants.GENESIS_START_SHARD),
+            String.valueOf(Constants.FAR_FUTURE_EPOCH),
+            String.valueOf(Constants.MAX_DEPOSIT_AMOUNT),
+            String.valueOf(Constants.DOMAIN_DEPOSIT),
+            String.valueOf(Constants.SHARD_COUNT),
+            String.valueOf(Constants.SLOTS_PER_EPOCH),
+            String.valueOf(Constants.MIN_SEED_LOOKAHEAD),
+            String.valueOf(Constants.ACTIVATION_EXIT_DELAY),
+            String.valueOf(Constants.LATEST_BLOCK_ROOTS_LENGTH),
+            String.valueOf(Constants.LATEST_RANDAO_MIXES_LENGTH),
+            String.valueOf(Constants.LATEST_ACTIVE_INDEX_ROOTS_LENGTH),
+            String.valueOf(Constants.LATEST_SLASHED_EXIT_LENGTH),
+            Constants.ZERO_HASH.toHexString());
+    Bytes32 hash = Hash.keccak256(Bytes.wrap(constants.getBytes(UTF_8)));
+    return numValidators + "-" + hash.slice(0, 8).toUnprefixedHexString();
+  }
+
+  static BeaconStateWithCache load(int numValidators, String key, Path cacheDirectory) {
+    if (cacheDirectory == null) {
+      return null;
+    }
+    Path file = cacheDirectory.resolve("genesis-" + key + ".ssz");
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try {
+      BeaconState state = BeaconState.fromBytes(Bytes.wrap(Files.readAllBytes(file)));
+      if (state.getValidator_registry().size() != numValidators) {
+        LOG.log(Level.WARN, "Ignoring genesis state cache with wrong validator count: " + file);
+        return null;
+      }
+      LOG.log(Level.INFO, "Loaded genesis state from " + file);
+      return new BeaconStateWithCache(state);
+    } catch (IOException | RuntimeException e) {
+      // A truncated or otherwise unreadable cache is simply rebuilt
+      LOG.log(Level.WARN, "Ignoring unreadable genesis state cache " + file + ": " + e);
+      return null;
+    }
+  }
+
+  static void store(BeaconStateWithCache state, String key, Path cacheDirectory) {
+    if (cacheDirectory == null) {
+      return;
+    }
+    Path file = cacheDirectory.resolve("genesis-" + key + ".ssz");
+    try {
+      Files.createDirectories(cacheDirectory);
+      // Written next to the cache and then moved, so that readers never see a partial file
+      Path temp = Files.createTempFile(cacheDirectory, "genesis-" + key, ".tmp");
+      try {
+        Files.write(temp, state.toBytes().toArrayUnsafe());
+        Files.move(
+            temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARN, "Unable to cache the genesis state in " + file + ": " + e);
+    }
+  }
+}
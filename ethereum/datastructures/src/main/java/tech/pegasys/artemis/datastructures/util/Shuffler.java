@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.util;
+
+import static tech.pegasys.artemis.datastructures.Constants.SHUFFLE_ROUND_COUNT;
+
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.util.Hasher;
+
+/**
+ * The swap-or-not shuffle behind {@link BeaconStateUtil#shuffle(int, Bytes32)}.
+ *
+ * <p>Each round hashes its source into one buffer that is reused across rounds, with the digests
+ * kept per thread by {@link Hasher}, so the number of allocations does not depend on the size of
+ * the list. Each index only depends on its own value in the previous round, so for large lists both
+ * the hashing and the swapping of a round are split across the common fork-join pool.
+ */
+final class Shuffler {
+
+  // Every hash of the source covers 256 positions, one bit each
+  private static final int POSITIONS_PER_HASH = 256;
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+  private static final int INDICES_PER_TASK = 1 << 13;
+  private static final int HASHES_PER_TASK = INDICES_PER_TASK / POSITIONS_PER_HASH;
+
+  private Shuffler() {}
+
+  static int[] shuffle(int listSize, Bytes32 seed) {
+    int[] indices = new int[listSize];
+    for (int i = 0; i < listSize; i++) {
+      indices[i] = i;
+    }
+    if (listSize == 0) {
+      return indices;
+    }
+
+    byte[] seedBytes = seed.toArrayUnsafe();
+    int hashCount = (listSize + POSITIONS_PER_HASH - 1) / POSITIONS_PER_HASH;
+    byte[] source = new byte[hashCount * Hasher.HASH_LENGTH];
+    byte[] pivotHash = new byte[Hasher.HASH_LENGTH];
+    byte[] roundBytes = new byte[1];
+    boolean parallel = listSize >= PARALLEL_THRESHOLD;
+    int taskCount = (listSize + INDICES_PER_TASK - 1) / INDICES_PER_TASK;
+
+    for (int round = 0; round < SHUFFLE_ROUND_COUNT; round++) {
+      byte roundByte = (byte) round;
+
+      // source = hash(seed + round + int_to_bytes4(i)) for every group of 256 positions
+      if (parallel) {
+        IntStream.range(0, taskCount)
+            .parallel()
+            .forEach(
+                task ->
+                    hashSource(
+                        seedBytes,
+                        roundByte,
+                        task * HASHES_PER_TASK,
+                        Math.min(hashCount, (task + 1) * HASHES_PER_TASK),
+                        source));
+      } else {
+        hashSource(seedBytes, roundByte, 0, hashCount, source);
+      }
+
+      // This needs to be unsigned modulo.
+      roundBytes[0] = roundByte;
+      Hasher.hash(seedBytes, roundBytes, pivotHash);
+      int pivot = (int) Long.remainderUnsigned(toLongLittleEndian(pivotHash), listSize);
+
+      if (parallel) {
+        IntStream.range(0, taskCount)
+            .parallel()
+            .forEach(
+                task ->
+                    swapOrNot(
+                        indices,
+                        task * INDICES_PER_TASK,
+                        Math.min(listSize, (task + 1) * INDICES_PER_TASK),
+                        pivot,
+                        source));
+      } else {
+        swapOrNot(indices, 0, listSize, pivot, source);
+      }
+    }
+    return indices;
+  }
+
+  private static void hashSource(byte[] seed, byte round, int from, int to, byte[] source) {
+    // The round, followed by int_to_bytes4(i), little endian
+    byte[] suffix = new byte[5];
+    suffix[0] = round;
+    for (int i = from; i < to; i++) {
+      suffix[1] = (byte) i;
+      suffix[2] = (byte) (i >>> 8);
+      suffix[3] = (byte) (i >>> 16);
+      suffix[4] = (byte) (i >>> 24);
+      Hasher.hash(seed, 0, seed.length, suffix, 0, suffix.length, source, i * Hasher.HASH_LENGTH);
+    }
+  }
+
+  private static void swapOrNot(int[] indices, int from, int to, int pivot, byte[] source) {
+    int listSize = indices.length;
+    for (int i = from; i < to; i++) {
+      int index = indices[i];
+      int flip = pivot - index;
+      if (flip < 0) {
+        // Account for flip being negative, as Java's % keeps the sign of the dividend
+        flip += listSize;
+      }
+      int position = Math.max(index, flip);
+      if ((source[position >>> 3] & (1 << (position & 7))) != 0) {
+        indices[i] = flip;
+      }
+    }
+  }
+
+  private static long toLongLittleEndian(byte[] bytes) {
+    long value = 0;
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      value = (value << 8) | (bytes[i] & 0xFF);
+    }
+    return value;
+  }
+}
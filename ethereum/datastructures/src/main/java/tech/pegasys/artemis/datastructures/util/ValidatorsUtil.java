@@ -14,6 +14,7 @@
 package tech.pegasys.artemis.datastructures.util;
 
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -21,6 +22,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 import tech.pegasys.artemis.datastructures.state.Validator;
 
 public class ValidatorsUtil {
@@ -71,6 +73,41 @@ public class ValidatorsUtil {
     return active_validator_indices;
   }
 
+  /**
+   * Returns the indices of the validators in the state's registry that are active at the given
+   * epoch. For a {@link BeaconStateWithCache} the indices come from its per-epoch cache, so
+   * repeated lookups for the same epoch do not rescan the registry.
+   *
+   * <p><b>This method is defined for convenience and is not mentioned in the spec.</b>
+   *
+   * @param state - The BeaconState under consideration.
+   * @param epoch - The epoch under consideration.
+   * @return An unmodifiable list of indices representing the active validators for the epoch.
+   */
+  public static List<Integer> get_active_validator_indices(BeaconState state, long epoch) {
+    if (state instanceof BeaconStateWithCache) {
+      return Collections.unmodifiableList(
+          Ints.asList(((BeaconStateWithCache) state).getActiveValidatorIndices(epoch)));
+    }
+    return get_active_validator_indices(state.getValidator_registry(), epoch);
+  }
+
+  /**
+   * Returns the number of validators in the state's registry that are active at the given epoch.
+   *
+   * <p><b>This method is defined for convenience and is not mentioned in the spec.</b>
+   *
+   * @param state - The BeaconState under consideration.
+   * @param epoch - The epoch under consideration.
+   * @return The number of active validators for the epoch.
+   */
+  public static int get_active_validator_count(BeaconState state, long epoch) {
+    if (state instanceof BeaconStateWithCache) {
+      return ((BeaconStateWithCache) state).getActiveValidatorIndices(epoch).length;
+    }
+    return get_active_validator_indices(state.getValidator_registry(), epoch).size();
+  }
+
   /**
    * if index represents an active validator then return True else return False
    *
@@ -15,15 +15,21 @@ package tech.pegasys.artemis.datastructures.blocks;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomBeaconBlockBody;
 import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomEth1Data;
 import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomLong;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomTransfer;
 
+import java.util.Collections;
 import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.Test;
+import tech.pegasys.artemis.datastructures.operations.Attestation;
 import tech.pegasys.artemis.util.bls.BLSSignature;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
 
 class BeaconBlockTest {
 
@@ -142,4 +148,52 @@ class BeaconBlockTest {
     Bytes sszBeaconBlockBytes = beaconBlock.toBytes();
     assertEquals(beaconBlock, BeaconBlock.fromBytes(sszBeaconBlockBytes));
   }
+
+  @Test
+  void sealedBlockEncodesOnce() {
+    beaconBlock.seal();
+
+    Bytes encoding = beaconBlock.toBytes();
+    assertSame(encoding, beaconBlock.toBytes());
+    assertSame(beaconBlock.hashTreeRoot(), beaconBlock.hashTreeRoot());
+    assertEquals(HashTreeUtil.hash_tree_root(encoding), beaconBlock.hashTreeRoot());
+  }
+
+  @Test
+  void settersInvalidateSealedBlock() {
+    beaconBlock.seal();
+    Bytes32 root = beaconBlock.hashTreeRoot();
+
+    beaconBlock.setState_root(stateRoot.not());
+    BeaconBlock expected =
+        new BeaconBlock(slot, parentRoot, stateRoot.not(), randaoReveal, eth1Data, body, signature);
+
+    assertNotEquals(root, beaconBlock.hashTreeRoot());
+    assertEquals(expected.toBytes(), beaconBlock.toBytes());
+    assertEquals(expected.hashTreeRoot(), beaconBlock.hashTreeRoot());
+  }
+
+  @Test
+  void sealedBlockBodyIsUnmodifiable() {
+    beaconBlock.seal();
+
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> beaconBlock.getBody().getTransfers().add(randomTransfer()));
+  }
+
+  @Test
+  void partsOfSealedBlockRejectChanges() {
+    beaconBlock.seal();
+    Bytes32 root = beaconBlock.hashTreeRoot();
+    Attestation attestation = beaconBlock.getBody().getAttestations().get(0);
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> beaconBlock.getBody().setTransfers(Collections.singletonList(randomTransfer())));
+    assertThrows(IllegalStateException.class, () -> attestation.setAggregate_signature(signature));
+    assertThrows(IllegalStateException.class, () -> attestation.getData().setSlot(slot + 1));
+    assertEquals(root, beaconBlock.hashTreeRoot());
+    assertEquals(HashTreeUtil.hash_tree_root(beaconBlock.toBytes()), root);
+  }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.blocks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomBeaconBlock;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomLong;
+
+import org.junit.jupiter.api.Test;
+
+class BeaconBlockViewTest {
+
+  private final BeaconBlock block = randomBeaconBlock(randomLong());
+  private final BeaconBlockView view = BeaconBlockView.wrap(block.toBytes());
+
+  @Test
+  void readsHeaderFieldsWithoutDecoding() {
+    assertEquals(block.getSlot(), view.getSlot());
+    assertEquals(block.getParent_root(), view.getParent_root());
+    assertEquals(block.getState_root(), view.getState_root());
+  }
+
+  @Test
+  void decodesFullBlock() {
+    assertEquals(block, view.decode());
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.operations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomAttestation;
+
+import org.junit.jupiter.api.Test;
+
+class AttestationViewTest {
+
+  private final Attestation attestation = randomAttestation();
+  private final AttestationView view = AttestationView.wrap(attestation.toBytes());
+
+  @Test
+  void readsLeadingFieldsWithoutDecoding() {
+    assertEquals(attestation.getAggregation_bitfield(), view.getAggregation_bitfield());
+    assertEquals(attestation.getData().getSlot(), view.getSlot());
+    assertEquals(attestation.getData().getShard(), view.getShard());
+    assertEquals(attestation.getData().getBeacon_block_root(), view.getBeacon_block_root());
+  }
+
+  @Test
+  void decodesFullAttestation() {
+    assertEquals(attestation, view.decode());
+  }
+}
@@ -16,16 +16,21 @@ package tech.pegasys.artemis.datastructures.state;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
 import static tech.pegasys.artemis.datastructures.Constants.GENESIS_EPOCH;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_entry_exit_effect_epoch;
 import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_genesis_beacon_state;
 import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomDeposits;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.junit.BouncyCastleExtension;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import tech.pegasys.artemis.datastructures.blocks.Eth1Data;
+import tech.pegasys.artemis.datastructures.blocks.Eth1DataVote;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.ValidatorsUtil;
 import tech.pegasys.artemis.util.bls.BLSPublicKey;
 
 @ExtendWith(BouncyCastleExtension.class)
@@ -90,4 +95,90 @@ class BeaconStateWithCacheTest {
     assertThat(deepCopy.getValidator_registry().get(0).getPubkey())
         .isNotEqualTo(state.getValidator_registry().get(0).getPubkey());
   }
+
+  @Test
+  void activeValidatorIndicesFollowExitEpochChanges() {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState(5);
+    long exit_epoch = get_entry_exit_effect_epoch(BeaconStateUtil.get_current_epoch(state));
+    int[] before = state.getActiveValidatorIndices(exit_epoch);
+    Validator validator = state.getValidator_registry().get(2);
+    long original_exit_epoch = validator.getExit_epoch();
+
+    validator.setExit_epoch(exit_epoch);
+    state.updateActiveValidatorIndex(2);
+    assertThat(state.getActiveValidatorIndices(exit_epoch))
+        .hasSize(before.length - 1)
+        .doesNotContain(2);
+    assertThat(ValidatorsUtil.get_active_validator_indices(state, exit_epoch))
+        .isEqualTo(
+            ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), exit_epoch));
+
+    validator.setExit_epoch(original_exit_epoch);
+    state.updateActiveValidatorIndex(2);
+    assertThat(state.getActiveValidatorIndices(exit_epoch)).isEqualTo(before);
+  }
+
+  @Test
+  void deepCopyDoesNotSeeActiveValidatorIndexUpdates() {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState(5);
+    long exit_epoch = get_entry_exit_effect_epoch(BeaconStateUtil.get_current_epoch(state));
+    int[] before = state.getActiveValidatorIndices(exit_epoch);
+    BeaconStateWithCache deepCopy = BeaconStateWithCache.deepCopy(state);
+
+    state.getValidator_registry().get(2).setExit_epoch(exit_epoch);
+    state.updateActiveValidatorIndex(2);
+
+    assertThat(deepCopy.getActiveValidatorIndices(exit_epoch)).isEqualTo(before).contains(2);
+  }
+
+  @Test
+  void toBytesReflectsChangesToAForkedState() {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState(5);
+    Bytes before = state.toBytes();
+    BeaconStateWithCache deepCopy = BeaconStateWithCache.deepCopy(state);
+
+    deepCopy.getValidator_balances().set(1, 1L);
+    deepCopy.getLatest_block_roots().set(2, Bytes32.random());
+
+    assertThat(state.toBytes()).isEqualTo(before);
+    assertThat(BeaconState.fromBytes(deepCopy.toBytes())).isEqualTo(deepCopy);
+    assertThat(BeaconState.fromBytes(deepCopy.toBytes()).getValidator_balances().get(1))
+        .isEqualTo(1L);
+  }
+
+  @Test
+  void rollbackUndoesWritesSinceTheJournalStarted() {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState(5);
+    long exit_epoch = get_entry_exit_effect_epoch(BeaconStateUtil.get_current_epoch(state));
+    int[] before = state.getActiveValidatorIndices(exit_epoch);
+    Bytes bytes = state.toBytes();
+
+    StateJournal journal = state.startJournal();
+    state.incrementSlot();
+    state.setFork(new Fork(1, 1, 1));
+    state.getValidator_balances().set(1, 1L);
+    state.getLatest_randao_mixes().set(0, Bytes32.random());
+    state.getValidator_registry().get(2).setExit_epoch(exit_epoch);
+    state.updateActiveValidatorIndex(2);
+    state.getLatest_block_roots().set(2, Bytes32.random());
+    state.getEth1_data_votes().add(new Eth1DataVote(new Eth1Data(Bytes32.ZERO, Bytes32.ZERO), 1));
+    journal.rollback();
+
+    assertThat(state.toBytes()).isEqualTo(bytes);
+    assertThat(state.getActiveValidatorIndices(exit_epoch)).isEqualTo(before).contains(2);
+  }
+
+  @Test
+  void writesAfterCloseAreNotUndone() {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState(1);
+    long slot = state.getSlot();
+
+    StateJournal journal = state.startJournal();
+    state.incrementSlot();
+    journal.close();
+    state.incrementSlot();
+    journal.rollback();
+
+    assertThat(state.getSlot()).isEqualTo(slot + 1);
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class CopyOnWriteChunkedListTest {
+
+  private static final int SIZE = 1000;
+
+  private List<Long> longs() {
+    return IntStream.range(0, SIZE).mapToObj(i -> (long) i).collect(Collectors.toList());
+  }
+
+  @Test
+  void forkDoesNotSeeWritesToTheSource() {
+    CopyOnWriteChunkedList<Long> source = CopyOnWriteChunkedList.copyOf(longs(), null);
+    CopyOnWriteChunkedList<Long> fork = source.fork();
+
+    source.set(3, -1L);
+    source.add(-2L);
+    fork.set(700, -3L);
+
+    assertThat(fork.get(3)).isEqualTo(3L);
+    assertThat(fork).hasSize(SIZE);
+    assertThat(source.get(700)).isEqualTo(700L);
+    assertThat(source).hasSize(SIZE + 1);
+    assertThat(source.get(SIZE)).isEqualTo(-2L);
+  }
+
+  @Test
+  void mutableElementsAreCopiedBeforeTheyAreHandedOut() {
+    List<Crosslink> crosslinks = new ArrayList<>();
+    for (int i = 0; i < SIZE; i++) {
+      crosslinks.add(new Crosslink(i, Bytes32.ZERO));
+    }
+    CopyOnWriteChunkedList<Crosslink> source =
+        CopyOnWriteChunkedList.copyOf(crosslinks, Crosslink::copy);
+    CopyOnWriteChunkedList<Crosslink> fork = source.fork();
+
+    fork.get(10).setEpoch(-1);
+
+    assertThat(source.peek(10).getEpoch()).isEqualTo(10);
+    assertThat(fork.get(10).getEpoch()).isEqualTo(-1);
+    assertThat(crosslinks.get(10).getEpoch()).isEqualTo(10);
+  }
+
+  @Test
+  void insertAndRemoveAcrossChunks() {
+    List<Long> expected = longs();
+    CopyOnWriteChunkedList<Long> list = CopyOnWriteChunkedList.copyOf(expected, null);
+    CopyOnWriteChunkedList<Long> fork = list.fork();
+
+    list.add(5, -1L);
+    expected.add(5, -1L);
+    list.remove(600);
+    expected.remove(600);
+
+    assertThat(list).containsExactlyElementsOf(expected);
+    assertThat(fork).containsExactlyElementsOf(longs());
+
+    list.clear();
+    assertThat(list).isEmpty();
+    assertThat(fork).hasSize(SIZE);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class LongListTest {
+
+  private static final int SIZE = 3000;
+
+  private List<Long> longs() {
+    List<Long> values = new ArrayList<>();
+    for (long i = 0; i < SIZE; i++) {
+      values.add(i);
+    }
+    return values;
+  }
+
+  @Test
+  void forkDoesNotSeeWritesToTheSource() {
+    LongList source = LongList.copyOf(longs());
+    LongList fork = source.fork();
+
+    source.increment(3, 10);
+    source.setLong(2000, -1);
+    source.addLong(-2);
+    fork.increment(1500, -5);
+
+    assertThat(source.getLong(3)).isEqualTo(13);
+    assertThat(source.getLong(2000)).isEqualTo(-1);
+    assertThat(source).hasSize(SIZE + 1);
+    assertThat(source.getLong(1500)).isEqualTo(1500);
+    assertThat(fork.getLong(3)).isEqualTo(3);
+    assertThat(fork.getLong(1500)).isEqualTo(1495);
+    assertThat(fork).hasSize(SIZE);
+  }
+
+  @Test
+  void behavesLikeAListOfLongs() {
+    List<Long> expected = longs();
+    LongList list = LongList.copyOf(expected);
+
+    list.add(7, 42L);
+    expected.add(7, 42L);
+    list.remove(2500);
+    expected.remove(2500);
+    list.set(0, 9L);
+    expected.set(0, 9L);
+
+    assertThat(list).containsExactlyElementsOf(expected);
+    assertThat(list).isEqualTo(expected);
+  }
+
+  @Test
+  void versionOnlyChangesWhenTheListIsModified() {
+    LongList list = LongList.copyOf(longs());
+    long version = list.version();
+    LongList fork = list.fork();
+
+    assertThat(list.version()).isEqualTo(version);
+    assertThat(fork.version()).isEqualTo(version);
+
+    fork.increment(0, 1);
+    assertThat(fork.version()).isNotEqualTo(version);
+    assertThat(list.version()).isEqualTo(version);
+  }
+
+  @Test
+  void encodingIsReusedUntilTheListChanges() {
+    LongList list = LongList.copyOf(longs());
+    AtomicInteger encodings = new AtomicInteger();
+
+    list.encoded(values -> Bytes.ofUnsignedInt(encodings.incrementAndGet()));
+    list.encoded(values -> Bytes.ofUnsignedInt(encodings.incrementAndGet()));
+    assertThat(encodings.get()).isEqualTo(1);
+
+    list.setLong(5, 6);
+    list.encoded(values -> Bytes.ofUnsignedInt(encodings.incrementAndGet()));
+    assertThat(encodings.get()).isEqualTo(2);
+  }
+}
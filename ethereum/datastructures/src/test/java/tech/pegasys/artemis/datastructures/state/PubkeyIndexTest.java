@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomPublicKey;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomValidator;
+
+import org.junit.jupiter.api.Test;
+
+class PubkeyIndexTest {
+
+  private static final int SIZE = 8;
+
+  private BeaconStateWithCache createState() {
+    BeaconStateWithCache state = new BeaconStateWithCache();
+    for (int i = 0; i < SIZE; i++) {
+      state.getValidator_registry().add(randomValidator(i));
+    }
+    return state;
+  }
+
+  @Test
+  void lookupFindsEveryValidator() {
+    BeaconStateWithCache state = createState();
+    for (int i = 0; i < SIZE; i++) {
+      assertThat(state.getValidatorIndex(randomValidator(i).getPubkey())).isEqualTo(i);
+    }
+    assertThat(state.getValidatorIndex(randomPublicKey(SIZE))).isEqualTo(-1);
+  }
+
+  @Test
+  void lookupFindsValidatorsAppendedAfterPreviousLookup() {
+    BeaconStateWithCache state = createState();
+    Validator appended = randomValidator(SIZE);
+    assertThat(state.getValidatorIndex(appended.getPubkey())).isEqualTo(-1);
+
+    state.getValidator_registry().add(appended);
+
+    assertThat(state.getValidatorIndex(appended.getPubkey())).isEqualTo(SIZE);
+  }
+
+  @Test
+  void divergedCopiesShareTheIndexButOnlyFindTheirOwnValidators() {
+    BeaconStateWithCache state = createState();
+    state.getValidatorIndex(randomPublicKey(SIZE));
+    BeaconStateWithCache copy = BeaconStateWithCache.deepCopy(state);
+    Validator first = randomValidator(SIZE);
+    Validator second = randomValidator(SIZE + 1);
+
+    state.getValidator_registry().add(first);
+    copy.getValidator_registry().add(second);
+    copy.getValidator_registry().add(first);
+
+    assertThat(copy.getPubkeyIndex()).isSameAs(state.getPubkeyIndex());
+    assertThat(state.getValidatorIndex(first.getPubkey())).isEqualTo(SIZE);
+    assertThat(state.getValidatorIndex(second.getPubkey())).isEqualTo(-1);
+    assertThat(copy.getValidatorIndex(second.getPubkey())).isEqualTo(SIZE);
+    assertThat(copy.getValidatorIndex(first.getPubkey())).isEqualTo(SIZE + 1);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomBytes32;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class ShufflingCacheTest {
+
+  private final ShufflingCache cache = new ShufflingCache();
+  private final AtomicInteger computations = new AtomicInteger();
+
+  private List<List<Integer>> shuffling(Bytes32 seed, long epoch, int... indices) {
+    return cache.get(
+        seed,
+        epoch,
+        indices,
+        () -> {
+          computations.incrementAndGet();
+          return Collections.singletonList(Arrays.asList(1, 2, 3));
+        });
+  }
+
+  @Test
+  void sameInputsAreOnlyComputedOnce() {
+    Bytes32 seed = randomBytes32();
+    List<List<Integer>> first = shuffling(seed, 1, 0, 1, 2);
+    List<List<Integer>> second = shuffling(Bytes32.wrap(seed.toArray()), 1, 0, 1, 2);
+
+    assertThat(second).isSameAs(first);
+    assertThat(computations.get()).isEqualTo(1);
+  }
+
+  @Test
+  void changedSeedEpochOrActiveSetIsRecomputed() {
+    Bytes32 seed = randomBytes32();
+    shuffling(seed, 1, 0, 1, 2);
+    shuffling(randomBytes32(), 1, 0, 1, 2);
+    shuffling(seed, 2, 0, 1, 2);
+    shuffling(seed, 1, 0, 1, 3);
+
+    assertThat(computations.get()).isEqualTo(4);
+    assertThat(cache.size()).isEqualTo(4);
+  }
+
+  @Test
+  void deepCopySharesTheShufflingCache() {
+    BeaconStateWithCache state = new BeaconStateWithCache();
+    BeaconStateWithCache copy = BeaconStateWithCache.deepCopy(state);
+
+    assertThat(copy.getShufflingCache()).isSameAs(state.getShufflingCache());
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ValidatorRegistryTest {
+
+  private static final int SIZE = 100;
+
+  private final List<Validator> validators = new ArrayList<>();
+
+  ValidatorRegistryTest() {
+    for (int i = 0; i < SIZE; i++) {
+      validators.add(randomValidator(i));
+    }
+  }
+
+  @Test
+  void copyOfHoldsTheSameValidators() {
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+
+    assertThat(registry).containsExactlyElementsOf(validators);
+    for (int i = 0; i < SIZE; i++) {
+      assertThat(registry.get(i).toBytes()).isEqualTo(validators.get(i).toBytes());
+    }
+  }
+
+  @Test
+  void viewsWriteThroughToTheRegistry() {
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+
+    registry.get(7).setExit_epoch(12);
+    registry.get(7).setSlashed(true);
+    registry.get(70).setInitiatedExit(true);
+
+    assertThat(registry.getExitEpoch(7)).isEqualTo(12);
+    assertThat(registry.isSlashed(7)).isTrue();
+    assertThat(registry.isSlashed(6)).isFalse();
+    assertThat(registry.hasInitiatedExit(70)).isTrue();
+    assertThat(validators.get(7).getExit_epoch()).isNotEqualTo(12);
+  }
+
+  @Test
+  void forkDoesNotSeeWritesToTheSource() {
+    ValidatorRegistry source = ValidatorRegistry.copyOf(validators);
+    ValidatorRegistry fork = source.fork();
+
+    source.get(3).setActivation_epoch(5);
+    source.add(randomValidator(SIZE));
+    fork.get(90).setWithdrawal_epoch(8);
+
+    assertThat(fork.get(3)).isEqualTo(validators.get(3));
+    assertThat(fork).hasSize(SIZE);
+    assertThat(source.get(90)).isEqualTo(validators.get(90));
+    assertThat(source).hasSize(SIZE + 1);
+  }
+
+  @Test
+  void toBytesReflectsLaterChanges() {
+    ValidatorRegistry source = ValidatorRegistry.copyOf(validators);
+    source.get(1).toBytes();
+    ValidatorRegistry fork = source.fork();
+
+    fork.get(1).setExit_epoch(9);
+
+    Validator expected = validators.get(1).copy();
+    expected.setExit_epoch(9);
+    assertThat(fork.get(1).toBytes()).isEqualTo(expected.toBytes());
+    assertThat(source.get(1).toBytes()).isEqualTo(validators.get(1).toBytes());
+  }
+
+  @Test
+  void addAndRemoveShiftTheFollowingValidators() {
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+    Validator inserted = randomValidator(SIZE);
+
+    registry.add(0, inserted);
+    assertThat(registry.get(0)).isEqualTo(inserted);
+    assertThat(registry.get(SIZE)).isEqualTo(validators.get(SIZE - 1));
+
+    assertThat(registry.remove(0)).isEqualTo(inserted);
+    assertThat(registry).containsExactlyElementsOf(validators);
+  }
+
+  @Test
+  void activationQueueTracksWrites() {
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+    registry.get(4).setActivation_epoch(42);
+    assertThat(registry.getActivationQueue(42)).containsExactly(4);
+
+    registry.get(2).setActivation_epoch(42);
+    registry.get(4).setActivation_epoch(3);
+    Validator pending = randomValidator(SIZE);
+    pending.setActivation_epoch(42);
+    registry.add(pending);
+    registry.set(50, pending);
+
+    assertThat(registry.getActivationQueue(42)).containsExactly(2, 50, SIZE);
+    assertThat(registry.getActivationQueue(3)).contains(4);
+  }
+
+  @Test
+  void withdrawalQueueIsOrderedByExitEpochThenIndex() {
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+    for (int index : new int[] {9, 3, 7, 5}) {
+      registry.get(index).setWithdrawal_epoch(11);
+    }
+    registry.get(9).setExit_epoch(1);
+    registry.get(3).setExit_epoch(2);
+    registry.get(7).setExit_epoch(1);
+    registry.get(5).setExit_epoch(Long.MAX_VALUE);
+
+    assertThat(registry.getWithdrawalQueue(11, Long.MIN_VALUE, Long.MAX_VALUE, 10))
+        .containsExactly(7, 9, 3, 5);
+    assertThat(registry.getWithdrawalQueue(11, Long.MIN_VALUE, 1, 10)).containsExactly(7, 9);
+    assertThat(registry.getWithdrawalQueue(11, Long.MIN_VALUE, Long.MAX_VALUE, 3))
+        .containsExactly(7, 9, 3);
+
+    registry.get(7).setWithdrawal_epoch(20);
+    assertThat(registry.getWithdrawalQueue(11, Long.MIN_VALUE, Long.MAX_VALUE, 10))
+        .containsExactly(9, 3, 5);
+    assertThat(registry.getWithdrawalQueue(20, 1, 1, 10)).containsExactly(7);
+  }
+
+  @Test
+  void forkDoesNotSeeQueueChangesOfTheSource() {
+    ValidatorRegistry source = ValidatorRegistry.copyOf(validators);
+    source.get(1).setActivation_epoch(42);
+    assertThat(source.getActivationQueue(42)).containsExactly(1);
+    ValidatorRegistry fork = source.fork();
+
+    source.get(8).setActivation_epoch(42);
+    fork.get(1).setActivation_epoch(2);
+    fork.add(0, randomValidator(SIZE));
+
+    assertThat(source.getActivationQueue(42)).containsExactly(1, 8);
+    assertThat(fork.getActivationQueue(42)).isEmpty();
+    assertThat(fork.getActivationQueue(2)).contains(2);
+  }
+
+  @Test
+  void rollbackRestoresValidatorsAndQueues() {
+    validators.get(4).setActivation_epoch(42);
+    ValidatorRegistry registry = ValidatorRegistry.copyOf(validators);
+    StateJournal journal = new StateJournal();
+    registry.setJournal(journal);
+
+    Validator pending = randomValidator(SIZE);
+    pending.setActivation_epoch(42);
+    registry.add(pending);
+    registry.get(4).setActivation_epoch(3);
+    registry.set(50, pending);
+    registry.remove(7);
+    journal.rollback();
+
+    assertThat(registry).containsExactlyElementsOf(validators);
+    assertThat(registry.getActivationQueue(42)).containsExactly(4);
+    assertThat(registry.getActivationQueue(3)).doesNotContain(4);
+  }
+}
@@ -178,4 +178,15 @@ class ValidatorTest {
     Bytes sszValidatorBytes = validator.toBytes();
     assertEquals(validator, Validator.fromBytes(sszValidatorBytes));
   }
+
+  @Test
+  void toBytesReflectsLaterChanges() {
+    Validator testValidator = validator.copy();
+    Bytes before = testValidator.toBytes();
+
+    testValidator.setExit_epoch(exitEpoch + 1);
+
+    assertNotEquals(before, testValidator.toBytes());
+    assertEquals(testValidator, Validator.fromBytes(testValidator.toBytes()));
+  }
 }
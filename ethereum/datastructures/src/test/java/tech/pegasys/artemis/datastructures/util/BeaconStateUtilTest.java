@@ -209,6 +209,25 @@ class BeaconStateUtilTest {
             domain));
   }
 
+  @Test
+  void verifyProofsOfPossessionAcceptsValidDeposits() {
+    BeaconStateUtil.verify_proofs_of_possession(new BeaconState(), newDeposits(4));
+  }
+
+  @Test
+  void verifyProofsOfPossessionRejectsInvalidDeposit() {
+    List<Deposit> deposits = newDeposits(4);
+    deposits
+        .get(2)
+        .getDeposit_data()
+        .getDeposit_input()
+        .setProof_of_possession(BLSSignature.random());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> BeaconStateUtil.verify_proofs_of_possession(new BeaconState(), deposits));
+  }
+
   @Test
   void processDepositAddsNewValidatorWhenPubkeyIsNotFoundInRegistry() {
     // Data Setup
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.datastructures.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+@ExtendWith(BouncyCastleExtension.class)
+class GenesisStateBuilderTest {
+
+  private Path cacheDirectory;
+
+  @BeforeEach
+  void createCacheDirectory() throws IOException {
+    cacheDirectory = Files.createTempDirectory("genesis");
+  }
+
+  @AfterEach
+  void deleteCacheDirectory() throws IOException {
+    try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  void cachedStateMatchesBuiltState() {
+    BeaconStateWithCache built = GenesisStateBuilder.build(8);
+    String key = GenesisStateBuilder.get_cache_key(8);
+
+    GenesisStateBuilder.store(built, key, cacheDirectory);
+    BeaconStateWithCache loaded = GenesisStateBuilder.load(8, key, cacheDirectory);
+
+    assertThat(loaded).isNotNull();
+    assertThat(HashTreeUtil.hash_tree_root(loaded.toBytes()))
+        .isEqualTo(HashTreeUtil.hash_tree_root(built.toBytes()));
+  }
+
+  @Test
+  void cacheForOtherValidatorCountIsNotLoaded() {
+    GenesisStateBuilder.store(
+        GenesisStateBuilder.build(4), GenesisStateBuilder.get_cache_key(8), cacheDirectory);
+
+    assertThat(GenesisStateBuilder.load(8, GenesisStateBuilder.get_cache_key(8), cacheDirectory))
+        .isNull();
+  }
+
+  @Test
+  void unreadableCacheIsNotLoaded() throws IOException {
+    String key = GenesisStateBuilder.get_cache_key(8);
+    Files.write(cacheDirectory.resolve("genesis-" + key + ".ssz"), new byte[] {1, 2, 3});
+
+    assertThat(GenesisStateBuilder.load(8, key, cacheDirectory)).isNull();
+  }
+
+  @Test
+  void genesisStatesAreIndependentCopies() {
+    BeaconStateWithCache first = GenesisStateBuilder.get_genesis_state(4, null);
+    first.getValidator_balances().set(0, 0L);
+    BeaconStateWithCache second = GenesisStateBuilder.get_genesis_state(4, null);
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getValidator_balances().get(0)).isEqualTo(Constants.MAX_DEPOSIT_AMOUNT);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.tuweni.bytes.Bytes32;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.operations.Attestation;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.util.AttestationUtil;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.DataStructureUtil;
+import tech.pegasys.artemis.datastructures.util.GenesisStateBuilder;
+import tech.pegasys.artemis.util.bls.BLSKeyPair;
+import tech.pegasys.artemis.util.bls.BLSPublicKey;
+import tech.pegasys.artemis.util.bls.BLSSignature;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+/**
+ * Measures initiate() with a block carrying a given number of attestations, including the
+ * verification of their signatures and of the RANDAO reveal. As with a block being proposed, the
+ * state root is left empty, so the proposer's signature is not verified.
+ *
+ * <p>Genesis states are cached in the directory given by the artemis.jmh.genesisCache system
+ * property, since building one for hundreds of thousands of validators takes minutes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockProcessingBenchmark {
+
+  @Param({"1000", "10000", "100000", "300000"})
+  public int validatorCount;
+
+  @Param({"0", "16", "128"})
+  public int attestationCount;
+
+  private final StateTransition stateTransition = new StateTransition();
+  private BeaconStateWithCache preState;
+  private BeaconBlock block;
+  private BeaconStateWithCache state;
+
+  @Setup
+  public void setupBlock() throws StateTransitionException {
+    Security.addProvider(new BouncyCastleProvider());
+    BeaconStateWithCache attestationState =
+        GenesisStateBuilder.get_genesis_state(
+            validatorCount,
+            Paths.get(System.getProperty("artemis.jmh.genesisCache", "build/jmh")));
+
+    // Attest to the first slot after genesis and include the attestations as early as allowed
+    long attestationSlot = attestationState.getSlot() + 1;
+    stateTransition.process_slots(attestationState, attestationSlot, Bytes32.ZERO);
+    List<Attestation> attestations = createAttestations(attestationState, attestationCount);
+
+    long blockSlot = attestationSlot + Constants.MIN_ATTESTATION_INCLUSION_DELAY;
+    preState = BeaconStateWithCache.deepCopy(attestationState);
+    stateTransition.process_slots(preState, blockSlot - 1, Bytes32.ZERO);
+    block =
+        DataStructureUtil.newBeaconBlock(
+            blockSlot, Bytes32.ZERO, Bytes32.ZERO, new ArrayList<>(), attestations);
+    block.setRandao_reveal(createRandaoReveal(preState, blockSlot));
+  }
+
+  @Setup(Level.Invocation)
+  public void copyState() {
+    state = BeaconStateWithCache.deepCopy(preState);
+  }
+
+  @Benchmark
+  public BeaconStateWithCache processBlock() throws StateTransitionException {
+    stateTransition.initiate(state, block, Bytes32.ZERO);
+    return state;
+  }
+
+  private static List<Attestation> createAttestations(BeaconStateWithCache state, int count) {
+    // The genesis validator at each index was deposited with the keypair of the same seed
+    HashMap<BLSPublicKey, BLSKeyPair> committee = new HashMap<>();
+    for (int index :
+        BeaconStateUtil.get_crosslink_committees_at_slot(state, state.getSlot())
+            .get(0)
+            .getCommittee()) {
+      BLSKeyPair keypair = BLSKeyPair.random(index);
+      committee.put(keypair.getPublicKey(), keypair);
+    }
+    List<Attestation> committeeAttestations =
+        AttestationUtil.createAttestations(
+            state, BeaconBlock.createGenesis(Bytes32.ZERO), committee);
+
+    // Including an attestation more than once is valid, so a small committee can fill a block
+    List<Attestation> attestations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      attestations.add(committeeAttestations.get(i % committeeAttestations.size()));
+    }
+    return attestations;
+  }
+
+  private static BLSSignature createRandaoReveal(BeaconStateWithCache preState, long slot) {
+    BeaconStateWithCache state = BeaconStateWithCache.deepCopy(preState);
+    state.incrementSlot();
+    long epoch = BeaconStateUtil.slot_to_epoch(slot);
+    int proposerIndex = BeaconStateUtil.get_beacon_proposer_index(state, slot);
+    return BLSSignature.sign(
+        BLSKeyPair.random(proposerIndex),
+        HashTreeUtil.hash_tree_root(BeaconStateUtil.int_to_bytes(epoch, 8)),
+        BeaconStateUtil.get_domain(state.getFork(), epoch, Constants.DOMAIN_RANDAO));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import org.apache.tuweni.bytes.Bytes32;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.util.GenesisStateBuilder;
+
+/**
+ * Measures a single initiate() without a block, both on an ordinary slot and on the last slot of an
+ * epoch, where it includes epoch processing.
+ *
+ * <p>Genesis states are cached in the directory given by the artemis.jmh.genesisCache system
+ * property, since building one for hundreds of thousands of validators takes minutes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateTransitionBenchmark {
+
+  @Param({"1000", "10000", "100000", "300000"})
+  public int validatorCount;
+
+  private final StateTransition stateTransition = new StateTransition();
+  private BeaconStateWithCache emptySlotPreState;
+  private BeaconStateWithCache epochBoundaryPreState;
+  private BeaconStateWithCache emptySlotState;
+  private BeaconStateWithCache epochBoundaryState;
+
+  @Setup
+  public void setupStates() throws StateTransitionException {
+    Security.addProvider(new BouncyCastleProvider());
+    emptySlotPreState =
+        GenesisStateBuilder.get_genesis_state(
+            validatorCount,
+            Paths.get(System.getProperty("artemis.jmh.genesisCache", "build/jmh")));
+    // initiate() processes the epoch when it reaches the last slot of one
+    epochBoundaryPreState = BeaconStateWithCache.deepCopy(emptySlotPreState);
+    stateTransition.process_slots(
+        epochBoundaryPreState,
+        emptySlotPreState.getSlot() + Constants.SLOTS_PER_EPOCH - 2,
+        Bytes32.ZERO);
+  }
+
+  @Setup(Level.Invocation)
+  public void copyStates() {
+    emptySlotState = BeaconStateWithCache.deepCopy(emptySlotPreState);
+    epochBoundaryState = BeaconStateWithCache.deepCopy(epochBoundaryPreState);
+  }
+
+  @Benchmark
+  public BeaconStateWithCache emptySlot() throws StateTransitionException {
+    stateTransition.initiate(emptySlotState, null, Bytes32.ZERO);
+    return emptySlotState;
+  }
+
+  @Benchmark
+  public BeaconStateWithCache epochBoundary() throws StateTransitionException {
+    stateTransition.initiate(epochBoundaryState, null, Bytes32.ZERO);
+    return epochBoundaryState;
+  }
+}
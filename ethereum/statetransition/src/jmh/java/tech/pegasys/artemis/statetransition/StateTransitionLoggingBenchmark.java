@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.tuweni.bytes.Bytes32;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.util.DataStructureUtil;
+
+/** Measures the cost of an empty slot transition with DEBUG logging disabled and enabled. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateTransitionLoggingBenchmark {
+
+  @Param({"INFO", "DEBUG"})
+  public String logLevel;
+
+  @Param({"128", "1024"})
+  public int validatorCount;
+
+  private final StateTransition stateTransition = new StateTransition();
+  private BeaconStateWithCache genesisState;
+  private BeaconStateWithCache state;
+
+  @Setup
+  public void setupGenesis() {
+    Security.addProvider(new BouncyCastleProvider());
+    Configurator.setLevel(
+        StateTransition.class.getName(), org.apache.logging.log4j.Level.valueOf(logLevel));
+    genesisState = DataStructureUtil.createInitialBeaconState(validatorCount);
+  }
+
+  @Setup(Level.Invocation)
+  public void copyState() {
+    state = BeaconStateWithCache.deepCopy(genesisState);
+  }
+
+  @Benchmark
+  public BeaconStateWithCache emptySlot() throws StateTransitionException {
+    stateTransition.initiate(state, null, Bytes32.ZERO);
+    return state;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import io.prometheus.client.Counter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+
+/**
+ * A bounded cache of states advanced through empty slots, keyed by the root of the block they were
+ * advanced from and the slot they were advanced to. Blocks built on the same parent after skipped
+ * slots, whether siblings or late blocks, then share the replay of the empty slots, including any
+ * epoch transition along the way.
+ *
+ * <p>On a miss, the state is advanced from the most advanced cached state of the same block that
+ * does not overshoot the target slot, or from the block's own state if there is none. States are
+ * copied going in and out of the cache, so callers are free to mutate what they get.
+ */
+public class CheckpointStateCache {
+
+  private static final Counter HITS =
+      Counter.build()
+          .namespace("artemis")
+          .name("checkpoint_state_cache_hits_total")
+          .help("Number of advanced states found in the checkpoint state cache")
+          .register();
+  private static final Counter MISSES =
+      Counter.build()
+          .namespace("artemis")
+          .name("checkpoint_state_cache_misses_total")
+          .help("Number of advanced states missing from the checkpoint state cache")
+          .register();
+
+  private final StateTransition stateTransition;
+  private final Map<Key, BeaconStateWithCache> states;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * @param stateTransition - Advances the states on a miss.
+   * @param capacity - The maximum number of states to keep.
+   */
+  public CheckpointStateCache(StateTransition stateTransition, int capacity) {
+    this.stateTransition = stateTransition;
+    this.states =
+        new LinkedHashMap<Key, BeaconStateWithCache>(capacity, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, BeaconStateWithCache> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /**
+   * Returns a copy of the state of the given block advanced through empty slots to the given slot.
+   *
+   * @param block_root - The root of the block the state belongs to.
+   * @param block_state - The post-state of the block. The state is not mutated.
+   * @param slot - The slot to advance the state to.
+   * @return The advanced state.
+   * @throws StateTransitionException
+   */
+  public synchronized BeaconStateWithCache get_advanced_state(
+      Bytes32 block_root, BeaconStateWithCache block_state, long slot)
+      throws StateTransitionException {
+    Key key = new Key(block_root, slot);
+    BeaconStateWithCache cached = states.get(key);
+    if (cached != null) {
+      hitCount++;
+      HITS.inc();
+      return BeaconStateWithCache.deepCopy(cached);
+    }
+    missCount++;
+    MISSES.inc();
+
+    BeaconStateWithCache closest = block_state;
+    for (Map.Entry<Key, BeaconStateWithCache> entry : states.entrySet()) {
+      long cached_slot = entry.getKey().slot;
+      if (entry.getKey().blockRoot.equals(block_root)
+          && cached_slot < slot
+          && cached_slot > closest.getSlot()) {
+        closest = entry.getValue();
+      }
+    }
+    BeaconStateWithCache state = BeaconStateWithCache.deepCopy(closest);
+    stateTransition.process_slots(state, slot, block_root);
+    states.put(key, BeaconStateWithCache.deepCopy(state));
+    return state;
+  }
+
+  /**
+   * Adds a state that was advanced from the given block to the given slot elsewhere.
+   *
+   * @param block_root - The root of the block the state was advanced from.
+   * @param slot - The slot the state was advanced to.
+   * @param state - The advanced state. The state is copied.
+   */
+  public synchronized void put(Bytes32 block_root, long slot, BeaconStateWithCache state) {
+    states.put(new Key(block_root, slot), BeaconStateWithCache.deepCopy(state));
+  }
+
+  public synchronized int size() {
+    return states.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  private static final class Key {
+    private final Bytes32 blockRoot;
+    private final long slot;
+
+    private Key(Bytes32 blockRoot, long slot) {
+      this.blockRoot = blockRoot;
+      this.slot = slot;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(blockRoot, slot);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return slot == other.slot && blockRoot.equals(other.blockRoot);
+    }
+  }
+}
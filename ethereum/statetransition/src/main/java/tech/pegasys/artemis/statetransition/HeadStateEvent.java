@@ -16,14 +16,24 @@ package tech.pegasys.artemis.statetransition;
 import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
 import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 
+/**
+ * Posted once the head state for a new slot is settled. The head state is a copy made for the
+ * subscribers, which the validator coordinator applies its block proposal to in place before
+ * rolling it back. Other subscribers read the slot and finalized epoch captured when the event was
+ * created instead.
+ */
 public class HeadStateEvent {
 
   private BeaconStateWithCache headState;
   private BeaconBlock headBlock;
+  private final long slot;
+  private final long finalizedEpoch;
 
   public HeadStateEvent(BeaconStateWithCache state, BeaconBlock block) {
     headState = state;
     headBlock = block;
+    slot = state.getSlot();
+    finalizedEpoch = state.getFinalized_epoch();
   }
 
   /** ******************* * GETTERS & SETTERS * * ******************* */
@@ -34,4 +44,12 @@ public class HeadStateEvent {
   public BeaconBlock getHeadBlock() {
     return headBlock;
   }
+
+  public long getSlot() {
+    return slot;
+  }
+
+  public long getFinalizedEpoch() {
+    return finalizedEpoch;
+  }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.STATE_ROOT;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.observe;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.state.StateJournal;
+import tech.pegasys.artemis.storage.ChainStorageClient;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+/**
+ * Keeps the post-states of imported blocks without copying a state per block. A block is applied in
+ * place to the state of its parent under a {@link StateJournal}. If the block is imported, the
+ * journal is kept as the way back to the parent state, otherwise it is rolled back right away.
+ *
+ * <p>The states of a chain of blocks applied this way share one working state, which holds the
+ * newest of them. An older state is only rebuilt when it is looked up: each newer state is forked
+ * off the working state before its journal is rolled back, until the working state holds the older
+ * state, which can then be built on in place again.
+ *
+ * <p>While a state only exists as a journal, it is removed from the {@link ChainStorageClient}, and
+ * it is added back once it is rebuilt. States held here are mutated in place, so readers on other
+ * threads get a copy from {@link #getCopy(Bytes32)}.
+ */
+public class JournaledStates {
+
+  private final ChainStorageClient store;
+  private final Map<Bytes32, Chain> chains = new HashMap<>();
+
+  public JournaledStates(ChainStorageClient store) {
+    this.store = store;
+  }
+
+  /**
+   * Returns the state with the given root, rebuilding it if it only exists as a journal. States not
+   * held here, e.g. the genesis state, are looked up in the store.
+   *
+   * @param state_root - The root of the state.
+   * @return The state, which must not be mutated.
+   */
+  public Optional<BeaconStateWithCache> get(Bytes32 state_root) {
+    Chain chain = chains.get(state_root);
+    if (chain == null) {
+      return store.getState(state_root).map(BeaconStateWithCache.class::cast);
+    }
+    while (!chain.tip.equals(state_root)) {
+      // The forked state stays the newest state of a chain of its own
+      BeaconStateWithCache newest = BeaconStateWithCache.deepCopy(chain.working);
+      chains.put(chain.tip, new Chain(newest, chain.tip));
+      store.addState(chain.tip, newest);
+      Undo undo = chain.journals.pop();
+      undo.journal.rollback();
+      chain.tip = undo.state_root;
+      store.addState(chain.tip, chain.working);
+    }
+    return Optional.of(chain.working);
+  }
+
+  /**
+   * Returns a copy of the state with the given root, for readers that may still be looking at it
+   * while later blocks are applied in place.
+   *
+   * @param state_root - The root of the state.
+   * @return A copy of the state, or the stored state itself if it is not held here.
+   */
+  public Optional<BeaconStateWithCache> getCopy(Bytes32 state_root) {
+    if (!chains.containsKey(state_root)) {
+      return get(state_root);
+    }
+    return get(state_root).map(BeaconStateWithCache::deepCopy);
+  }
+
+  /**
+   * Returns whether a block can be applied in place to the state with the given root, which is the
+   * case if the state is the newest state of a chain held here.
+   *
+   * @param state_root - The root of the state.
+   * @return A boolean indicating if the state can be built on in place.
+   */
+  public boolean isTip(Bytes32 state_root) {
+    Chain chain = chains.get(state_root);
+    return chain != null && chain.tip.equals(state_root);
+  }
+
+  /**
+   * Adds a state that was computed on a private copy, so that blocks can be applied to it in place
+   * from now on.
+   *
+   * @param state_root - The root of the state.
+   * @param state - The state, which is no longer to be mutated by the caller.
+   */
+  public void add(Bytes32 state_root, BeaconStateWithCache state) {
+    chains.put(state_root, new Chain(state, state_root));
+    store.addState(state_root, state);
+  }
+
+  /**
+   * Applies a block in place to the state of its parent and keeps the result if it reaches the
+   * state root the block claims. If the block is invalid or reaches another state root, the parent
+   * state is rolled back and nothing is stored.
+   *
+   * @param stateTransition - Applies the block.
+   * @param block - The block to apply.
+   * @param parent_block_root - The root of the parent block.
+   * @param parent_state_root - The root of the parent state, for which {@link #isTip(Bytes32)} has
+   *     to hold.
+   * @return The state root reached by the block.
+   * @throws StateTransitionException if the block is invalid.
+   */
+  public Bytes32 apply_in_place(
+      StateTransition stateTransition,
+      BeaconBlock block,
+      Bytes32 parent_block_root,
+      Bytes32 parent_state_root)
+      throws StateTransitionException {
+    Chain chain = chains.get(parent_state_root);
+    if (chain == null || !chain.tip.equals(parent_state_root)) {
+      throw new IllegalArgumentException("Not the newest state of a chain: " + parent_state_root);
+    }
+    BeaconStateWithCache state = chain.working;
+    StateJournal journal = state.startJournal();
+    Bytes32 state_root = null;
+    try {
+      stateTransition.initiate(state, block, parent_block_root);
+      long stateRootStart = System.nanoTime();
+      state_root = HashTreeUtil.hash_tree_root(state.toBytes());
+      observe(STATE_ROOT, stateRootStart);
+    } finally {
+      // A block that was imported before reaches a state that is already held
+      if (state_root == null
+          || !state_root.equals(block.getState_root())
+          || chains.containsKey(state_root)) {
+        journal.rollback();
+      }
+    }
+    if (journal.isRecording()) {
+      journal.close();
+      chain.journals.push(new Undo(parent_state_root, journal));
+      chain.tip = state_root;
+      chains.put(state_root, chain);
+      store.removeState(parent_state_root);
+      store.addState(state_root, state);
+    }
+    return state_root;
+  }
+
+  private static final class Chain {
+    private final BeaconStateWithCache working;
+    private Bytes32 tip;
+    // Newest first, each taking the working state back to the state before it
+    private final Deque<Undo> journals = new ArrayDeque<>();
+
+    private Chain(BeaconStateWithCache working, Bytes32 tip) {
+      this.working = working;
+      this.tip = tip;
+    }
+  }
+
+  private static final class Undo {
+    private final Bytes32 state_root;
+    private final StateJournal journal;
+
+    private Undo(Bytes32 state_root, StateJournal journal) {
+      this.state_root = state_root;
+      this.journal = journal;
+    }
+  }
+}
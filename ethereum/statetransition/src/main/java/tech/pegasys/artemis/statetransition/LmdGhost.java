@@ -35,8 +35,7 @@ public class LmdGhost {
       throws StateTransitionException {
     List<Integer> active_validator_indices =
         ValidatorsUtil.get_active_validator_indices(
-            start_state.getValidator_registry(),
-            BeaconStateUtil.slot_to_epoch(start_block.getSlot()));
+            start_state, BeaconStateUtil.slot_to_epoch(start_block.getSlot()));
 
     List<BeaconBlock> attestation_targets = new ArrayList<>();
     for (Integer validatorIndex : active_validator_indices) {
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.logging.log4j.Level;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.util.alogger.ALogger;
+
+/**
+ * Speculatively advances a copy of the head state through the empty slots up to the next slot,
+ * including the epoch transition at an epoch boundary, while the node waits for the slot to start.
+ *
+ * <p>A speculation is identified by the root of the head block the state was advanced from and the
+ * slot it was advanced to. It is only handed out if both match when the slot starts, and it is
+ * discarded as soon as another speculation is started, e.g. because the head changed.
+ *
+ * <p>The state is copied on the calling thread, after which the background thread is the only one
+ * to touch the copy.
+ */
+public class SpeculativeSlotProcessor {
+
+  private static final ALogger LOG = new ALogger(SpeculativeSlotProcessor.class.getName());
+
+  private final StateTransition stateTransition;
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t =
+                new Thread(
+                    () -> {
+                      // Kept out of the phase histograms, which time the critical path
+                      StateTransitionMetrics.suppressOnCurrentThread();
+                      r.run();
+                    },
+                    "speculative-slot-processor");
+            t.setDaemon(true);
+            return t;
+          });
+  private Speculation speculation;
+
+  public SpeculativeSlotProcessor(StateTransition stateTransition) {
+    this.stateTransition = stateTransition;
+  }
+
+  /**
+   * Starts advancing a copy of the given state to the given slot in the background, discarding any
+   * previous speculation.
+   *
+   * @param state - The state of the head block. The state is not mutated.
+   * @param previous_block_root - The root of the head block.
+   * @param slot - The slot to advance the copy to.
+   */
+  public synchronized void precompute(
+      BeaconStateWithCache state, Bytes32 previous_block_root, long slot) {
+    discard();
+    BeaconStateWithCache copy = BeaconStateWithCache.deepCopy(state);
+    Future<BeaconStateWithCache> future =
+        executor.submit(
+            () -> {
+              stateTransition.process_slots(copy, slot, previous_block_root);
+              return copy;
+            });
+    speculation = new Speculation(previous_block_root, slot, future);
+  }
+
+  /**
+   * Hands out the speculatively advanced state if it was advanced from the given head block to the
+   * given slot, waiting for it to be ready if needed. Each speculation is handed out at most once,
+   * and any speculation that does not match is discarded.
+   *
+   * @param previous_block_root - The root of the current head block.
+   * @param slot - The slot the state should be at.
+   * @return The advanced state, or empty if it has to be computed by the caller.
+   */
+  public synchronized Optional<BeaconStateWithCache> take(Bytes32 previous_block_root, long slot) {
+    Speculation taken = speculation;
+    speculation = null;
+    if (taken == null) {
+      return Optional.empty();
+    }
+    if (taken.slot != slot || !taken.previousBlockRoot.equals(previous_block_root)) {
+      taken.future.cancel(false);
+      LOG.log(Level.DEBUG, "Discarding speculative state for slot " + taken.slot);
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(taken.future.get());
+    } catch (ExecutionException e) {
+      LOG.log(Level.WARN, "Speculative slot processing failed: " + e.getCause());
+      return Optional.empty();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  /** Discards the current speculation, if any. */
+  public synchronized void discard() {
+    if (speculation != null) {
+      speculation.future.cancel(false);
+      speculation = null;
+    }
+  }
+
+  private static final class Speculation {
+    private final Bytes32 previousBlockRoot;
+    private final long slot;
+    private final Future<BeaconStateWithCache> future;
+
+    private Speculation(Bytes32 previousBlockRoot, long slot, Future<BeaconStateWithCache> future) {
+      this.previousBlockRoot = previousBlockRoot;
+      this.slot = slot;
+      this.future = future;
+    }
+  }
+}
@@ -13,6 +13,15 @@
 
 package tech.pegasys.artemis.statetransition;
 
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCKS_IMPORTED;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCKS_INVALID;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCKS_SKIPPED;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCKS_STATE_ROOT_MISMATCH;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCK_IMPORT;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.FORK_CHOICE;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.STATE_ROOT;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.observe;
+
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import java.util.Date;
@@ -28,7 +37,7 @@ import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
 import tech.pegasys.artemis.datastructures.state.BeaconState;
 import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
-import tech.pegasys.artemis.datastructures.util.DataStructureUtil;
+import tech.pegasys.artemis.datastructures.util.GenesisStateBuilder;
 import tech.pegasys.artemis.pow.api.DepositEvent;
 import tech.pegasys.artemis.pow.api.Eth2GenesisEvent;
 import tech.pegasys.artemis.storage.ChainStorage;
@@ -50,10 +59,14 @@ public class StateProcessor {
   private long nodeSlot;
   private final EventBus eventBus;
   private final StateTransition stateTransition;
+  private final SpeculativeSlotProcessor speculativeSlotProcessor;
+  private final CheckpointStateCache checkpointStates;
   private ChainStorageClient store;
+  private final JournaledStates states;
   private ArtemisConfiguration config;
   private PublicKey publicKey;
   private static final ALogger LOG = new ALogger(StateProcessor.class.getName());
+  private static final int CHECKPOINT_STATE_CACHE_SIZE = 32;
 
   // Colors
   public static final String ANSI_RESET = "\u001B[0m";
@@ -65,9 +78,17 @@ public class StateProcessor {
     this.eventBus = eventBus;
     this.config = config;
     this.publicKey = publicKey;
-    this.stateTransition = new StateTransition(true);
+    this.stateTransition = new StateTransition(true, config.getEpochProcessingParallelism());
+    this.speculativeSlotProcessor = new SpeculativeSlotProcessor(stateTransition);
+    this.checkpointStates = new CheckpointStateCache(stateTransition, CHECKPOINT_STATE_CACHE_SIZE);
     this.eventBus.register(this);
     this.store = ChainStorage.Create(ChainStorageClient.class, eventBus);
+    this.states = new JournaledStates(store);
+  }
+
+  public void stop() {
+    this.eventBus.unregister(this);
+    this.stateTransition.close();
   }
 
   @Subscribe
@@ -83,11 +104,12 @@ public class StateProcessor {
     LOG.log(Level.INFO, "Node time: " + nodeTime);
     try {
       BeaconState initial_state =
-          DataStructureUtil.createInitialBeaconState(config.getNumValidators());
+          GenesisStateBuilder.get_genesis_state(
+              config.getNumValidators(), config.getGenesisCacheDirectory());
       Bytes32 initial_state_root = HashTreeUtil.hash_tree_root(initial_state.toBytes());
-      BeaconBlock genesis_block = BeaconBlock.createGenesis(initial_state_root);
-      Bytes32 genesis_block_root = HashTreeUtil.hash_tree_root(genesis_block.toBytes());
-      LOG.log(Level.INFO, "Initial state root is " + initial_state_root.toHexString());
+      BeaconBlock genesis_block = BeaconBlock.createGenesis(initial_state_root).seal();
+      Bytes32 genesis_block_root = genesis_block.hashTreeRoot();
+      LOG.log(Level.INFO, () -> "Initial state root is " + initial_state_root.toHexString());
       this.store.addState(initial_state_root, initial_state);
       this.store.addProcessedBlock(genesis_block_root, genesis_block);
       this.headBlock = genesis_block;
@@ -103,7 +125,7 @@ public class StateProcessor {
 
   @Subscribe
   public void onDepositEvent(DepositEvent event) {
-    LOG.log(Level.INFO, "Deposit Event detected: " + event.toString());
+    LOG.log(Level.INFO, () -> "Deposit Event detected: " + event.toString());
   }
 
   @Subscribe
@@ -136,11 +158,13 @@ public class StateProcessor {
 
     // Update the block that is subjectively the head of the chain  using lmd_ghost
     LOG.log(Level.INFO, ANSI_PURPLE + "Updating head block using LMDGhost." + ANSI_RESET);
+    long forkChoiceStart = System.nanoTime();
     updateHeadBlockUsingLMDGhost();
+    observe(FORK_CHOICE, forkChoiceStart);
     LOG.log(Level.INFO, "Head block slot:                      " + headBlock.getSlot());
 
     // Get head block's state, and initialize a newHeadState variable to run state transition on
-    BeaconState headBlockState = store.getState(headBlock.getState_root()).get();
+    BeaconStateWithCache headBlockState = states.get(headBlock.getState_root()).get();
     long justifiedBlockSlot =
         BeaconStateUtil.get_epoch_start_slot(headBlockState.getJustified_epoch());
     long finalizedBlockSlot =
@@ -148,26 +172,39 @@ public class StateProcessor {
     LOG.log(Level.INFO, "Justified block slot:                 " + justifiedBlockSlot);
     LOG.log(Level.INFO, "Finalized block slot:                 " + finalizedBlockSlot);
 
-    BeaconStateWithCache newHeadState =
-        BeaconStateWithCache.deepCopy((BeaconStateWithCache) headBlockState);
-
     // Hash headBlock to obtain previousBlockRoot that will be used
     // as previous_block_root in all state transitions
-    Bytes32 previousBlockRoot = HashTreeUtil.hash_tree_root(headBlock.toBytes());
+    Bytes32 previousBlockRoot = headBlock.hashTreeRoot();
+
+    // Use the state precomputed during the previous slot if the head has not changed since
+    Optional<BeaconStateWithCache> precomputedState =
+        speculativeSlotProcessor.take(previousBlockRoot, nodeSlot);
+    BeaconStateWithCache newHeadState;
+    if (precomputedState.isPresent()) {
+      LOG.log(Level.INFO, "Using precomputed state for slot: " + nodeSlot);
+      newHeadState = precomputedState.get();
+    } else {
+      newHeadState = BeaconStateWithCache.deepCopy(headBlockState);
 
-    // Run state transition with no blocks from the newHeadState.slot to node.slot
-    boolean firstLoop = true;
-    while (newHeadState.getSlot() < nodeSlot) {
-      if (firstLoop) {
+      // Run state transition with no blocks from the newHeadState.slot to node.slot
+      if (newHeadState.getSlot() < nodeSlot) {
         LOG.log(
             Level.INFO,
             "Transitioning state from slot: " + newHeadState.getSlot() + " to slot: " + nodeSlot);
-        firstLoop = false;
+        stateTransition.process_slots(newHeadState, nodeSlot, previousBlockRoot);
       }
-      stateTransition.initiate(newHeadState, null, previousBlockRoot);
     }
-    this.store.addState(HashTreeUtil.hash_tree_root(newHeadState.toBytes()), newHeadState);
+    long stateRootStart = System.nanoTime();
+    Bytes32 newHeadStateRoot = HashTreeUtil.hash_tree_root(newHeadState.toBytes());
+    observe(STATE_ROOT, stateRootStart);
+    this.store.addState(newHeadStateRoot, newHeadState);
     this.headState = newHeadState;
+    // Blocks arriving late on top of the head can start from the advanced head state
+    if (newHeadState.getSlot() > headBlockState.getSlot()) {
+      checkpointStates.put(previousBlockRoot, newHeadState.getSlot(), newHeadState);
+    }
+    // The head is settled until the next slot, so start advancing it to the next slot
+    speculativeSlotProcessor.precompute(newHeadState, previousBlockRoot, nodeSlot + 1);
     // Send event that headState has been updated
     this.eventBus.post(
         new HeadStateEvent(
@@ -196,43 +233,60 @@ public class StateProcessor {
   }
 
   protected void processBlock(Optional<BeaconBlock> unprocessedBlock) {
+    long start = System.nanoTime();
     try {
       Boolean shouldProcessBlock = inspectBlock(unprocessedBlock);
       if (shouldProcessBlock) {
 
         // Get block, block root and block state root
         BeaconBlock block = unprocessedBlock.get();
-        Bytes32 blockRoot = HashTreeUtil.hash_tree_root(block.toBytes());
+        Bytes32 blockRoot = block.hashTreeRoot();
         Bytes32 blockStateRoot = block.getState_root();
 
         // Get parent block, parent block root, parent block state root, and parent block state
         BeaconBlock parentBlock = this.store.getParent(block).get();
         Bytes32 parentBlockRoot = block.getParent_root();
         Bytes32 parentBlockStateRoot = parentBlock.getState_root();
-        BeaconState parentBlockState = this.store.getState(parentBlockStateRoot).get();
-
-        // Run state transition with no blocks from the parentBlockState.slot to block.slot - 1
-        boolean firstLoop = true;
-        BeaconStateWithCache currentState =
-            BeaconStateWithCache.deepCopy((BeaconStateWithCache) parentBlockState);
-        while (currentState.getSlot() < block.getSlot() - 1) {
-          if (firstLoop) {
+        BeaconStateWithCache parentBlockState = states.get(parentBlockStateRoot).get();
+
+        Bytes32 newStateRoot;
+        boolean skippedSlots = parentBlockState.getSlot() < block.getSlot() - 1;
+        if (!skippedSlots && states.isTip(parentBlockStateRoot)) {
+          // Run state transition with the block on the parent block state itself, which is rolled
+          // back unless the block is imported
+          LOG.log(Level.INFO, ANSI_PURPLE + "Running state transition with block." + ANSI_RESET);
+          newStateRoot =
+              states.apply_in_place(stateTransition, block, parentBlockRoot, parentBlockStateRoot);
+        } else {
+          BeaconStateWithCache currentState;
+          if (skippedSlots) {
+            // Run state transition with no blocks from the parentBlockState.slot to block.slot - 1
             LOG.log(
                 Level.INFO,
                 "Running state transition with no blocks from parent block slot: "
-                    + currentState.getSlot()
+                    + parentBlockState.getSlot()
                     + " to slot: "
                     + (block.getSlot() - 1));
-            firstLoop = false;
+            // Blocks on the same parent after the same skipped slots share the replay
+            currentState =
+                checkpointStates.get_advanced_state(
+                    parentBlockRoot, parentBlockState, block.getSlot() - 1);
+          } else {
+            // Only states not imported from a block, i.e. the genesis state, are copied
+            currentState = BeaconStateWithCache.deepCopy(parentBlockState);
           }
-          stateTransition.initiate(currentState, null, parentBlockRoot);
-        }
 
-        // Run state transition with the block
-        LOG.log(Level.INFO, ANSI_PURPLE + "Running state transition with block." + ANSI_RESET);
-        stateTransition.initiate(currentState, block, parentBlockRoot);
+          // Run state transition with the block
+          LOG.log(Level.INFO, ANSI_PURPLE + "Running state transition with block." + ANSI_RESET);
+          stateTransition.initiate(currentState, block, parentBlockRoot);
 
-        Bytes32 newStateRoot = HashTreeUtil.hash_tree_root(currentState.toBytes());
+          long stateRootStart = System.nanoTime();
+          newStateRoot = HashTreeUtil.hash_tree_root(currentState.toBytes());
+          observe(STATE_ROOT, stateRootStart);
+          if (blockStateRoot.equals(newStateRoot)) {
+            states.add(newStateRoot, currentState);
+          }
+        }
 
         // Verify that the state root we have computed is the state root that block is
         // claiming us we should reach, save the block and the state if its correct.
@@ -241,21 +295,26 @@ public class StateProcessor {
               Level.INFO,
               ANSI_PURPLE + "Block state root matches the calculated state root." + ANSI_RESET);
           this.store.addProcessedBlock(blockRoot, block);
-          this.store.addState(newStateRoot, currentState);
+          BLOCKS_IMPORTED.inc();
         } else {
+          BLOCKS_STATE_ROOT_MISMATCH.inc();
           LOG.log(
               Level.INFO,
               ANSI_RED + "Block state root does NOT match the calculated state root!" + ANSI_RESET);
           LOG.log(
               Level.INFO,
-              ANSI_RED + "Block state root: " + blockStateRoot.toHexString() + ANSI_RESET);
+              () -> ANSI_RED + "Block state root: " + blockStateRoot.toHexString() + ANSI_RESET);
           LOG.log(
-              Level.INFO, ANSI_RED + "New state root: " + newStateRoot.toHexString() + ANSI_RESET);
+              Level.INFO,
+              () -> ANSI_RED + "New state root: " + newStateRoot.toHexString() + ANSI_RESET);
         }
+        observe(BLOCK_IMPORT, start);
       } else {
+        BLOCKS_SKIPPED.inc();
         LOG.log(Level.INFO, "Skipped processing block");
       }
     } catch (NoSuchElementException | IllegalArgumentException | StateTransitionException e) {
+      BLOCKS_INVALID.inc();
       LOG.log(Level.WARN, e.toString());
     }
   }
@@ -266,12 +325,11 @@ public class StateProcessor {
 
     try {
       // Obtain latest justified block and state that will be passed into lmd_ghost
-      if (store.getState(justifiedStateRoot).isPresent()
-          && store.getProcessedBlock(justifiedBlockRoot).isPresent()) {
-        BeaconState justifiedState = store.getState(justifiedStateRoot).get();
+      Optional<BeaconStateWithCache> justifiedState = states.get(justifiedStateRoot);
+      if (justifiedState.isPresent() && store.getProcessedBlock(justifiedBlockRoot).isPresent()) {
         BeaconBlock justifiedBlock = store.getProcessedBlock(justifiedBlockRoot).get();
         // Run lmd_ghost to get the head block
-        this.headBlock = LmdGhost.lmd_ghost(store, justifiedState, justifiedBlock);
+        this.headBlock = LmdGhost.lmd_ghost(store, justifiedState.get(), justifiedBlock);
       } else {
         throw new StateTransitionException(
             "JustifiedStateRoot and/or JustifiedBlockRoot is unavailable.");
@@ -287,7 +345,7 @@ public class StateProcessor {
     // because get_block_root gives an error if the slot is not less than state.slot
     if (BeaconStateUtil.slot_to_epoch(nodeSlot) != Constants.GENESIS_EPOCH) {
       try {
-        BeaconState headState = store.getState(headBlock.getState_root()).get();
+        BeaconState headState = states.get(headBlock.getState_root()).get();
         this.finalizedBlockRoot =
             BeaconStateUtil.get_block_root(
                 headState, BeaconStateUtil.get_epoch_start_slot(headState.getFinalized_epoch()));
@@ -304,9 +362,10 @@ public class StateProcessor {
   }
 
   protected void recordData(Date date) {
-    BeaconState justifiedState = store.getState(justifiedStateRoot).get();
+    // The record is handled on another thread, so it gets copies of states imported in place
+    BeaconState justifiedState = states.getCopy(justifiedStateRoot).get();
     BeaconBlock justifiedBlock = store.getProcessedBlock(justifiedBlockRoot).get();
-    BeaconState finalizedState = store.getState(finalizedStateRoot).get();
+    BeaconState finalizedState = states.getCopy(finalizedStateRoot).get();
     BeaconBlock finalizedBlock = store.getProcessedBlock(finalizedBlockRoot).get();
     RawRecord record =
         new RawRecord(
@@ -14,7 +14,33 @@
 package tech.pegasys.artemis.statetransition;
 
 import static tech.pegasys.artemis.datastructures.Constants.SLOTS_PER_EPOCH;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.ATTESTATIONS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.ATTESTATION_INCLUSION;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.ATTESTER_SLASHINGS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.BLOCK_SIGNATURES;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.CROSSLINKS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.CROSSLINK_REWARDS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.CURRENT_STATE_UPDATES;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.DEPOSITS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.EJECTIONS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.EPOCH_ETH1_DATA;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.EPOCH_PARTICIPATION;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.ETH1_DATA;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.FINAL_UPDATES;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.JUSTIFICATION;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.JUSTIFICATION_AND_FINALIZATION;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.PENALTIES_AND_EXITS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.PREPROCESS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.PREVIOUS_STATE_UPDATES;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.PROPOSER_SLASHINGS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.RANDAO;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.SLOT;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.TRANSFERS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.VALIDATOR_REGISTRY;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.VOLUNTARY_EXITS;
+import static tech.pegasys.artemis.statetransition.StateTransitionMetrics.observe;
 
+import java.util.concurrent.ForkJoinPool;
 import org.apache.logging.log4j.Level;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
@@ -22,6 +48,8 @@ import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
 import tech.pegasys.artemis.statetransition.util.BlockProcessingException;
 import tech.pegasys.artemis.statetransition.util.BlockProcessorUtil;
+import tech.pegasys.artemis.statetransition.util.BlockSignatures;
+import tech.pegasys.artemis.statetransition.util.EpochParticipation;
 import tech.pegasys.artemis.statetransition.util.EpochProcessingException;
 import tech.pegasys.artemis.statetransition.util.EpochProcessorUtil;
 import tech.pegasys.artemis.statetransition.util.PreProcessingUtil;
@@ -35,6 +63,7 @@ public class StateTransition {
   private static final ALogger LOG = new ALogger(StateTransition.class.getName());
 
   private boolean printEnabled = false;
+  private ForkJoinPool epochProcessingPool;
 
   public StateTransition() {}
 
@@ -42,6 +71,25 @@ public class StateTransition {
     this.printEnabled = printEnabled;
   }
 
+  /**
+   * @param printEnabled
+   * @param epochProcessingParallelism - The number of threads evaluating committees during epoch
+   *     processing, or 1 to evaluate them on the calling thread.
+   */
+  public StateTransition(boolean printEnabled, int epochProcessingParallelism) {
+    this.printEnabled = printEnabled;
+    if (epochProcessingParallelism > 1) {
+      this.epochProcessingPool = new ForkJoinPool(epochProcessingParallelism);
+    }
+  }
+
+  /** Stops the threads evaluating committees during epoch processing, if there are any. */
+  public void close() {
+    if (epochProcessingPool != null) {
+      epochProcessingPool.shutdown();
+    }
+  }
+
   public void initiate(BeaconStateWithCache state, BeaconBlock block, Bytes32 previous_block_root)
       throws StateTransitionException {
     state.incrementSlot();
@@ -51,71 +99,116 @@ public class StateTransition {
     slotProcessor(state, previous_block_root);
     LOG.log(
         Level.DEBUG,
-        "State root after slotProcessing: " + HashTreeUtil.hash_tree_root(state.toBytes()));
+        () -> "State root after slotProcessing: " + HashTreeUtil.hash_tree_root(state.toBytes()));
     // per-block processing
     if (block != null) {
       blockProcessor(state, block);
     }
     LOG.log(
         Level.DEBUG,
-        "State root after blockProcessing: " + HashTreeUtil.hash_tree_root(state.toBytes()));
+        () -> "State root after blockProcessing: " + HashTreeUtil.hash_tree_root(state.toBytes()));
     // per-epoch processing
     if ((state.getSlot() + 1) % SLOTS_PER_EPOCH == 0) {
       epochProcessor(state, block);
       LOG.log(
           Level.DEBUG,
-          "State root after epochProcessing: " + HashTreeUtil.hash_tree_root(state.toBytes()));
+          () ->
+              "State root after epochProcessing: "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()));
     }
     // reset all cached state variables
     state.invalidateCache();
   }
 
+  /**
+   * Advances the state through empty slots until it reaches the target slot. This produces the same
+   * state as calling {@link #initiate(BeaconStateWithCache, BeaconBlock, Bytes32)} with no block
+   * once per slot, but only does the per-slot block root bookkeeping for slots that are not the
+   * last slot of an epoch. Proposer preprocessing and cache invalidation only happen ahead of epoch
+   * processing, which is the only consumer of the cached proposer index on an empty slot.
+   *
+   * @param state - The state to advance. NOTE: The state is mutated.
+   * @param targetSlot - The slot the state should be at once this returns.
+   * @param previous_block_root - The root of the block at the head of the chain being extended.
+   * @throws StateTransitionException
+   */
+  public void process_slots(
+      BeaconStateWithCache state, long targetSlot, Bytes32 previous_block_root)
+      throws StateTransitionException {
+    while (state.getSlot() < targetSlot) {
+      state.incrementSlot();
+      slotProcessor(state, previous_block_root);
+      if ((state.getSlot() + 1) % SLOTS_PER_EPOCH == 0) {
+        preProcessor(state);
+        epochProcessor(state, null);
+        state.invalidateCache();
+      }
+    }
+  }
+
   protected void preProcessor(BeaconStateWithCache state) {
+    long start = System.nanoTime();
     // calculate currentBeaconProposerIndex
     PreProcessingUtil.cacheCurrentBeaconProposerIndex(state);
+    observe(PREPROCESS, start);
   }
 
   protected void slotProcessor(BeaconStateWithCache state, Bytes32 previous_block_root) {
     try {
+      long start = System.nanoTime();
       // Slots the proposer has skipped (i.e. layers of RANDAO expected)
       // should be in Validator.randao_skips
       SlotProcessorUtil.updateBlockRoots(state, previous_block_root);
+      observe(SLOT, start);
     } catch (SlotProcessingException e) {
       LOG.log(Level.WARN, "  Slot processing error: " + e, printEnabled);
     }
   }
 
-  private void blockProcessor(BeaconStateWithCache state, BeaconBlock block) {
+  private void blockProcessor(BeaconStateWithCache state, BeaconBlock block)
+      throws StateTransitionException {
     if (BlockProcessorUtil.verify_slot(state, block)) {
       try {
+        long start = System.nanoTime();
 
+        // Verify all the signatures of the block against the pre-state before mutating it.
         // Only verify the proposer's signature if we are processing blocks (not proposing them)
-        if (!block.getState_root().equals(Bytes32.ZERO)) {
-          // Verify Proposer Signature
-          BlockProcessorUtil.verify_signature(state, block);
-        }
+        BlockSignatures.collect(state, block, !block.getState_root().equals(Bytes32.ZERO))
+            .verify();
+        start = observe(BLOCK_SIGNATURES, start);
 
-        // Verify and Update RANDAO
-        BlockProcessorUtil.verify_and_update_randao(state, block);
+        // Update RANDAO
+        BlockProcessorUtil.verify_and_update_randao(state, block, false);
+        start = observe(RANDAO, start);
 
         // Update Eth1 Data
         BlockProcessorUtil.update_eth1_data(state, block);
+        start = observe(ETH1_DATA, start);
 
         // Block Body - Operations
         // Execute Proposer Slashings
-        BlockProcessorUtil.proposer_slashing(state, block);
+        BlockProcessorUtil.proposer_slashing(state, block, false);
+        start = observe(PROPOSER_SLASHINGS, start);
         // Execute Attester Slashings
-        BlockProcessorUtil.attester_slashing(state, block);
+        BlockProcessorUtil.attester_slashing(state, block, false);
+        start = observe(ATTESTER_SLASHINGS, start);
         // Process Attestations
-        BlockProcessorUtil.processAttestations(state, block);
+        BlockProcessorUtil.processAttestations(state, block, false);
+        start = observe(ATTESTATIONS, start);
         // Process Deposits
-        BlockProcessorUtil.processDeposits(state, block);
+        BlockProcessorUtil.processDeposits(state, block, false);
+        start = observe(DEPOSITS, start);
         // Process Exits
-        BlockProcessorUtil.processVoluntaryExits(state, block);
+        BlockProcessorUtil.processVoluntaryExits(state, block, false);
+        start = observe(VOLUNTARY_EXITS, start);
         // Process Transfers
-        BlockProcessorUtil.processTransfers(state, block);
+        BlockProcessorUtil.processTransfers(state, block, false);
+        observe(TRANSFERS, start);
       } catch (BlockProcessingException e) {
+        // The state may be partially updated here; callers either run blocks against a private
+        // copy they discard, or roll back the state's journal when the block is rejected
         LOG.log(Level.WARN, "  Block processing error: " + e, printEnabled);
+        throw new StateTransitionException("Invalid block at slot " + block.getSlot() + ": " + e);
       }
     } else {
       LOG.log(Level.INFO, "  Skipping block processing for this slot.", printEnabled);
@@ -136,84 +229,121 @@ public class StateTransition {
           Level.INFO,
           "Epoch:                                  " + BeaconStateUtil.get_current_epoch(state),
           printEnabled);
+      long start = System.nanoTime();
       EpochProcessorUtil.updateEth1Data(state);
+      start = observe(EPOCH_ETH1_DATA, start);
       LOG.log(
           Level.DEBUG,
-          "State root after updateEth1Data(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after updateEth1Data(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
-      EpochProcessorUtil.updateJustification(state, block);
+      EpochParticipation participation =
+          EpochProcessorUtil.get_epoch_participation(state, epochProcessingPool);
+      start = observe(EPOCH_PARTICIPATION, start);
+      EpochProcessorUtil.updateJustification(state, block, participation);
+      start = observe(JUSTIFICATION, start);
       LOG.log(
           Level.DEBUG,
-          "State root after updateJustification(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after updateJustification(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
-      EpochProcessorUtil.updateCrosslinks(state);
+      EpochProcessorUtil.updateCrosslinks(state, participation, epochProcessingPool);
+      start = observe(CROSSLINKS, start);
       LOG.log(
           Level.DEBUG,
-          "State root after updateCrosslinks(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after updateCrosslinks(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
 
       long previous_total_balance = BeaconStateUtil.previous_total_balance(state);
       LOG.log(
           Level.DEBUG,
-          "State root after justificationAndFinalization(): "
-              + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after justificationAndFinalization(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
-      EpochProcessorUtil.justificationAndFinalization(state, previous_total_balance);
+      EpochProcessorUtil.justificationAndFinalization(
+          state, previous_total_balance, participation);
+      start = observe(JUSTIFICATION_AND_FINALIZATION, start);
       LOG.log(
           Level.DEBUG,
-          "State root after attestionInclusion(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after attestionInclusion(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
-      EpochProcessorUtil.attestionInclusion(state, previous_total_balance);
+      EpochProcessorUtil.attestionInclusion(state, previous_total_balance, participation);
+      start = observe(ATTESTATION_INCLUSION, start);
       LOG.log(
           Level.DEBUG,
-          "State root after crosslinkRewards(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after crosslinkRewards(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
-      EpochProcessorUtil.crosslinkRewards(state, previous_total_balance);
+      EpochProcessorUtil.crosslinkRewards(
+          state, previous_total_balance, participation, epochProcessingPool);
+      start = observe(CROSSLINK_REWARDS, start);
 
       LOG.log(
           Level.DEBUG,
-          "State root after process_ejections(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after process_ejections(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
       EpochProcessorUtil.process_ejections(state);
+      start = observe(EJECTIONS, start);
 
       LOG.log(
           Level.DEBUG,
-          "State root after previousStateUpdates(): "
-              + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after previousStateUpdates(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
       EpochProcessorUtil.previousStateUpdates(state);
+      start = observe(PREVIOUS_STATE_UPDATES, start);
       if (EpochProcessorUtil.shouldUpdateValidatorRegistry(state)) {
         LOG.log(
             Level.DEBUG,
-            "State root after update_validator_registry(): "
-                + HashTreeUtil.hash_tree_root(state.toBytes()),
+            () ->
+                "State root after update_validator_registry(): "
+                    + HashTreeUtil.hash_tree_root(state.toBytes()),
             printEnabled);
         EpochProcessorUtil.update_validator_registry(state);
+        start = observe(VALIDATOR_REGISTRY, start);
         LOG.log(
             Level.DEBUG,
-            "State root after currentStateUpdatesAlt1(): "
-                + HashTreeUtil.hash_tree_root(state.toBytes()),
+            () ->
+                "State root after currentStateUpdatesAlt1(): "
+                    + HashTreeUtil.hash_tree_root(state.toBytes()),
             printEnabled);
         EpochProcessorUtil.currentStateUpdatesAlt1(state);
+        start = observe(CURRENT_STATE_UPDATES, start);
       } else {
         LOG.log(
             Level.DEBUG,
-            "State root after currentStateUpdatesAlt2(): "
-                + HashTreeUtil.hash_tree_root(state.toBytes()),
+            () ->
+                "State root after currentStateUpdatesAlt2(): "
+                    + HashTreeUtil.hash_tree_root(state.toBytes()),
             printEnabled);
         EpochProcessorUtil.currentStateUpdatesAlt2(state);
+        start = observe(CURRENT_STATE_UPDATES, start);
       }
       LOG.log(
           Level.DEBUG,
-          "State root after process_penalties_and_exits(): "
-              + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () ->
+              "State root after process_penalties_and_exits(): "
+                  + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
       EpochProcessorUtil.process_penalties_and_exits(state);
+      start = observe(PENALTIES_AND_EXITS, start);
       LOG.log(
           Level.DEBUG,
-          "State root after finalUpdates(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
+          () -> "State root after finalUpdates(): " + HashTreeUtil.hash_tree_root(state.toBytes()),
           printEnabled);
       EpochProcessorUtil.finalUpdates(state);
+      observe(FINAL_UPDATES, start);
     } catch (EpochProcessingException e) {
       LOG.log(Level.WARN, "  Epoch processing error: " + e, printEnabled);
     }
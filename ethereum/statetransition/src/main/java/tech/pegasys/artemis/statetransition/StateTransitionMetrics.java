@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+/**
+ * Timings of the phases of the state transition and of block import, exported as Prometheus
+ * histograms on the default registry and therefore through the metrics endpoint.
+ *
+ * <p>The labelled children are resolved once, so timing a phase only costs a call to
+ * System.nanoTime() and an observation. Consecutive phases are timed back to back, so debug logging
+ * between two phases is attributed to the second one.
+ *
+ * <p>Threads that run the transition off the critical path, such as the speculative slot processor,
+ * suppress their observations so that the histograms only describe work the node waits for.
+ */
+final class StateTransitionMetrics {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private static final double[] BUCKETS = {
+    0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+  };
+
+  private static final Histogram PHASES =
+      Histogram.build()
+          .namespace("artemis")
+          .name("state_transition_phase_seconds")
+          .help("Time spent in each phase of the state transition")
+          .labelNames("phase")
+          .buckets(BUCKETS)
+          .register();
+  private static final Histogram OPERATIONS =
+      Histogram.build()
+          .namespace("artemis")
+          .name("state_processor_operation_seconds")
+          .help("Time spent by the state processor in block import, fork choice and hashing")
+          .labelNames("operation")
+          .buckets(BUCKETS)
+          .register();
+  private static final Counter BLOCKS =
+      Counter.build()
+          .namespace("artemis")
+          .name("state_processor_blocks_total")
+          .help("Number of blocks handled by the state processor, by outcome")
+          .labelNames("result")
+          .register();
+
+  // Per-slot and per-block phases
+  static final Histogram.Child PREPROCESS = PHASES.labels("preprocess");
+  static final Histogram.Child SLOT = PHASES.labels("slot");
+  static final Histogram.Child BLOCK_SIGNATURES = PHASES.labels("block_signatures");
+  static final Histogram.Child RANDAO = PHASES.labels("randao");
+  static final Histogram.Child ETH1_DATA = PHASES.labels("eth1_data");
+  static final Histogram.Child PROPOSER_SLASHINGS = PHASES.labels("proposer_slashings");
+  static final Histogram.Child ATTESTER_SLASHINGS = PHASES.labels("attester_slashings");
+  static final Histogram.Child ATTESTATIONS = PHASES.labels("attestations");
+  static final Histogram.Child DEPOSITS = PHASES.labels("deposits");
+  static final Histogram.Child VOLUNTARY_EXITS = PHASES.labels("voluntary_exits");
+  static final Histogram.Child TRANSFERS = PHASES.labels("transfers");
+
+  // Per-epoch phases, one per EpochProcessorUtil step
+  static final Histogram.Child EPOCH_ETH1_DATA = PHASES.labels("epoch_eth1_data");
+  static final Histogram.Child EPOCH_PARTICIPATION = PHASES.labels("epoch_participation");
+  static final Histogram.Child JUSTIFICATION = PHASES.labels("justification");
+  static final Histogram.Child CROSSLINKS = PHASES.labels("crosslinks");
+  static final Histogram.Child JUSTIFICATION_AND_FINALIZATION =
+      PHASES.labels("justification_and_finalization");
+  static final Histogram.Child ATTESTATION_INCLUSION = PHASES.labels("attestation_inclusion");
+  static final Histogram.Child CROSSLINK_REWARDS = PHASES.labels("crosslink_rewards");
+  static final Histogram.Child EJECTIONS = PHASES.labels("ejections");
+  static final Histogram.Child PREVIOUS_STATE_UPDATES = PHASES.labels("previous_state_updates");
+  static final Histogram.Child VALIDATOR_REGISTRY = PHASES.labels("validator_registry");
+  static final Histogram.Child CURRENT_STATE_UPDATES = PHASES.labels("current_state_updates");
+  static final Histogram.Child PENALTIES_AND_EXITS = PHASES.labels("penalties_and_exits");
+  static final Histogram.Child FINAL_UPDATES = PHASES.labels("final_updates");
+
+  // State processor operations
+  static final Histogram.Child BLOCK_IMPORT = OPERATIONS.labels("block_import");
+  static final Histogram.Child FORK_CHOICE = OPERATIONS.labels("fork_choice");
+  static final Histogram.Child STATE_ROOT = OPERATIONS.labels("state_root");
+
+  // Block import outcomes
+  static final Counter.Child BLOCKS_IMPORTED = BLOCKS.labels("imported");
+  static final Counter.Child BLOCKS_INVALID = BLOCKS.labels("invalid");
+  static final Counter.Child BLOCKS_STATE_ROOT_MISMATCH = BLOCKS.labels("state_root_mismatch");
+  static final Counter.Child BLOCKS_SKIPPED = BLOCKS.labels("skipped");
+
+  private static final ThreadLocal<Boolean> SUPPRESSED = ThreadLocal.withInitial(() -> false);
+
+  private StateTransitionMetrics() {}
+
+  /** Stops recording the observations made on the current thread. */
+  static void suppressOnCurrentThread() {
+    SUPPRESSED.set(true);
+  }
+
+  /**
+   * Records the time elapsed since the given start in the given histogram.
+   *
+   * @param histogram - The histogram of the phase that just ended.
+   * @param startNanos - The System.nanoTime() at which the phase started.
+   * @return The current System.nanoTime(), i.e. the start of the next phase.
+   */
+  static long observe(Histogram.Child histogram, long startNanos) {
+    long now = System.nanoTime();
+    if (!SUPPRESSED.get()) {
+      histogram.observe((now - startNanos) / NANOS_PER_SECOND);
+    }
+    return now;
+  }
+}
@@ -66,6 +66,7 @@ import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
 import tech.pegasys.artemis.datastructures.blocks.Eth1DataVote;
 import tech.pegasys.artemis.datastructures.blocks.Proposal;
 import tech.pegasys.artemis.datastructures.operations.Attestation;
+import tech.pegasys.artemis.datastructures.operations.AttestationData;
 import tech.pegasys.artemis.datastructures.operations.AttestationDataAndCustodyBit;
 import tech.pegasys.artemis.datastructures.operations.AttesterSlashing;
 import tech.pegasys.artemis.datastructures.operations.Deposit;
@@ -79,6 +80,7 @@ import tech.pegasys.artemis.datastructures.state.CrosslinkCommittee;
 import tech.pegasys.artemis.datastructures.state.PendingAttestation;
 import tech.pegasys.artemis.datastructures.state.Validator;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.util.Hasher;
 import tech.pegasys.artemis.util.alogger.ALogger;
 import tech.pegasys.artemis.util.bls.BLSException;
 import tech.pegasys.artemis.util.bls.BLSPublicKey;
@@ -110,15 +112,6 @@ public final class BlockProcessorUtil {
   public static void verify_signature(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
     try {
-      // Let proposal = Proposal(block.slot, BEACON_CHAIN_SHARD_NUMBER,
-      //   signed_root(block, "signature"), block.signature).
-      Proposal proposal =
-          new Proposal(
-              block.getSlot(),
-              Constants.BEACON_CHAIN_SHARD_NUMBER,
-              block.signedRoot("signature"),
-              block.getSignature());
-
       // Verify that bls_verify(pubkey=state.validator_registry[get_beacon_proposer_index(state,
       //   state.slot)].pubkey, message_hash=signed_root(proposal, "signature"),
       // signature=block.signature,
@@ -126,7 +119,7 @@ public final class BlockProcessorUtil {
       int proposerIndex = BeaconStateUtil.get_beacon_proposer_index(state, state.getSlot());
       BLSPublicKey pubkey = state.getValidator_registry().get(proposerIndex).getPubkey();
       long domain = get_domain(state.getFork(), get_current_epoch(state), DOMAIN_PROPOSAL);
-      Bytes32 messageHash = proposal.signedRoot("signature");
+      Bytes32 messageHash = get_proposal_message(block);
 
       checkArgument(
           bls_verify(pubkey, messageHash, block.getSignature(), domain), "verify signature failed");
@@ -136,6 +129,19 @@ public final class BlockProcessorUtil {
     }
   }
 
+  // Helper method for verify_signature()
+  static Bytes32 get_proposal_message(BeaconBlock block) {
+    // Let proposal = Proposal(block.slot, BEACON_CHAIN_SHARD_NUMBER,
+    //   signed_root(block, "signature"), block.signature).
+    Proposal proposal =
+        new Proposal(
+            block.getSlot(),
+            Constants.BEACON_CHAIN_SHARD_NUMBER,
+            block.signedRoot("signature"),
+            block.getSignature());
+    return proposal.signedRoot("signature");
+  }
+
   /**
    * Spec: https://github.com/ethereum/eth2.0-specs/blob/v0.1/specs/core/0_beacon-chain.md#randao
    *
@@ -144,15 +150,32 @@ public final class BlockProcessorUtil {
    */
   public static void verify_and_update_randao(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    verify_and_update_randao(state, block, true);
+  }
+
+  /**
+   * Same as {@link #verify_and_update_randao(BeaconState, BeaconBlock)}, except that verifying the
+   * RANDAO reveal can be skipped when it was already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void verify_and_update_randao(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       long currentEpoch = BeaconStateUtil.get_current_epoch(state);
-      Bytes32 messageHash = hash_tree_root(int_to_bytes(currentEpoch, 8));
       // - Let proposer = state.validator_registry[get_beacon_proposer_index(state, state.slot)].
       // - Verify that bls_verify(pubkey=proposer.pubkey,
       //    message=int_to_bytes32(get_current_epoch(state)), signature=block.randao_reveal,
       //    domain=get_domain(state.fork, get_current_epoch(state), DOMAIN_RANDAO)).
-      checkArgument(
-          verify_randao(state, block, currentEpoch, messageHash), "in verify_and_update_randao()");
+      if (verify_signatures) {
+        Bytes32 messageHash = hash_tree_root(int_to_bytes(currentEpoch, 8));
+        checkArgument(
+            verify_randao(state, block, currentEpoch, messageHash),
+            "in verify_and_update_randao()");
+      }
 
       // - Set state.latest_randao_mixes[get_current_epoch(state) % LATEST_RANDAO_MIXES_LENGTH]
       //    = xor(get_randao_mix(state, get_current_epoch(state)), hash(block.randao_reveal)).
@@ -204,6 +227,20 @@ public final class BlockProcessorUtil {
    */
   public static void proposer_slashing(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    proposer_slashing(state, block, true);
+  }
+
+  /**
+   * Same as {@link #proposer_slashing(BeaconState, BeaconBlock)}, except that verifying the
+   * proposal signatures can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void proposer_slashing(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       // Verify that len(block.body.proposer_slashings) <= MAX_PROPOSER_SLASHINGS
       checkArgument(
@@ -241,35 +278,37 @@ public final class BlockProcessorUtil {
         // - Verify that proposer.slashed == false
         checkArgument(!proposer.isSlashed());
 
-        // - Verify that bls_verify(pubkey=proposer.pubkey,
-        //     message=hash_tree_root(proposer_slashing.proposal_data_1),
-        //     signature=proposer_slashing.proposal_signature_1, domain=get_domain(state.fork,
-        //     slot_to_epoch(proposer_slashing.proposal_data_1.slot), DOMAIN_PROPOSAL)) is valid.
-        checkArgument(
-            bls_verify(
-                proposer.getPubkey(),
-                hash_tree_root(proposer_slashing.getProposal_1().toBytes()),
-                proposer_slashing.getProposal_1().getSignature(),
-                get_domain(
-                    state.getFork(),
-                    slot_to_epoch(proposer_slashing.getProposal_1().getSlot()),
-                    DOMAIN_PROPOSAL)),
-            "checkArgument threw and exception in proposer_slashing()");
-
-        // - Verify that bls_verify(pubkey=proposer.pubkey,
-        //     message=hash_tree_root(proposer_slashing.proposal_data_2),
-        //     signature=proposer_slashing.proposal_signature_2, domain=get_domain(state.fork,
-        //     slot_to_epoch(proposer_slashing.proposal_data_2.slot), DOMAIN_PROPOSAL)) is valid.
-        checkArgument(
-            bls_verify(
-                proposer.getPubkey(),
-                hash_tree_root(proposer_slashing.getProposal_2().toBytes()),
-                proposer_slashing.getProposal_2().getSignature(),
-                get_domain(
-                    state.getFork(),
-                    slot_to_epoch(proposer_slashing.getProposal_2().getSlot()),
-                    DOMAIN_PROPOSAL)),
-            "checkArgument threw and exception in proposer_slashing()");
+        if (verify_signatures) {
+          // - Verify that bls_verify(pubkey=proposer.pubkey,
+          //     message=hash_tree_root(proposer_slashing.proposal_data_1),
+          //     signature=proposer_slashing.proposal_signature_1, domain=get_domain(state.fork,
+          //     slot_to_epoch(proposer_slashing.proposal_data_1.slot), DOMAIN_PROPOSAL)) is valid.
+          checkArgument(
+              bls_verify(
+                  proposer.getPubkey(),
+                  hash_tree_root(proposer_slashing.getProposal_1().toBytes()),
+                  proposer_slashing.getProposal_1().getSignature(),
+                  get_domain(
+                      state.getFork(),
+                      slot_to_epoch(proposer_slashing.getProposal_1().getSlot()),
+                      DOMAIN_PROPOSAL)),
+              "checkArgument threw and exception in proposer_slashing()");
+
+          // - Verify that bls_verify(pubkey=proposer.pubkey,
+          //     message=hash_tree_root(proposer_slashing.proposal_data_2),
+          //     signature=proposer_slashing.proposal_signature_2, domain=get_domain(state.fork,
+          //     slot_to_epoch(proposer_slashing.proposal_data_2.slot), DOMAIN_PROPOSAL)) is valid.
+          checkArgument(
+              bls_verify(
+                  proposer.getPubkey(),
+                  hash_tree_root(proposer_slashing.getProposal_2().toBytes()),
+                  proposer_slashing.getProposal_2().getSignature(),
+                  get_domain(
+                      state.getFork(),
+                      slot_to_epoch(proposer_slashing.getProposal_2().getSlot()),
+                      DOMAIN_PROPOSAL)),
+              "checkArgument threw and exception in proposer_slashing()");
+        }
 
         // - Run penalize_validator(state, proposer_slashing.proposer_index)
         penalize_validator(state, (int) proposer_slashing.getProposer_index());
@@ -288,6 +327,20 @@ public final class BlockProcessorUtil {
    */
   public static void attester_slashing(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    attester_slashing(state, block, true);
+  }
+
+  /**
+   * Same as {@link #attester_slashing(BeaconState, BeaconBlock)}, except that verifying the
+   * aggregate signatures can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void attester_slashing(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       // Verify that len(block.body.attester_slashings) <= MAX_ATTESTER_SLASHINGS
       checkArgument(
@@ -318,11 +371,11 @@ public final class BlockProcessorUtil {
 
         // - Verify that verify_slashable_attestation(state, slashable_attestation_1)
         checkArgument(
-            verify_slashable_attestation(state, slashable_attestation_1),
+            verify_slashable_attestation(state, slashable_attestation_1, verify_signatures),
             "checkArgument threw and exception in attester_slashing()");
         // - Verify that verify_slashable_attestation(state, slashable_attestation_2)
         checkArgument(
-            verify_slashable_attestation(state, slashable_attestation_2),
+            verify_slashable_attestation(state, slashable_attestation_2, verify_signatures),
             "checkArgument threw and exception in attester_slashing()");
 
         // - Let slashable_indices = [index for index in slashable_attestation_1.validator_indices
@@ -357,6 +410,20 @@ public final class BlockProcessorUtil {
    */
   public static void processAttestations(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    processAttestations(state, block, true);
+  }
+
+  /**
+   * Same as {@link #processAttestations(BeaconState, BeaconBlock)}, except that verifying the
+   * aggregate signatures can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void processAttestations(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       // Verify that len(block.body.attestations) <= MAX_ATTESTATIONS
       checkArgument(
@@ -423,7 +490,7 @@ public final class BlockProcessorUtil {
 
         // - Verify bitfields and aggregate signature
         checkArgument(
-            verify_bitfields_and_aggregate_signature(attestation, state),
+            verify_bitfields_and_aggregate_signature(attestation, state, verify_signatures),
             "in process attestations(): 7");
 
         // - Verify that attestation.data.shard_block_root == ZERO_HASH
@@ -469,10 +536,12 @@ public final class BlockProcessorUtil {
    *
    * @param attestation
    * @param state
+   * @param verify_signature - False if the aggregate signature was already verified.
    * @return true if bitfields and aggregate signature verified. Otherwise, false.
    */
   private static boolean verify_bitfields_and_aggregate_signature(
-      Attestation attestation, BeaconState state) throws BlockProcessingException {
+      Attestation attestation, BeaconState state, boolean verify_signature)
+      throws BlockProcessingException {
     checkArgument(
         Objects.equals(
             attestation.getCustody_bitfield(),
@@ -502,6 +571,39 @@ public final class BlockProcessorUtil {
           "checkArgument threw and exception in verify_bitfields_and_aggregate_signature() 3");
     }
 
+    if (!verify_signature) {
+      return true;
+    }
+
+    List<BLSPublicKey> pubkeys = get_attestation_pubkeys(attestation, state);
+    List<Bytes32> messages = get_custody_bit_messages(attestation.getData());
+    BLSSignature signature = attestation.getAggregate_signature();
+    long domain =
+        get_domain(
+            state.getFork(), slot_to_epoch(attestation.getData().getSlot()), DOMAIN_ATTESTATION);
+
+    LOG.log(Level.DEBUG, () -> "pubkey0: " + pubkeys.get(0));
+    LOG.log(Level.DEBUG, () -> "pubkey1: " + pubkeys.get(1));
+    LOG.log(Level.DEBUG, () -> "message0: " + messages.get(0).toHexString());
+    LOG.log(Level.DEBUG, () -> "message1: " + messages.get(1).toHexString());
+    LOG.log(Level.DEBUG, () -> "signature: " + signature);
+    LOG.log(Level.DEBUG, () -> "domain: " + domain);
+    checkArgument(
+        bls_verify_multiple(pubkeys, messages, signature, domain),
+        "checkArgument threw and exception in verify_bitfields_and_aggregate_signature() 4");
+    // TODO
+    return true;
+  }
+
+  /**
+   * Returns the aggregate public keys of the custody bit 0 and custody bit 1 participants of the
+   * given attestation.
+   *
+   * @param attestation
+   * @param state
+   * @return The custody bit 0 and custody bit 1 aggregate public keys.
+   */
+  static List<BLSPublicKey> get_attestation_pubkeys(Attestation attestation, BeaconState state) {
     List<Integer> participants =
         get_attestation_participants(
             state, attestation.getData(), attestation.getAggregation_bitfield().toArray());
@@ -525,30 +627,19 @@ public final class BlockProcessorUtil {
       pubkey1.add(state.getValidator_registry().get(i).getPubkey());
     }
 
-    List<BLSPublicKey> pubkeys =
-        Arrays.asList(bls_aggregate_pubkeys(pubkey0), bls_aggregate_pubkeys(pubkey1));
-    List<Bytes32> messages =
-        Arrays.asList(
-            hash_tree_root(
-                new AttestationDataAndCustodyBit(attestation.getData(), false).toBytes()),
-            hash_tree_root(
-                new AttestationDataAndCustodyBit(attestation.getData(), true).toBytes()));
-    BLSSignature signature = attestation.getAggregate_signature();
-    long domain =
-        get_domain(
-            state.getFork(), slot_to_epoch(attestation.getData().getSlot()), DOMAIN_ATTESTATION);
+    return Arrays.asList(bls_aggregate_pubkeys(pubkey0), bls_aggregate_pubkeys(pubkey1));
+  }
 
-    LOG.log(Level.DEBUG, "pubkey0: " + pubkeys.get(0));
-    LOG.log(Level.DEBUG, "pubkey1: " + pubkeys.get(1));
-    LOG.log(Level.DEBUG, "message0: " + messages.get(0).toHexString());
-    LOG.log(Level.DEBUG, "message1: " + messages.get(1).toHexString());
-    LOG.log(Level.DEBUG, "signature: " + signature);
-    LOG.log(Level.DEBUG, "domain: " + domain);
-    checkArgument(
-        bls_verify_multiple(pubkeys, messages, signature, domain),
-        "checkArgument threw and exception in verify_bitfields_and_aggregate_signature() 4");
-    // TODO
-    return true;
+  /**
+   * Returns the messages signed by the custody bit 0 and custody bit 1 signers of an attestation.
+   *
+   * @param data
+   * @return The custody bit 0 and custody bit 1 messages.
+   */
+  static List<Bytes32> get_custody_bit_messages(AttestationData data) {
+    return Arrays.asList(
+        hash_tree_root(new AttestationDataAndCustodyBit(data, false).toBytes()),
+        hash_tree_root(new AttestationDataAndCustodyBit(data, true).toBytes()));
   }
 
   /**
@@ -559,6 +650,20 @@ public final class BlockProcessorUtil {
    */
   public static void processDeposits(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    processDeposits(state, block, true);
+  }
+
+  /**
+   * Same as {@link #processDeposits(BeaconState, BeaconBlock)}, except that verifying the proofs of
+   * possession can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void processDeposits(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       // Verify that len(block.body.deposits) <= MAX_DEPOSITS
       checkArgument(block.getBody().getDeposits().size() <= MAX_DEPOSITS);
@@ -589,7 +694,7 @@ public final class BlockProcessorUtil {
                 state.getLatest_eth1_data().getDeposit_root()));
 
         // - Run process_deposit
-        process_deposit(state, deposit);
+        process_deposit(state, deposit, verify_signatures);
 
         state.setDeposit_index(state.getDeposit_index() + 1);
       }
@@ -607,6 +712,20 @@ public final class BlockProcessorUtil {
    */
   public static void processVoluntaryExits(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    processVoluntaryExits(state, block, true);
+  }
+
+  /**
+   * Same as {@link #processVoluntaryExits(BeaconState, BeaconBlock)}, except that verifying the
+   * exit signatures can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void processVoluntaryExits(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     try {
       // Verify that len(block.body.voluntary_exits) <= MAX_VOLUNTARY_EXITS
       checkArgument(
@@ -634,13 +753,15 @@ public final class BlockProcessorUtil {
         //     pubkey=validator.pubkey, message_hash=signed_root(exit,"signatre"),
         // signature=exit.signature,
         //     domain=get_domain(state.fork, exit.epoch, DOMAIN_EXIT)) is valid
-        checkArgument(
-            bls_verify(
-                validator.getPubkey(),
-                voluntaryExit.signedRoot("signature"),
-                voluntaryExit.getSignature(),
-                get_domain(state.getFork(), voluntaryExit.getEpoch(), DOMAIN_EXIT)),
-            "checkArgument threw and exception in processExits()");
+        if (verify_signatures) {
+          checkArgument(
+              bls_verify(
+                  validator.getPubkey(),
+                  voluntaryExit.signedRoot("signature"),
+                  voluntaryExit.getSignature(),
+                  get_domain(state.getFork(), voluntaryExit.getEpoch(), DOMAIN_EXIT)),
+              "checkArgument threw and exception in processExits()");
+        }
 
         // - Run initiate_validator_exit(state, exit.validator_index)
         initiate_validator_exit(state, toIntExact(voluntaryExit.getValidator_index()));
@@ -660,6 +781,20 @@ public final class BlockProcessorUtil {
    */
   public static void processTransfers(BeaconState state, BeaconBlock block)
       throws BlockProcessingException {
+    processTransfers(state, block, true);
+  }
+
+  /**
+   * Same as {@link #processTransfers(BeaconState, BeaconBlock)}, except that verifying the transfer
+   * signatures can be skipped when they were already verified against the same state.
+   *
+   * @param state
+   * @param block
+   * @param verify_signatures - False if the signatures of the block were already verified.
+   */
+  public static void processTransfers(
+      BeaconState state, BeaconBlock block, boolean verify_signatures)
+      throws BlockProcessingException {
     // Verify that len(block.body.transfers) <= MAX_TRANSFERS and that all transfers are distinct.
     checkArgument(block.getBody().getTransfers().size() <= Constants.MAX_TRANSFERS);
     checkArgument(allDistinct(block.getBody().getTransfers()));
@@ -706,30 +841,20 @@ public final class BlockProcessorUtil {
               .equals(
                   Bytes.concatenate(
                       BLS_WITHDRAWAL_PREFIX_BYTE, transfer.getPubkey().toBytes().slice(1))));
-      // - Let transfer_message = hash_tree_root(Transfer(from=transfer.from, to=transfer.to,
-      //     amount=transfer.amount, fee=transfer.fee, slot=transfer.slot,
-      //     signature=EMPTY_SIGNATURE))
-      Bytes32 transfer_message =
-          hash_tree_root(
-              new Transfer(
-                      transfer.getFrom(),
-                      transfer.getTo(),
-                      transfer.getAmount(),
-                      transfer.getFee(),
-                      transfer.getSlot(),
-                      transfer.getPubkey(),
-                      EMPTY_SIGNATURE)
-                  .toBytes());
       // - Perform bls_verify(pubkey=transfer.pubkey, message_hash=transfer_message,
       //     signature=transfer.signature, domain=get_domain(state.fork,
       //     slot_to_epoch(transfer.slot), DOMAIN_TRANSFER))
-      checkArgument(
-          bls_verify(
-              transfer.getPubkey(),
-              transfer_message,
-              transfer.getSignature(),
-              get_domain(
-                  state.getFork(), slot_to_epoch(transfer.getSlot()), Constants.DOMAIN_TRANSFER)));
+      if (verify_signatures) {
+        checkArgument(
+            bls_verify(
+                transfer.getPubkey(),
+                get_transfer_message(transfer),
+                transfer.getSignature(),
+                get_domain(
+                    state.getFork(),
+                    slot_to_epoch(transfer.getSlot()),
+                    Constants.DOMAIN_TRANSFER)));
+      }
 
       // - Set state.validator_balances[transfer.from] -= transfer.amount + transfer.fee
       long fromBalance = state.getValidator_balances().get(toIntExact(transfer.getFrom()));
@@ -752,6 +877,23 @@ public final class BlockProcessorUtil {
     }
   }
 
+  // Helper method for processTransfers()
+  static Bytes32 get_transfer_message(Transfer transfer) {
+    // - Let transfer_message = hash_tree_root(Transfer(from=transfer.from, to=transfer.to,
+    //     amount=transfer.amount, fee=transfer.fee, slot=transfer.slot,
+    //     signature=EMPTY_SIGNATURE))
+    return hash_tree_root(
+        new Transfer(
+                transfer.getFrom(),
+                transfer.getTo(),
+                transfer.getAmount(),
+                transfer.getFee(),
+                transfer.getSlot(),
+                transfer.getPubkey(),
+                EMPTY_SIGNATURE)
+            .toBytes());
+  }
+
   private static <T> boolean allDistinct(List<T> list) {
     HashSet<T> set = new HashSet<>();
 
@@ -781,9 +923,9 @@ public final class BlockProcessorUtil {
     Bytes32 value = leaf;
     for (int i = 0; i < depth; i++) {
       if (index / Math.pow(2, i) % 2 == 0) {
-        value = Hash.keccak256(Bytes.concatenate(branch.get(i), value));
+        value = Hasher.hash(branch.get(i), value);
       } else {
-        value = Hash.keccak256(Bytes.concatenate(value, branch.get(i)));
+        value = Hasher.hash(value, branch.get(i));
       }
     }
     return value.equals(root);
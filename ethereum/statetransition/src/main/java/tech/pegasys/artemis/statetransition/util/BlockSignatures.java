@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition.util;
+
+import static java.lang.Math.toIntExact;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_ATTESTATION;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_DEPOSIT;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_EXIT;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_PROPOSAL;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_RANDAO;
+import static tech.pegasys.artemis.datastructures.Constants.DOMAIN_TRANSFER;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_beacon_proposer_index;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_domain;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_slashable_attestation_pubkeys;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.int_to_bytes;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.slot_to_epoch;
+import static tech.pegasys.artemis.util.bls.BLSVerify.bls_verify;
+import static tech.pegasys.artemis.util.bls.BLSVerify.bls_verify_multiple;
+import static tech.pegasys.artemis.util.hashtree.HashTreeUtil.hash_tree_root;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.blocks.Proposal;
+import tech.pegasys.artemis.datastructures.operations.Attestation;
+import tech.pegasys.artemis.datastructures.operations.AttesterSlashing;
+import tech.pegasys.artemis.datastructures.operations.Deposit;
+import tech.pegasys.artemis.datastructures.operations.DepositInput;
+import tech.pegasys.artemis.datastructures.operations.ProposerSlashing;
+import tech.pegasys.artemis.datastructures.operations.SlashableAttestation;
+import tech.pegasys.artemis.datastructures.operations.Transfer;
+import tech.pegasys.artemis.datastructures.operations.VoluntaryExit;
+import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.util.bls.BLSPublicKey;
+import tech.pegasys.artemis.util.bls.BLSSignature;
+
+/**
+ * The signatures of a block, collected against the state the block is applied to before any of the
+ * block is processed. This allows verifying all of them, in parallel, ahead of mutating the state,
+ * after which the block is processed with its signature checks skipped.
+ *
+ * <p>All the signatures can be collected from the pre-state, since processing a block does not
+ * change anything they depend on: the fork and the slot are fixed, the public keys of existing
+ * validators never change, slashings and exits only take effect in a future epoch, and deposits
+ * only append validators that are not active yet.
+ *
+ * <p>Only the public keys, messages and domains are collected. The structural checks of each
+ * operation are still done while processing the block.
+ */
+public final class BlockSignatures {
+
+  private final List<SignatureCheck> checks;
+
+  private BlockSignatures(List<SignatureCheck> checks) {
+    this.checks = checks;
+  }
+
+  /**
+   * Collects the signatures of the given block against the given state.
+   *
+   * @param state - The state the block is about to be applied to. The state is not mutated.
+   * @param block - The block whose signatures to collect.
+   * @param include_proposer_signature - False if the block is being proposed, in which case it
+   *     is not signed yet.
+   * @return The signatures of the block.
+   * @throws BlockProcessingException if the block refers to data the state does not have.
+   */
+  public static BlockSignatures collect(
+      BeaconState state, BeaconBlock block, boolean include_proposer_signature)
+      throws BlockProcessingException {
+    try {
+      List<SignatureCheck> checks = new ArrayList<>();
+      long current_epoch = get_current_epoch(state);
+      BLSPublicKey proposer =
+          state
+              .getValidator_registry()
+              .get(get_beacon_proposer_index(state, state.getSlot()))
+              .getPubkey();
+
+      if (include_proposer_signature) {
+        checks.add(
+            new SignatureCheck(
+                proposer,
+                BlockProcessorUtil.get_proposal_message(block),
+                block.getSignature(),
+                get_domain(state.getFork(), current_epoch, DOMAIN_PROPOSAL)));
+      }
+
+      checks.add(
+          new SignatureCheck(
+              proposer,
+              hash_tree_root(int_to_bytes(current_epoch, 8)),
+              block.getRandao_reveal(),
+              get_domain(state.getFork(), current_epoch, DOMAIN_RANDAO)));
+
+      for (ProposerSlashing proposer_slashing : block.getBody().getProposer_slashings()) {
+        BLSPublicKey pubkey =
+            state
+                .getValidator_registry()
+                .get(toIntExact(proposer_slashing.getProposer_index()))
+                .getPubkey();
+        checks.add(proposal_check(state, pubkey, proposer_slashing.getProposal_1()));
+        checks.add(proposal_check(state, pubkey, proposer_slashing.getProposal_2()));
+      }
+
+      for (AttesterSlashing attester_slashing : block.getBody().getAttester_slashings()) {
+        checks.add(
+            slashable_attestation_check(state, attester_slashing.getSlashable_attestation_1()));
+        checks.add(
+            slashable_attestation_check(state, attester_slashing.getSlashable_attestation_2()));
+      }
+
+      for (Attestation attestation : block.getBody().getAttestations()) {
+        checks.add(
+            new SignatureCheck(
+                BlockProcessorUtil.get_attestation_pubkeys(attestation, state),
+                BlockProcessorUtil.get_custody_bit_messages(attestation.getData()),
+                attestation.getAggregate_signature(),
+                get_domain(
+                    state.getFork(),
+                    slot_to_epoch(attestation.getData().getSlot()),
+                    DOMAIN_ATTESTATION)));
+      }
+
+      long deposit_domain = get_domain(state.getFork(), current_epoch, DOMAIN_DEPOSIT);
+      for (Deposit deposit : block.getBody().getDeposits()) {
+        DepositInput deposit_input = deposit.getDeposit_data().getDeposit_input();
+        checks.add(
+            new SignatureCheck(
+                deposit_input.getPubkey(),
+                deposit_input.signedRoot("proof_of_possession"),
+                deposit_input.getProof_of_possession(),
+                deposit_domain));
+      }
+
+      for (VoluntaryExit voluntary_exit : block.getBody().getVoluntaryExits()) {
+        checks.add(
+            new SignatureCheck(
+                state
+                    .getValidator_registry()
+                    .get(toIntExact(voluntary_exit.getValidator_index()))
+                    .getPubkey(),
+                voluntary_exit.signedRoot("signature"),
+                voluntary_exit.getSignature(),
+                get_domain(state.getFork(), voluntary_exit.getEpoch(), DOMAIN_EXIT)));
+      }
+
+      for (Transfer transfer : block.getBody().getTransfers()) {
+        checks.add(
+            new SignatureCheck(
+                transfer.getPubkey(),
+                BlockProcessorUtil.get_transfer_message(transfer),
+                transfer.getSignature(),
+                get_domain(state.getFork(), slot_to_epoch(transfer.getSlot()), DOMAIN_TRANSFER)));
+      }
+
+      return new BlockSignatures(checks);
+    } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+      throw new BlockProcessingException(e);
+    }
+  }
+
+  /**
+   * Verifies all the collected signatures, in parallel.
+   *
+   * @throws BlockProcessingException if any of the signatures is invalid.
+   */
+  public void verify() throws BlockProcessingException {
+    if (!checks.parallelStream().allMatch(SignatureCheck::verify)) {
+      throw new BlockProcessingException("Block signature verification failed");
+    }
+  }
+
+  /** @return The number of signatures collected. */
+  public int size() {
+    return checks.size();
+  }
+
+  private static SignatureCheck proposal_check(
+      BeaconState state, BLSPublicKey pubkey, Proposal proposal) {
+    return new SignatureCheck(
+        pubkey,
+        hash_tree_root(proposal.toBytes()),
+        proposal.getSignature(),
+        get_domain(state.getFork(), slot_to_epoch(proposal.getSlot()), DOMAIN_PROPOSAL));
+  }
+
+  private static SignatureCheck slashable_attestation_check(
+      BeaconState state, SlashableAttestation slashable_attestation) {
+    return new SignatureCheck(
+        get_slashable_attestation_pubkeys(state, slashable_attestation),
+        BlockProcessorUtil.get_custody_bit_messages(slashable_attestation.getData()),
+        slashable_attestation.getAggregate_signature(),
+        get_domain(
+            state.getFork(),
+            slot_to_epoch(slashable_attestation.getData().getSlot()),
+            DOMAIN_ATTESTATION));
+  }
+
+  private static final class SignatureCheck {
+    private final List<BLSPublicKey> pubkeys;
+    private final List<Bytes32> messages;
+    private final BLSSignature signature;
+    private final long domain;
+
+    private SignatureCheck(
+        BLSPublicKey pubkey, Bytes32 message, BLSSignature signature, long domain) {
+      this(
+          Collections.singletonList(pubkey), Collections.singletonList(message), signature, domain);
+    }
+
+    private SignatureCheck(
+        List<BLSPublicKey> pubkeys, List<Bytes32> messages, BLSSignature signature, long domain) {
+      this.pubkeys = pubkeys;
+      this.messages = messages;
+      this.signature = signature;
+      this.domain = domain;
+    }
+
+    private boolean verify() {
+      if (pubkeys.size() == 1) {
+        return bls_verify(pubkeys.get(0), messages.get(0), signature, domain);
+      }
+      return bls_verify_multiple(pubkeys, messages, signature, domain);
+    }
+  }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.datastructures.operations.AttestationData;
+import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.datastructures.state.CrosslinkCommittee;
+import tech.pegasys.artemis.datastructures.state.PendingAttestation;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+
+/**
+ * The attestation participation of the previous and current epoch, collected in a single pass over
+ * the pending attestations of a state. Each attestation's participants are decoded once, and the
+ * committees they are decoded against are looked up once per slot.
+ *
+ * <p>Participation flags are kept as bitsets indexed by validator index. Balances are not cached,
+ * except for the per-shard crosslink votes, so the participation must be collected before any
+ * balance changes during epoch processing. The returned bitsets are shared and must not be
+ * modified.
+ *
+ * <p>When given a pool, the participants of the attestations and the votes of the shards are
+ * evaluated on it. The committees are still computed on the calling thread, as the caches of the
+ * state are not thread-safe.
+ */
+public final class EpochParticipation {
+
+  private static final CrosslinkVotes NO_VOTES = new CrosslinkVotes();
+
+  private final int previousEpochAttestationCount;
+  private final int currentEpochAttestationCount;
+  private final int previousEpochBoundaryAttestationCount;
+  private final int currentEpochBoundaryAttestationCount;
+
+  private final BitSet previousEpochAttesters = new BitSet();
+  private final BitSet previousEpochBoundaryAttesters = new BitSet();
+  private final BitSet previousEpochHeadAttesters = new BitSet();
+  private final BitSet currentEpochBoundaryAttesters = new BitSet();
+  private final int[] previousEpochAttesterIndices;
+  private final long[] inclusionSlots;
+  private final long[] inclusionDistances;
+  private final Map<Long, CrosslinkVotes> crosslinkVotes = new HashMap<>();
+
+  /**
+   * Collects the participation for the given state.
+   *
+   * @param state - The state at the last slot of the epoch being processed.
+   * @throws IllegalArgumentException if an attestation's participants cannot be determined.
+   */
+  public EpochParticipation(BeaconState state) throws IllegalArgumentException {
+    this(state, null);
+  }
+
+  /**
+   * Collects the participation for the given state, evaluating committees on the given pool.
+   *
+   * @param state - The state at the last slot of the epoch being processed.
+   * @param pool - The pool to evaluate committees on, or null to evaluate them on this thread.
+   * @throws IllegalArgumentException if an attestation's participants cannot be determined.
+   */
+  public EpochParticipation(BeaconState state, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    long current_epoch = BeaconStateUtil.get_current_epoch(state);
+    long previous_epoch = BeaconStateUtil.get_previous_epoch(state);
+    int validator_count = state.getValidator_registry().size();
+    long justified_epoch = state.getJustified_epoch();
+
+    int previousCount = 0;
+    int currentCount = 0;
+    int previousBoundaryCount = 0;
+    int currentBoundaryCount = 0;
+    Bytes32 previous_boundary_root = null;
+    Bytes32 current_boundary_root = null;
+    int[] attesterIndices = new int[validator_count];
+    int attesterCount = 0;
+    inclusionSlots = new long[validator_count];
+    inclusionDistances = new long[validator_count];
+    Map<Long, ArrayList<CrosslinkCommittee>> committees = new HashMap<>();
+    Map<Long, Map<Bytes32, ShardVote>> shardVotes = new HashMap<>();
+
+    List<PendingAttestation> attestations = new ArrayList<>();
+    for (PendingAttestation attestation : state.getLatest_attestations()) {
+      long epoch = BeaconStateUtil.slot_to_epoch(attestation.getData().getSlot());
+      if (epoch == previous_epoch || epoch == current_epoch) {
+        attestations.add(attestation);
+        committees.computeIfAbsent(
+            attestation.getData().getSlot(),
+            slot -> BeaconStateUtil.get_crosslink_committees_at_slot(state, slot));
+      }
+    }
+    List<List<Integer>> attestation_participants =
+        EpochProcessorUtil.evaluate(
+            attestations,
+            attestation ->
+                get_attestation_participants(
+                    committees.get(attestation.getData().getSlot()),
+                    attestation.getData(),
+                    attestation.getAggregation_bitfield().toArray()),
+            pool);
+
+    for (int i = 0; i < attestations.size(); i++) {
+      PendingAttestation attestation = attestations.get(i);
+      AttestationData data = attestation.getData();
+      long epoch = BeaconStateUtil.slot_to_epoch(data.getSlot());
+      boolean is_previous = epoch == previous_epoch;
+      boolean is_current = epoch == current_epoch;
+      List<Integer> participants = attestation_participants.get(i);
+
+      if (is_previous) {
+        previousCount++;
+        long inclusion_slot = attestation.getInclusionSlot();
+        long inclusion_distance = inclusion_slot - data.getSlot();
+        for (int index : participants) {
+          if (!previousEpochAttesters.get(index)) {
+            previousEpochAttesters.set(index);
+            attesterIndices[attesterCount++] = index;
+            inclusionSlots[index] = inclusion_slot;
+            inclusionDistances[index] = inclusion_distance;
+          } else if (inclusion_slot < inclusionSlots[index]) {
+            inclusionSlots[index] = inclusion_slot;
+            inclusionDistances[index] = inclusion_distance;
+          }
+        }
+
+        if (previous_boundary_root == null) {
+          previous_boundary_root =
+              BeaconStateUtil.get_block_root(
+                  state, BeaconStateUtil.get_epoch_start_slot(previous_epoch));
+        }
+        if (data.getEpoch_boundary_root().equals(previous_boundary_root)) {
+          previousBoundaryCount++;
+          set(previousEpochBoundaryAttesters, participants);
+        }
+
+        if (data.getBeacon_block_root()
+            .equals(BeaconStateUtil.get_block_root(state, data.getSlot()))) {
+          set(previousEpochHeadAttesters, participants);
+        }
+      }
+
+      if (is_current) {
+        currentCount++;
+        if (current_boundary_root == null) {
+          current_boundary_root =
+              BeaconStateUtil.get_block_root(
+                  state, BeaconStateUtil.get_epoch_start_slot(current_epoch));
+        }
+        if (data.getEpoch_boundary_root().equals(current_boundary_root)
+            && data.getJustified_epoch() == justified_epoch) {
+          currentBoundaryCount++;
+          set(currentEpochBoundaryAttesters, participants);
+        }
+      }
+
+      ShardVote vote =
+          shardVotes
+              .computeIfAbsent(data.getShard(), shard -> new HashMap<>())
+              .computeIfAbsent(data.getCrosslink_data_root(), root -> new ShardVote());
+      vote.balance += BeaconStateUtil.get_total_balance(state, participants);
+      set(vote.attesters, participants);
+    }
+
+    this.previousEpochAttestationCount = previousCount;
+    this.currentEpochAttestationCount = currentCount;
+    this.previousEpochBoundaryAttestationCount = previousBoundaryCount;
+    this.currentEpochBoundaryAttestationCount = currentBoundaryCount;
+    this.previousEpochAttesterIndices = Arrays.copyOf(attesterIndices, attesterCount);
+    List<Long> shards = new ArrayList<>(shardVotes.keySet());
+    List<CrosslinkVotes> votes =
+        EpochProcessorUtil.evaluate(
+            shards, shard -> new CrosslinkVotes(state, shardVotes.get(shard)), pool);
+    for (int i = 0; i < shards.size(); i++) {
+      crosslinkVotes.put(shards.get(i), votes.get(i));
+    }
+  }
+
+  /**
+   * Returns the validators that attested in the previous epoch, i.e. voted for the expected FFG
+   * source.
+   *
+   * @return The attesters, indexed by validator index.
+   * @throws IllegalArgumentException if there are no previous epoch attestations.
+   */
+  public BitSet getPreviousEpochAttesters() throws IllegalArgumentException {
+    checkPreviousEpochAttestations();
+    return previousEpochAttesters;
+  }
+
+  /**
+   * Returns the validators that attested in the previous epoch, in the order in which they first
+   * appear in the pending attestations.
+   *
+   * @return The indices of the attesters. Callers must not modify the array.
+   * @throws IllegalArgumentException if there are no previous epoch attestations.
+   */
+  public int[] getPreviousEpochAttesterIndices() throws IllegalArgumentException {
+    checkPreviousEpochAttestations();
+    return previousEpochAttesterIndices;
+  }
+
+  /**
+   * Returns the validators that voted for the expected FFG target in the previous epoch.
+   *
+   * @return The attesters, indexed by validator index.
+   * @throws IllegalArgumentException if there are no previous epoch boundary attestations.
+   */
+  public BitSet getPreviousEpochBoundaryAttesters() throws IllegalArgumentException {
+    checkPreviousEpochAttestations();
+    checkArgument(
+        previousEpochBoundaryAttestationCount != 0,
+        "There are no previous_epoch_boundary_attestations");
+    return previousEpochBoundaryAttesters;
+  }
+
+  /**
+   * Returns the validators that voted for the expected beacon chain head in the previous epoch.
+   *
+   * @return The attesters, indexed by validator index.
+   * @throws IllegalArgumentException if there are no previous epoch attestations.
+   */
+  public BitSet getPreviousEpochHeadAttesters() throws IllegalArgumentException {
+    checkPreviousEpochAttestations();
+    return previousEpochHeadAttesters;
+  }
+
+  /**
+   * Returns the validators that voted for the current epoch boundary.
+   *
+   * @return The attesters, indexed by validator index.
+   * @throws IllegalArgumentException if there are no current epoch boundary attestations.
+   */
+  public BitSet getCurrentEpochBoundaryAttesters() throws IllegalArgumentException {
+    checkArgument(currentEpochAttestationCount != 0, "There are no epoch_attestations");
+    checkArgument(
+        currentEpochBoundaryAttestationCount != 0,
+        "There are no current_epoch_boundary_attestations");
+    return currentEpochBoundaryAttesters;
+  }
+
+  /**
+   * Returns the lowest slot at which an attestation of the given validator was included.
+   *
+   * @param index - The index of a previous epoch attester.
+   * @return The inclusion slot.
+   * @throws IllegalArgumentException if the validator did not attest in the previous epoch.
+   */
+  public long getInclusionSlot(int index) throws IllegalArgumentException {
+    checkAttester(index);
+    return inclusionSlots[index];
+  }
+
+  /**
+   * Returns the inclusion delay of the attestation of the given validator with the lowest inclusion
+   * slot.
+   *
+   * @param index - The index of a previous epoch attester.
+   * @return The inclusion distance.
+   * @throws IllegalArgumentException if the validator did not attest in the previous epoch.
+   */
+  public long getInclusionDistance(int index) throws IllegalArgumentException {
+    checkAttester(index);
+    return inclusionDistances[index];
+  }
+
+  /**
+   * Returns the shard block root that was voted on by the most balance for the given shard.
+   *
+   * @param shard - The shard under consideration.
+   * @return The winning root, or zero if the shard has no votes.
+   * @throws IllegalArgumentException if either the previous or current epoch has no attestations.
+   */
+  public Bytes32 getWinningRoot(long shard) throws IllegalArgumentException {
+    return getCrosslinkVotes(shard).winningRoot;
+  }
+
+  /**
+   * Returns the validators that voted for the winning root of the given shard.
+   *
+   * @param shard - The shard under consideration.
+   * @return The attesters, indexed by validator index.
+   * @throws IllegalArgumentException if either the previous or current epoch has no attestations.
+   */
+  public BitSet getWinningRootAttesters(long shard) throws IllegalArgumentException {
+    return getCrosslinkVotes(shard).attesters;
+  }
+
+  /**
+   * Returns the total balance of the validators that voted for the winning root of the given shard,
+   * as of the time the participation was collected.
+   *
+   * @param shard - The shard under consideration.
+   * @return The attesting balance.
+   * @throws IllegalArgumentException if either the previous or current epoch has no attestations.
+   */
+  public long getWinningRootAttestingBalance(long shard) throws IllegalArgumentException {
+    return getCrosslinkVotes(shard).attestingBalance;
+  }
+
+  private CrosslinkVotes getCrosslinkVotes(long shard) {
+    checkArgument(currentEpochAttestationCount != 0, "There are no epoch_attestations");
+    checkPreviousEpochAttestations();
+    return crosslinkVotes.getOrDefault(shard, NO_VOTES);
+  }
+
+  private void checkPreviousEpochAttestations() {
+    checkArgument(previousEpochAttestationCount != 0, "There are no epoch_attestations");
+  }
+
+  private void checkAttester(int index) {
+    checkPreviousEpochAttestations();
+    checkArgument(
+        previousEpochAttesters.get(index), "Validator %s has no previous epoch attestation", index);
+  }
+
+  private static void set(BitSet bits, List<Integer> indices) {
+    for (int index : indices) {
+      bits.set(index);
+    }
+  }
+
+  /**
+   * Same as {@link BeaconStateUtil#get_attestation_participants(BeaconState, AttestationData,
+   * byte[])}, except that the committees at the attestation's slot are passed in, so that they are
+   * only computed once per slot.
+   */
+  private static List<Integer> get_attestation_participants(
+      List<CrosslinkCommittee> crosslink_committees,
+      AttestationData attestation_data,
+      byte[] participation_bitfield)
+      throws IllegalArgumentException {
+    CrosslinkCommittee crosslink_committee = null;
+    for (CrosslinkCommittee curr_crosslink_committee : crosslink_committees) {
+      if (curr_crosslink_committee.getShard() == attestation_data.getShard()) {
+        crosslink_committee = curr_crosslink_committee;
+        break;
+      }
+    }
+    checkArgument(
+        crosslink_committee != null, "No committee for shard %s", attestation_data.getShard());
+
+    Bytes bitfield = Bytes.wrap(participation_bitfield);
+    checkArgument(
+        BeaconStateUtil.verify_bitfield(bitfield, crosslink_committee.getCommitteeSize()),
+        "checkArgument threw and exception in get_attestation_participants()");
+
+    List<Integer> participants = new ArrayList<>();
+    for (int i = 0; i < crosslink_committee.getCommitteeSize(); i++) {
+      if (BeaconStateUtil.get_bitfield_bit(bitfield, i) == 1) {
+        participants.add(crosslink_committee.getCommittee().get(i));
+      }
+    }
+    return participants;
+  }
+
+  /** The balance and attesters behind one crosslink data root of a shard. */
+  private static final class ShardVote {
+    private final BitSet attesters = new BitSet();
+    private long balance;
+  }
+
+  /** The winning crosslink data root of a shard and the validators that voted for it. */
+  private static final class CrosslinkVotes {
+    private final Bytes32 winningRoot;
+    private final BitSet attesters;
+    private final long attestingBalance;
+
+    private CrosslinkVotes() {
+      // The spec currently has no way of handling uninitialized winning_root
+      this.winningRoot = Bytes32.ZERO;
+      this.attesters = new BitSet();
+      this.attestingBalance = 0;
+    }
+
+    private CrosslinkVotes(BeaconState state, Map<Bytes32, ShardVote> votes) {
+      long winning_root_balance = 0;
+      Bytes32 winning_root = Bytes32.ZERO;
+      for (Map.Entry<Bytes32, ShardVote> entry : votes.entrySet()) {
+        Bytes32 shard_block_root = entry.getKey();
+        long balance = entry.getValue().balance;
+        if (balance > winning_root_balance
+            || (balance == winning_root_balance
+                && shard_block_root
+                        .toUnsignedBigInteger(ByteOrder.LITTLE_ENDIAN)
+                        .compareTo(winning_root.toUnsignedBigInteger(ByteOrder.LITTLE_ENDIAN))
+                    > 0)) {
+          winning_root_balance = balance;
+          winning_root = shard_block_root;
+        }
+      }
+      ShardVote winning_vote = votes.get(winning_root);
+      this.winningRoot = winning_root;
+      this.attesters = winning_vote != null ? winning_vote.attesters : new BitSet();
+      long attesting_balance = 0;
+      for (int index = attesters.nextSetBit(0);
+          index >= 0;
+          index = attesters.nextSetBit(index + 1)) {
+        attesting_balance += BeaconStateUtil.get_effective_balance(state, index);
+      }
+      this.attestingBalance = attesting_balance;
+    }
+  }
+}
@@ -15,29 +15,28 @@ package tech.pegasys.artemis.statetransition.util;
 
 import static java.lang.Math.toIntExact;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Lists;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 import org.apache.logging.log4j.Level;
 import org.apache.tuweni.bytes.Bytes32;
-import org.checkerframework.checker.nullness.qual.Nullable;
 import tech.pegasys.artemis.datastructures.Constants;
 import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
 import tech.pegasys.artemis.datastructures.blocks.Eth1DataVote;
 import tech.pegasys.artemis.datastructures.state.BeaconState;
 import tech.pegasys.artemis.datastructures.state.Crosslink;
 import tech.pegasys.artemis.datastructures.state.CrosslinkCommittee;
+import tech.pegasys.artemis.datastructures.state.LongList;
 import tech.pegasys.artemis.datastructures.state.PendingAttestation;
 import tech.pegasys.artemis.datastructures.state.Validator;
+import tech.pegasys.artemis.datastructures.state.ValidatorRegistry;
 import tech.pegasys.artemis.datastructures.util.AttestationUtil;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
 import tech.pegasys.artemis.datastructures.util.ValidatorsUtil;
@@ -69,40 +68,55 @@ public final class EpochProcessorUtil {
     }
   }
 
+  /**
+   * Collects the previous and current epoch participation in a single pass over the pending
+   * attestations. Must be called before any balances change during epoch processing.
+   *
+   * @param state
+   * @param pool
+   * @return EpochParticipation
+   * @throws EpochProcessingException
+   */
+  public static EpochParticipation get_epoch_participation(BeaconState state, ForkJoinPool pool)
+      throws EpochProcessingException {
+    try {
+      return new EpochParticipation(state, pool);
+    } catch (IllegalArgumentException e) {
+      LOG.log(Level.WARN, "EpochProcessingException thrown in get_epoch_participation()");
+      throw new EpochProcessingException(e);
+    }
+  }
+
   /**
    * Update Justification state fields
    *
    * @param state
+   * @param participation
    * @throws EpochProcessingException
    */
-  public static void updateJustification(BeaconState state, BeaconBlock block)
+  public static void updateJustification(
+      BeaconState state, BeaconBlock block, EpochParticipation participation)
       throws EpochProcessingException {
     try {
       long current_epoch = BeaconStateUtil.get_current_epoch(state);
       long previous_epoch = BeaconStateUtil.get_previous_epoch(state);
 
       // Get previous and current epoch total balances
-      List<Integer> current_active_validators =
-          ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), current_epoch);
-      List<Integer> previous_active_validators =
-          ValidatorsUtil.get_active_validator_indices(
-              state.getValidator_registry(), previous_epoch);
-      long current_total_balance =
-          BeaconStateUtil.get_total_balance(state, current_active_validators);
+      long current_total_balance = BeaconStateUtil.get_total_active_balance(state, current_epoch);
       long previous_total_balance =
-          BeaconStateUtil.get_total_balance(state, previous_active_validators);
+          BeaconStateUtil.get_total_active_balance(state, previous_epoch);
 
       // Update justification bitfield
       long new_justified_epoch = state.getJustified_epoch();
       long justification_bitfield = state.getJustification_bitfield();
       justification_bitfield = justification_bitfield << 1;
 
-      if (AttestationUtil.get_previous_epoch_boundary_attesting_balance(state) * 3
+      if (get_total_attesting_balance(state, participation.getPreviousEpochBoundaryAttesters()) * 3
           >= previous_total_balance * 2) {
         justification_bitfield = justification_bitfield | 2;
         new_justified_epoch = previous_epoch;
       }
-      if (AttestationUtil.get_current_epoch_boundary_attesting_balance(state) * 3
+      if (get_total_attesting_balance(state, participation.getCurrentEpochBoundaryAttesters()) * 3
           >= current_total_balance * 2) {
         justification_bitfield = justification_bitfield | 1;
         new_justified_epoch = current_epoch;
@@ -140,38 +154,48 @@ public final class EpochProcessorUtil {
    * https://github.com/ethereum/eth2.0-specs/blob/v0.1/specs/core/0_beacon-chain.md#crosslinks
    *
    * @param state
+   * @param participation
+   * @param pool
    */
-  public static void updateCrosslinks(BeaconState state) throws EpochProcessingException {
+  public static void updateCrosslinks(
+      BeaconState state, EpochParticipation participation, ForkJoinPool pool)
+      throws EpochProcessingException {
     try {
       long previous_epoch = BeaconStateUtil.get_previous_epoch(state);
       long next_epoch = BeaconStateUtil.get_next_epoch(state);
 
+      List<CrosslinkCommittee> committees = new ArrayList<>();
       for (long curr_slot = BeaconStateUtil.get_epoch_start_slot(previous_epoch);
           curr_slot < BeaconStateUtil.get_epoch_start_slot(next_epoch);
           curr_slot = curr_slot + 1) {
         LOG.log(Level.DEBUG, "current slot: " + curr_slot);
-        List<CrosslinkCommittee> crosslink_committees_at_slot =
-            BeaconStateUtil.get_crosslink_committees_at_slot(state, curr_slot);
-        for (CrosslinkCommittee committee : crosslink_committees_at_slot) {
-          LOG.log(Level.DEBUG, "Committee Shard: " + committee.getShard());
-          LOG.log(
-              Level.DEBUG,
-              "Total Attesting Balance: "
-                  + AttestationUtil.total_attesting_balance(state, committee));
-          LOG.log(Level.DEBUG, "committee: " + committee.getCommittee());
-          LOG.log(
-              Level.DEBUG, "Total Balance: " + BeaconStateUtil.get_total_balance(state, committee));
-          if (AttestationUtil.total_attesting_balance(state, committee) * 3L
-              >= BeaconStateUtil.get_total_balance(state, committee) * 2L) {
-            long shard = committee.getShard();
-            state
-                .getLatest_crosslinks()
-                .set(
-                    toIntExact(shard) % Constants.SHARD_COUNT,
-                    new Crosslink(
-                        BeaconStateUtil.get_current_epoch(state),
-                        AttestationUtil.winning_root(state, committee)));
-          }
+        committees.addAll(BeaconStateUtil.get_crosslink_committees_at_slot(state, curr_slot));
+      }
+      List<Long> total_balances =
+          evaluate(
+              committees, committee -> BeaconStateUtil.get_total_balance(state, committee), pool);
+
+      for (int i = 0; i < committees.size(); i++) {
+        CrosslinkCommittee committee = committees.get(i);
+        long total_balance = total_balances.get(i);
+        LOG.log(Level.DEBUG, () -> "Committee Shard: " + committee.getShard());
+        LOG.log(
+            Level.DEBUG,
+            () ->
+                "Total Attesting Balance: "
+                    + participation.getWinningRootAttestingBalance(committee.getShard()));
+        LOG.log(Level.DEBUG, () -> "committee: " + committee.getCommittee());
+        LOG.log(Level.DEBUG, () -> "Total Balance: " + total_balance);
+        if (participation.getWinningRootAttestingBalance(committee.getShard()) * 3L
+            >= total_balance * 2L) {
+          long shard = committee.getShard();
+          state
+              .getLatest_crosslinks()
+              .set(
+                  toIntExact(shard) % Constants.SHARD_COUNT,
+                  new Crosslink(
+                      BeaconStateUtil.get_current_epoch(state),
+                      participation.getWinningRoot(shard)));
         }
       }
     } catch (IllegalArgumentException e) {
@@ -180,103 +204,16 @@ public final class EpochProcessorUtil {
     }
   }
 
-  static Function<Integer, @Nullable Long> apply_inactivity_penalty(
-      BeaconState state, long epochs_since_finality, long previous_total_balance) {
-    return index ->
-        get_inactivity_penality(state, index, epochs_since_finality, previous_total_balance);
-  }
-
-  static Function<Integer, @Nullable Long> apply_base_penalty(
-      BeaconState state, long epochs_since_finality, long previous_total_balance) {
-    return index -> base_reward(state, index, previous_total_balance);
-  }
-
-  static Function<Integer, @Nullable Long> apply_inactivity_base_penalty(
-      BeaconState state, long epochs_since_finality, long previous_total_balance) {
-    return index ->
-        2L * get_inactivity_penality(state, index, epochs_since_finality, previous_total_balance)
-            + base_reward(state, index, previous_total_balance);
-  }
-
-  static Function<Integer, @Nullable Long> apply_inclusion_base_penalty(
-      BeaconState state, long epochs_since_finality, long previous_total_balance) {
-    return index -> {
-      long inclusion_distance = 0;
-      try {
-        inclusion_distance = AttestationUtil.inclusion_distance(state, index);
-      } catch (Exception e) {
-        LOG.log(Level.WARN, "apply_inclusion_base_penalty(): " + e);
-      }
-      return base_reward(state, index, previous_total_balance)
-          * Constants.MIN_ATTESTATION_INCLUSION_DELAY
-          / inclusion_distance;
-    };
-  }
-
-  // Helper method for justificationAndFinalization()
-  static void case_one_penalties_and_rewards(
-      BeaconState state,
-      List<Long> balances,
-      long previous_total_balance,
-      long previous_balance,
-      List<Integer> previous_indices) {
-    long reward_delta;
-
-    // make a list of integers from 0 to numberOfValidators
-    List<Integer> missing_indices =
-        IntStream.range(0, state.getValidator_registry().size())
-            .boxed()
-            .collect(Collectors.toList());
-
-    // apply rewards to validator indices in the list
-    for (int index : previous_indices) {
-      reward_delta =
-          base_reward(state, index, previous_total_balance)
-              * previous_balance
-              / previous_total_balance;
-      apply_penalty_or_reward(balances, index, reward_delta, true);
-      missing_indices.remove(missing_indices.indexOf(index));
-    }
-
-    // apply penalties to active validator indices not in the list
-    for (int index : missing_indices) {
-      if (ValidatorsUtil.is_active_validator_index(
-          state, index, BeaconStateUtil.get_current_epoch(state))) {
-        reward_delta =
-            base_reward(state, index, previous_total_balance)
-                * previous_balance
-                / previous_total_balance;
-        apply_penalty_or_reward(balances, index, reward_delta, false);
-      }
-    }
-  }
-
-  // Helper method for justificationAndFinalization()
-  static void case_two_penalties(
-      BeaconState state,
-      List<Long> balances,
-      List<Integer> validator_indices,
-      Function<Integer, @Nullable Long> penalty) {
-
-    long penalty_delta;
-    for (int index : validator_indices) {
-      penalty_delta = penalty.apply(index);
-      apply_penalty_or_reward(balances, index, penalty_delta, false);
-    }
-  }
-
   // Helper method for justificationAndFinalization()
   static void apply_penalty_or_reward(
       List<Long> balances, int index, long delta_balance, Boolean reward) {
-    long balance = balances.get(index);
-    if (reward) {
-      // TODO: add check for overflow
-      balance = balance + delta_balance;
+    // TODO: add checks for overflow and underflow
+    long delta = reward ? delta_balance : -delta_balance;
+    if (balances instanceof LongList) {
+      ((LongList) balances).increment(index, delta);
     } else {
-      // TODO: add check for underflow
-      balance = balance - delta_balance;
+      balances.set(index, balances.get(index) + delta);
     }
-    balances.set(index, balance);
   }
 
   /**
@@ -284,130 +221,45 @@ public final class EpochProcessorUtil {
    * https://github.com/ethereum/eth2.0-specs/blob/v0.1/specs/core/0_beacon-chain.md#justification-and-finalization
    *
    * @param state
+   * @param previous_total_balance
+   * @param participation
    */
-  public static void justificationAndFinalization(BeaconState state, long previous_total_balance)
+  public static void justificationAndFinalization(
+      BeaconState state, long previous_total_balance, EpochParticipation participation)
       throws EpochProcessingException {
     try {
       long epochs_since_finality =
           BeaconStateUtil.get_next_epoch(state) - state.getFinalized_epoch();
-      List<Long> balances = state.getValidator_balances();
-
-      // Case 1: epochs_since_finality <= 4:
-      if (epochs_since_finality <= 4L) {
-        // Expected FFG source
-        long previous_balance = AttestationUtil.get_previous_epoch_attesting_balance(state);
-        List<Integer> previous_indices = AttestationUtil.get_previous_epoch_attester_indices(state);
-        case_one_penalties_and_rewards(
-            state, balances, previous_total_balance, previous_balance, previous_indices);
-
-        // Expected FFG target
-        previous_balance = AttestationUtil.get_previous_epoch_boundary_attesting_balance(state);
-        previous_indices = AttestationUtil.get_previous_epoch_boundary_attester_indices(state);
-        case_one_penalties_and_rewards(
-            state, balances, previous_total_balance, previous_balance, previous_indices);
-
-        // Expected beacon chain head
-        previous_balance = AttestationUtil.get_previous_epoch_head_attesting_balance(state);
-        previous_indices = AttestationUtil.get_previous_epoch_head_attester_indices(state);
-        case_one_penalties_and_rewards(
-            state, balances, previous_total_balance, previous_balance, previous_indices);
-
-        // Inclusion distance
-        long reward_delta;
-        previous_indices = AttestationUtil.get_previous_epoch_attester_indices(state);
-        for (int index : previous_indices) {
-          long inclusion_distance = AttestationUtil.inclusion_distance(state, index);
-          reward_delta =
-              base_reward(state, index, previous_total_balance)
-                  * Constants.MIN_ATTESTATION_INCLUSION_DELAY
-                  / inclusion_distance;
-          apply_penalty_or_reward(balances, index, reward_delta, true);
+      EpochRewards rewards =
+          new EpochRewards(state, previous_total_balance, epochs_since_finality, participation);
+      try {
+        // Case 1: epochs_since_finality <= 4:
+        if (epochs_since_finality <= 4L) {
+          // Expected FFG source
+          rewards.reward_attesters(participation.getPreviousEpochAttesters());
+          // Expected FFG target
+          rewards.reward_attesters(participation.getPreviousEpochBoundaryAttesters());
+          // Expected beacon chain head
+          rewards.reward_attesters(participation.getPreviousEpochHeadAttesters());
+          // Inclusion distance
+          rewards.reward_inclusion_distance(participation.getPreviousEpochAttesters());
+
+          // Case 2: epochs_since_finality > 4:
+        } else {
+          // prev epoch justified attester
+          rewards.penalize_inactivity(participation.getPreviousEpochAttesters());
+          // prev epoch boundary attester
+          rewards.penalize_inactivity(participation.getPreviousEpochBoundaryAttesters());
+          // prev epoch head attester
+          rewards.penalize_missing_attesters(participation.getPreviousEpochHeadAttesters());
+          // active validators that were slashed in this epoch or a previous one
+          rewards.penalize_slashed();
+          // prev epoch head attester indices
+          rewards.penalize_inclusion_distance(participation.getPreviousEpochHeadAttesters());
         }
-
-        // Case 2: epochs_since_finality > 4:
-      } else if (epochs_since_finality > 4L) {
-
-        Predicate<Integer> active_validators_filter =
-            index ->
-                ValidatorsUtil.is_active_validator_index(
-                    state, index, BeaconStateUtil.get_current_epoch(state));
-
-        Predicate<Integer> slashed_filter =
-            index -> {
-              Validator validator = state.getValidator_registry().get(index);
-              return validator.isSlashed();
-            };
-
-        // prev epoch justified attester
-        List<Integer> validator_indices =
-            AttestationUtil.get_previous_epoch_attester_indices(state);
-        // find all validators not present in the list
-        validator_indices = ValidatorsUtil.get_validators_not_present(validator_indices);
-        // remove inactive validator indices
-        validator_indices =
-            Lists.newArrayList(Collections2.filter(validator_indices, active_validators_filter));
-        // apply penalty
-        case_two_penalties(
-            state,
-            balances,
-            validator_indices,
-            apply_inactivity_penalty(state, epochs_since_finality, previous_total_balance));
-
-        // prev epoch boundary attester
-        validator_indices = AttestationUtil.get_previous_epoch_boundary_attester_indices(state);
-        // find all validators not present in the list
-        validator_indices = ValidatorsUtil.get_validators_not_present(validator_indices);
-        // remove inactive validator indices
-        validator_indices =
-            Lists.newArrayList(Collections2.filter(validator_indices, active_validators_filter));
-        // apply penalty
-        case_two_penalties(
-            state,
-            balances,
-            validator_indices,
-            apply_inactivity_penalty(state, epochs_since_finality, previous_total_balance));
-
-        // prev epoch head attester
-        validator_indices = AttestationUtil.get_previous_epoch_head_attester_indices(state);
-        // find all validators not present in the list
-        validator_indices = ValidatorsUtil.get_validators_not_present(validator_indices);
-        // remove inactive validator indices
-        validator_indices =
-            Lists.newArrayList(Collections2.filter(validator_indices, active_validators_filter));
-        // apply penalty
-        case_two_penalties(
-            state,
-            balances,
-            validator_indices,
-            apply_base_penalty(state, epochs_since_finality, previous_total_balance));
-
-        // all validator indices
-        List<Integer> all_validator_indices =
-            IntStream.range(0, state.getValidator_registry().size())
-                .boxed()
-                .collect(Collectors.toList());
-        // remove inactive validator indices
-        validator_indices =
-            Lists.newArrayList(
-                Collections2.filter(all_validator_indices, active_validators_filter));
-        // remove validators that were not slashed in this epoch or a previous one
-        validator_indices =
-            Lists.newArrayList(Collections2.filter(validator_indices, slashed_filter));
-        // apply penalty
-        case_two_penalties(
-            state,
-            balances,
-            validator_indices,
-            apply_inactivity_base_penalty(state, epochs_since_finality, previous_total_balance));
-
-        // prev epoch attester indices
-        validator_indices = AttestationUtil.get_previous_epoch_head_attester_indices(state);
-        // apply penalty
-        case_two_penalties(
-            state,
-            balances,
-            validator_indices,
-            apply_inclusion_base_penalty(state, epochs_since_finality, previous_total_balance));
+      } finally {
+        // Categories that completed before a failure stay applied
+        rewards.apply();
       }
     } catch (IllegalArgumentException e) {
       LOG.log(Level.WARN, "EpochProcessingException thrown in justificationAndFinalization()");
@@ -420,21 +272,20 @@ public final class EpochProcessorUtil {
    *
    * @param state
    * @param previous_total_balance
+   * @param participation
    */
-  public static void attestionInclusion(BeaconState state, long previous_total_balance)
+  public static void attestionInclusion(
+      BeaconState state, long previous_total_balance, EpochParticipation participation)
       throws EpochProcessingException {
     try {
-      List<Integer> previous_indices = AttestationUtil.get_previous_epoch_attester_indices(state);
+      int[] previous_indices = participation.getPreviousEpochAttesterIndices();
       for (int index : previous_indices) {
-        long inclusion_slot = AttestationUtil.inclusion_slot(state, index);
+        long inclusion_slot = participation.getInclusionSlot(index);
         int proposer_index = BeaconStateUtil.get_beacon_proposer_index(state, inclusion_slot);
-        List<Long> balances = state.getValidator_balances();
-        long balance = balances.get(proposer_index);
         long reward =
             base_reward(state, index, previous_total_balance)
                 / Constants.ATTESTATION_INCLUSION_REWARD_QUOTIENT;
-        balance += reward;
-        balances.set(proposer_index, balance);
+        BeaconStateUtil.increase_balance(state, proposer_index, reward);
       }
     } catch (IllegalArgumentException e) {
       LOG.log(Level.WARN, "EpochProcessingException thrown in attestationInclusion()");
@@ -447,8 +298,15 @@ public final class EpochProcessorUtil {
    * https://github.com/ethereum/eth2.0-specs/blob/v0.1/specs/core/0_beacon-chain.md#justification-and-finalization
    *
    * @param state
+   * @param previous_total_balance
+   * @param participation
+   * @param pool
    */
-  public static void crosslinkRewards(BeaconState state, long previous_total_balance)
+  public static void crosslinkRewards(
+      BeaconState state,
+      long previous_total_balance,
+      EpochParticipation participation,
+      ForkJoinPool pool)
       throws EpochProcessingException {
     try {
       Long previous_epoch_start_slot =
@@ -459,28 +317,31 @@ public final class EpochProcessorUtil {
           LongStream.range(previous_epoch_start_slot, current_epoch_start_slot)
               .boxed()
               .collect(Collectors.toList());
+      List<CrosslinkCommittee> committees = new ArrayList<>();
       for (Long slot : slot_range) {
-        List<CrosslinkCommittee> crosslink_committees_at_slot =
-            BeaconStateUtil.get_crosslink_committees_at_slot(state, slot, false);
-        for (CrosslinkCommittee crosslink_committee : crosslink_committees_at_slot) {
-          Map<Integer, Integer> attester_indices =
-              AttestationUtil.attesting_validators(state, crosslink_committee).stream()
-                  .collect(Collectors.toMap(i -> i, i -> i));
-          for (Integer index : crosslink_committee.getCommittee()) {
-            List<Long> balances = state.getValidator_balances();
-            // TODO: This balance is never used
-            long balance = balances.get(index);
-            if (attester_indices.containsKey(index)) {
-              long reward =
-                  base_reward(state, index, previous_total_balance)
-                      * AttestationUtil.get_total_attesting_balance(
-                          state, crosslink_committee.getCommittee())
-                      / BeaconStateUtil.get_total_balance(state, crosslink_committee);
-              balance += reward;
-            } else {
-              balance -= base_reward(state, index, previous_total_balance);
-            }
-          }
+        committees.addAll(BeaconStateUtil.get_crosslink_committees_at_slot(state, slot, false));
+      }
+      // Every committee is evaluated against the balances before any of the deltas is applied
+      List<long[]> committee_deltas =
+          evaluate(
+              committees,
+              committee ->
+                  crosslink_deltas(state, committee, previous_total_balance, participation),
+              pool);
+
+      // Merged in committee order, so that the result does not depend on the evaluation order
+      long[] deltas = new long[state.getValidator_balances().size()];
+      for (int i = 0; i < committees.size(); i++) {
+        List<Integer> committee = committees.get(i).getCommittee();
+        long[] committee_delta = committee_deltas.get(i);
+        for (int j = 0; j < committee.size(); j++) {
+          deltas[committee.get(j)] += committee_delta[j];
+        }
+      }
+      List<Long> balances = state.getValidator_balances();
+      for (int index = 0; index < deltas.length; index++) {
+        if (deltas[index] != 0) {
+          apply_penalty_or_reward(balances, index, deltas[index], true);
         }
       }
     } catch (IllegalArgumentException e) {
@@ -489,6 +350,32 @@ public final class EpochProcessorUtil {
     }
   }
 
+  // Helper method for crosslinkRewards()
+  private static long[] crosslink_deltas(
+      BeaconState state,
+      CrosslinkCommittee crosslink_committee,
+      long previous_total_balance,
+      EpochParticipation participation) {
+    BitSet attester_indices =
+        participation.getWinningRootAttesters(crosslink_committee.getShard());
+    List<Integer> committee = crosslink_committee.getCommittee();
+    long total_attesting_balance = AttestationUtil.get_total_attesting_balance(state, committee);
+    long total_balance = BeaconStateUtil.get_total_balance(state, crosslink_committee);
+    long[] deltas = new long[committee.size()];
+    for (int i = 0; i < committee.size(); i++) {
+      int index = committee.get(i);
+      if (attester_indices.get(index)) {
+        deltas[i] =
+            base_reward(state, index, previous_total_balance)
+                * total_attesting_balance
+                / total_balance;
+      } else {
+        deltas[i] = -base_reward(state, index, previous_total_balance);
+      }
+    }
+    return deltas;
+  }
+
   /**
    * Iterate through the validator registry and eject active validators with balance below
    * ``EJECTION_BALANCE``.
@@ -499,7 +386,7 @@ public final class EpochProcessorUtil {
     try {
       long currentEpoch = BeaconStateUtil.get_current_epoch(state);
       List<Integer> active_validator_indices =
-          ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), currentEpoch);
+          ValidatorsUtil.get_active_validator_indices(state, currentEpoch);
       List<Long> balances = state.getValidator_balances();
 
       active_validator_indices.forEach(
@@ -575,9 +462,7 @@ public final class EpochProcessorUtil {
   public static void update_validator_registry(BeaconState state) throws EpochProcessingException {
     try {
       long currentEpoch = BeaconStateUtil.get_current_epoch(state);
-      List<Integer> active_validators =
-          ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), currentEpoch);
-      long total_balance = BeaconStateUtil.get_total_balance(state, active_validators);
+      long total_balance = BeaconStateUtil.get_total_active_balance(state, currentEpoch);
 
       long max_balance_churn =
           Math.max(
@@ -586,12 +471,8 @@ public final class EpochProcessorUtil {
 
       // Activate validators within the allowable balance churn
       long balance_churn = 0;
-      for (int validator_index = 0;
-          validator_index < state.getValidator_registry().size();
-          validator_index++) {
-        if (state.getValidator_registry().get(validator_index).getActivation_epoch()
-                == Constants.FAR_FUTURE_EPOCH
-            && state.getValidator_balances().get(validator_index) >= Constants.MAX_DEPOSIT_AMOUNT) {
+      for (int validator_index : get_pending_activations(state)) {
+        if (state.getValidator_balances().get(validator_index) >= Constants.MAX_DEPOSIT_AMOUNT) {
           balance_churn += BeaconStateUtil.get_effective_balance(state, validator_index);
           if (balance_churn > max_balance_churn) break;
           BeaconStateUtil.activate_validator(state, validator_index, false);
@@ -600,12 +481,9 @@ public final class EpochProcessorUtil {
 
       // Exit validators within the allowable balance churn
       balance_churn = 0;
-      for (int validator_index = 0;
-          validator_index < state.getValidator_registry().size();
-          validator_index++) {
+      for (int validator_index : get_pending_activations(state)) {
         Validator validator = state.getValidator_registry().get(validator_index);
-        if (validator.getActivation_epoch() == Constants.FAR_FUTURE_EPOCH
-            && validator.hasInitiatedExit()) {
+        if (validator.hasInitiatedExit()) {
           balance_churn =
               balance_churn + BeaconStateUtil.get_effective_balance(state, validator_index);
           if (balance_churn > max_balance_churn) break;
@@ -674,16 +552,19 @@ public final class EpochProcessorUtil {
       throws EpochProcessingException {
     try {
       long currentEpoch = BeaconStateUtil.get_current_epoch(state);
-      List<Integer> active_validators =
-          ValidatorsUtil.get_active_validator_indices(state.getValidator_registry(), currentEpoch);
-
-      long total_balance = BeaconStateUtil.get_total_balance(state, active_validators);
-
-      ListIterator<Validator> itr = state.getValidator_registry().listIterator();
-
-      while (itr.hasNext()) {
-        int index = itr.nextIndex();
-        Validator validator = itr.next();
+      long total_balance = BeaconStateUtil.get_total_active_balance(state, currentEpoch);
+
+      // Only the validators withdrawing half a LATEST_SLASHED_EXIT_LENGTH from now are penalized
+      int[] withdrawing =
+          get_withdrawal_queue(
+              state,
+              currentEpoch + Constants.LATEST_SLASHED_EXIT_LENGTH / 2,
+              Long.MIN_VALUE,
+              Long.MAX_VALUE,
+              Integer.MAX_VALUE);
+      Arrays.sort(withdrawing);
+      for (int index : withdrawing) {
+        Validator validator = state.getValidator_registry().get(index);
         if (validator.isSlashed()
             && validator.getWithdrawal_epoch() != -1
             && currentEpoch
@@ -697,27 +578,39 @@ public final class EpochProcessorUtil {
           long total_at_end = state.getLatest_slashed_balances().get(epoch_index);
           long total_penalties = total_at_end - total_at_start;
           long penalty =
-              BeaconStateUtil.get_effective_balance(state, validator)
+              BeaconStateUtil.get_effective_balance(state, index)
                   * Math.min(total_penalties * 3, total_balance)
                   / total_balance;
-          state
-              .getValidator_balances()
-              .set(index, state.getValidator_balances().get(index) - penalty);
+          BeaconStateUtil.decrease_balance(state, index, penalty);
         }
       }
 
-      ArrayList<Validator> eligible_validators = new ArrayList<>();
-      for (Validator validator : state.getValidator_registry()) {
-        if (eligible(state, validator)) eligible_validators.add(validator);
+      // The eligible validators are the ones that have not been prepared for withdrawal yet and
+      // exited at least MIN_VALIDATOR_WITHDRAWABILITY_DELAY epochs ago, dequeued in order of exit.
+      // Exit epochs so close to the maximum that adding the delay overflows are eligible as well.
+      int[] eligible_validators =
+          get_withdrawal_queue(
+              state,
+              Constants.FAR_FUTURE_EPOCH,
+              Long.MIN_VALUE,
+              currentEpoch - Constants.MIN_VALIDATOR_WITHDRAWABILITY_DELAY,
+              Constants.MAX_EXIT_DEQUEUES_PER_EPOCH);
+      if (eligible_validators.length < Constants.MAX_EXIT_DEQUEUES_PER_EPOCH
+          && Constants.MIN_VALIDATOR_WITHDRAWABILITY_DELAY > 0) {
+        int[] overflowing =
+            get_withdrawal_queue(
+                state,
+                Constants.FAR_FUTURE_EPOCH,
+                Long.MAX_VALUE - Constants.MIN_VALIDATOR_WITHDRAWABILITY_DELAY + 1,
+                Long.MAX_VALUE,
+                Constants.MAX_EXIT_DEQUEUES_PER_EPOCH - eligible_validators.length);
+        int count = eligible_validators.length;
+        eligible_validators = Arrays.copyOf(eligible_validators, count + overflowing.length);
+        System.arraycopy(overflowing, 0, eligible_validators, count, overflowing.length);
       }
-      eligible_validators.sort(Comparator.comparing(Validator::getExit_epoch));
-
-      int withdrawn_so_far = 0;
-      for (Validator validator : eligible_validators) {
-        if (withdrawn_so_far >= Constants.MAX_EXIT_DEQUEUES_PER_EPOCH) break;
-        BeaconStateUtil.prepare_validator_for_withdrawal(
-            state, state.getValidator_registry().indexOf(validator));
-        withdrawn_so_far += 1;
+
+      for (int index : eligible_validators) {
+        BeaconStateUtil.prepare_validator_for_withdrawal(state, index);
       }
     } catch (IllegalArgumentException e) {
       LOG.log(Level.WARN, "EpochProcessingException thrown in process_penalties_and_exits()");
@@ -725,14 +618,57 @@ public final class EpochProcessorUtil {
     }
   }
 
-  static boolean eligible(BeaconState state, Validator validator) {
-    long currentEpoch = BeaconStateUtil.get_current_epoch(state);
-    if (validator.getWithdrawal_epoch() != Constants.FAR_FUTURE_EPOCH) {
-      return false;
-    } else {
-      return currentEpoch
-          >= validator.getExit_epoch() + Constants.MIN_VALIDATOR_WITHDRAWABILITY_DELAY;
+  /**
+   * Returns the indices of the validators pending activation, in ascending order.
+   *
+   * @param state
+   * @return The indices of the validators whose activation epoch is FAR_FUTURE_EPOCH.
+   */
+  static int[] get_pending_activations(BeaconState state) {
+    List<Validator> validators = state.getValidator_registry();
+    if (validators instanceof ValidatorRegistry) {
+      return ((ValidatorRegistry) validators).getActivationQueue(Constants.FAR_FUTURE_EPOCH);
+    }
+    return IntStream.range(0, validators.size())
+        .filter(index -> validators.get(index).getActivation_epoch() == Constants.FAR_FUTURE_EPOCH)
+        .toArray();
+  }
+
+  /**
+   * Returns the indices of the validators with the given withdrawal epoch whose exit epoch is in
+   * the given range, ordered by exit epoch and then by index.
+   *
+   * @param state
+   * @param withdrawal_epoch
+   * @param from_exit_epoch - The lowest exit epoch to include.
+   * @param to_exit_epoch - The highest exit epoch to include.
+   * @param limit - The maximum number of indices to return.
+   * @return The indices, in exit order.
+   */
+  static int[] get_withdrawal_queue(
+      BeaconState state,
+      long withdrawal_epoch,
+      long from_exit_epoch,
+      long to_exit_epoch,
+      int limit) {
+    List<Validator> validators = state.getValidator_registry();
+    if (validators instanceof ValidatorRegistry) {
+      return ((ValidatorRegistry) validators)
+          .getWithdrawalQueue(withdrawal_epoch, from_exit_epoch, to_exit_epoch, limit);
     }
+    return IntStream.range(0, validators.size())
+        .boxed()
+        .filter(
+            index -> {
+              Validator validator = validators.get(index);
+              return validator.getWithdrawal_epoch() == withdrawal_epoch
+                  && validator.getExit_epoch() >= from_exit_epoch
+                  && validator.getExit_epoch() <= to_exit_epoch;
+            })
+        .sorted(Comparator.comparingLong((Integer index) -> validators.get(index).getExit_epoch()))
+        .limit(limit)
+        .mapToInt(Integer::intValue)
+        .toArray();
   }
 
   /**
@@ -754,8 +690,7 @@ public final class EpochProcessorUtil {
       List<Bytes32> latest_index_roots = state.getLatest_active_index_roots();
       Bytes32 root =
           HashTreeUtil.integerListHashTreeRoot(
-              ValidatorsUtil.get_active_validator_indices(
-                  state.getValidator_registry(), next_epoch + ENTRY_EXIT_DELAY));
+              ValidatorsUtil.get_active_validator_indices(state, next_epoch + ENTRY_EXIT_DELAY));
       latest_index_roots.set(toIntExact(index), root);
 
       // update latest penalized balances
@@ -787,34 +722,42 @@ public final class EpochProcessorUtil {
   }
 
   /**
-   * calculates the base reward for the supplied validator index
+   * Applies the task to each of the items, on the given pool if there is one. Tasks must only read
+   * from the state, as its caches are not thread-safe.
    *
-   * @param state
-   * @param index
-   * @param previous_total_balance
-   * @return
+   * @param items
+   * @param task
+   * @param pool - The pool to evaluate the tasks on, or null to evaluate them on this thread.
+   * @return The results, in the order of the items.
    */
-  static long base_reward(BeaconState state, int index, long previous_total_balance) {
-    long base_reward_quotient =
-        BeaconStateUtil.integer_squareroot(previous_total_balance) / Constants.BASE_REWARD_QUOTIENT;
-    return BeaconStateUtil.get_effective_balance(state, index) / base_reward_quotient / 5L;
+  static <T, R> List<R> evaluate(
+      List<T> items, Function<? super T, ? extends R> task, ForkJoinPool pool) {
+    if (pool == null || items.size() < 2) {
+      return items.stream().map(task).collect(Collectors.toList());
+    }
+    return pool.submit(() -> items.parallelStream().<R>map(task).collect(Collectors.toList()))
+        .join();
+  }
+
+  static long get_total_attesting_balance(BeaconState state, BitSet attesters) {
+    long attesting_balance = 0;
+    for (int index = attesters.nextSetBit(0); index >= 0; index = attesters.nextSetBit(index + 1)) {
+      attesting_balance += BeaconStateUtil.get_effective_balance(state, index);
+    }
+    return attesting_balance;
   }
 
   /**
-   * calculates the inactivity penalty for the supplied validator index
+   * calculates the base reward for the supplied validator index
    *
    * @param state
    * @param index
-   * @param epochs_since_finality
    * @param previous_total_balance
    * @return
    */
-  static long get_inactivity_penality(
-      BeaconState state, int index, long epochs_since_finality, long previous_total_balance) {
-    return base_reward(state, index, previous_total_balance)
-        + BeaconStateUtil.get_effective_balance(state, index)
-            * epochs_since_finality
-            / Constants.INACTIVITY_PENALTY_QUOTIENT
-            / 2L;
+  static long base_reward(BeaconState state, int index, long previous_total_balance) {
+    long base_reward_quotient =
+        BeaconStateUtil.integer_squareroot(previous_total_balance) / Constants.BASE_REWARD_QUOTIENT;
+    return BeaconStateUtil.get_effective_balance(state, index) / base_reward_quotient / 5L;
   }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition.util;
+
+import java.util.BitSet;
+import java.util.List;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.datastructures.state.LongList;
+import tech.pegasys.artemis.datastructures.state.Validator;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.ValidatorsUtil;
+
+/**
+ * Computes the justification and finalization rewards and penalties on primitive arrays. The
+ * state's balances are read once and every reward or penalty is accumulated into a delta array,
+ * which {@link #apply()} writes back to the state in a single pass.
+ *
+ * <p>Each reward category sees the balances left by the categories applied before it, as it would
+ * if the state were updated after every category. Base rewards are computed once per validator and
+ * only recomputed when a delta changes the validator's effective balance.
+ */
+final class EpochRewards {
+
+  private final BeaconState state;
+  private final long previousTotalBalance;
+  private final long epochsSinceFinality;
+  private final EpochParticipation participation;
+  private final long baseRewardQuotient;
+  private final long[] balances;
+  private final long[] deltas;
+  private final long[] baseRewards;
+  private final BitSet active;
+
+  EpochRewards(
+      BeaconState state,
+      long previousTotalBalance,
+      long epochsSinceFinality,
+      EpochParticipation participation) {
+    this.state = state;
+    this.previousTotalBalance = previousTotalBalance;
+    this.epochsSinceFinality = epochsSinceFinality;
+    this.participation = participation;
+    this.baseRewardQuotient =
+        BeaconStateUtil.integer_squareroot(previousTotalBalance) / Constants.BASE_REWARD_QUOTIENT;
+
+    List<Long> stateBalances = state.getValidator_balances();
+    int validatorCount = state.getValidator_registry().size();
+    this.balances = new long[validatorCount];
+    this.deltas = new long[validatorCount];
+    this.baseRewards = new long[validatorCount];
+    for (int index = 0; index < validatorCount; index++) {
+      balances[index] =
+          stateBalances instanceof LongList
+              ? ((LongList) stateBalances).getLong(index)
+              : stateBalances.get(index);
+      baseRewards[index] = base_reward(index);
+    }
+
+    this.active = new BitSet(validatorCount);
+    for (int index :
+        ValidatorsUtil.get_active_validator_indices(
+            state, BeaconStateUtil.get_current_epoch(state))) {
+      active.set(index);
+    }
+  }
+
+  /**
+   * Rewards the attesters in proportion to their share of the previous total balance, and penalizes
+   * every other validator that is active in the current epoch by the same amount.
+   *
+   * @param attesters - The validators that voted for the expected source, target or head.
+   */
+  void reward_attesters(BitSet attesters) {
+    long attesting_balance = 0;
+    for (int index = attesters.nextSetBit(0); index >= 0; index = attesters.nextSetBit(index + 1)) {
+      attesting_balance += get_effective_balance(index);
+    }
+    for (int index = 0; index < balances.length; index++) {
+      if (attesters.get(index)) {
+        add(index, baseRewards[index] * attesting_balance / previousTotalBalance);
+      } else if (active.get(index)) {
+        add(index, -(baseRewards[index] * attesting_balance / previousTotalBalance));
+      }
+    }
+  }
+
+  /**
+   * Rewards the attesters for the inclusion distance of their earliest included attestation.
+   *
+   * @param attesters - The previous epoch attesters.
+   */
+  void reward_inclusion_distance(BitSet attesters) {
+    for (int index = attesters.nextSetBit(0); index >= 0; index = attesters.nextSetBit(index + 1)) {
+      add(
+          index,
+          baseRewards[index]
+              * Constants.MIN_ATTESTATION_INCLUSION_DELAY
+              / participation.getInclusionDistance(index));
+    }
+  }
+
+  /**
+   * Applies the inactivity penalty to the active validators missing from the attesters.
+   *
+   * @param attesters - The validators that voted for the expected source or target.
+   */
+  void penalize_inactivity(BitSet attesters) {
+    // Deliberately matches ValidatorsUtil.get_validators_not_present, which only looks for missing
+    // indices below the number of attesters rather than across the whole registry as the spec
+    // does. Validators above that bound go unpenalized; EpochRewardsTest pins this behaviour.
+    int missing_range = attesters.cardinality();
+    for (int index = attesters.nextClearBit(0);
+        index < missing_range;
+        index = attesters.nextClearBit(index + 1)) {
+      if (active.get(index)) {
+        add(index, -inactivity_penalty(index));
+      }
+    }
+  }
+
+  /**
+   * Applies the base penalty to the active validators missing from the attesters.
+   *
+   * @param attesters - The validators that voted for the expected head.
+   */
+  void penalize_missing_attesters(BitSet attesters) {
+    // Same bound as in penalize_inactivity, kept from get_validators_not_present
+    int missing_range = attesters.cardinality();
+    for (int index = attesters.nextClearBit(0);
+        index < missing_range;
+        index = attesters.nextClearBit(index + 1)) {
+      if (active.get(index)) {
+        add(index, -baseRewards[index]);
+      }
+    }
+  }
+
+  /** Applies the inactivity and base penalties to the active validators that were slashed. */
+  void penalize_slashed() {
+    List<Validator> validators = state.getValidator_registry();
+    for (int index = active.nextSetBit(0); index >= 0; index = active.nextSetBit(index + 1)) {
+      if (validators.get(index).isSlashed()) {
+        add(index, -(2L * inactivity_penalty(index) + baseRewards[index]));
+      }
+    }
+  }
+
+  /**
+   * Penalizes the attesters by their inclusion distance.
+   *
+   * @param attesters - The validators that voted for the expected head.
+   */
+  void penalize_inclusion_distance(BitSet attesters) {
+    for (int index = attesters.nextSetBit(0); index >= 0; index = attesters.nextSetBit(index + 1)) {
+      add(
+          index,
+          -(baseRewards[index]
+              * Constants.MIN_ATTESTATION_INCLUSION_DELAY
+              / participation.getInclusionDistance(index)));
+    }
+  }
+
+  /** Writes the accumulated deltas to the state's balances. */
+  void apply() {
+    List<Long> stateBalances = state.getValidator_balances();
+    for (int index = 0; index < deltas.length; index++) {
+      if (deltas[index] != 0) {
+        EpochProcessorUtil.apply_penalty_or_reward(stateBalances, index, deltas[index], true);
+      }
+    }
+  }
+
+  private void add(int index, long delta) {
+    long before = get_effective_balance(index);
+    deltas[index] += delta;
+    if (get_effective_balance(index) != before) {
+      baseRewards[index] = base_reward(index);
+    }
+  }
+
+  private long get_effective_balance(int index) {
+    return Math.min(balances[index] + deltas[index], Constants.MAX_DEPOSIT_AMOUNT);
+  }
+
+  private long base_reward(int index) {
+    return get_effective_balance(index) / baseRewardQuotient / 5L;
+  }
+
+  private long inactivity_penalty(int index) {
+    return baseRewards[index]
+        + get_effective_balance(index)
+            * epochsSinceFinality
+            / Constants.INACTIVITY_PENALTY_QUOTIENT
+            / 2L;
+  }
+}
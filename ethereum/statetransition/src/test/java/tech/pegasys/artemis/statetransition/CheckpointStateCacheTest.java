@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.createInitialBeaconState;
+
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+@ExtendWith(BouncyCastleExtension.class)
+class CheckpointStateCacheTest {
+
+  private final StateTransition stateTransition = new StateTransition();
+  private final CheckpointStateCache cache = new CheckpointStateCache(stateTransition, 4);
+  private final BeaconStateWithCache blockState = createInitialBeaconState(16);
+  private final Bytes32 blockRoot = Bytes32.random();
+
+  @Test
+  void siblingsShareTheAdvancedState() throws Exception {
+    long slot = blockState.getSlot() + 3;
+
+    BeaconStateWithCache first = cache.get_advanced_state(blockRoot, blockState, slot);
+    first.incrementSlot();
+    BeaconStateWithCache second = cache.get_advanced_state(blockRoot, blockState, slot);
+
+    assertThat(cache.getMissCount()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(second.getSlot()).isEqualTo(slot);
+    assertThat(root(second)).isEqualTo(root(advance(blockState, slot)));
+  }
+
+  @Test
+  void missResumesFromAnEarlierAdvancedState() throws Exception {
+    // Cross an epoch boundary on the way to the second slot
+    long earlier = blockState.getSlot() + 2;
+    long later = blockState.getSlot() + Constants.SLOTS_PER_EPOCH + 1;
+
+    cache.get_advanced_state(blockRoot, blockState, earlier);
+    BeaconStateWithCache state = cache.get_advanced_state(blockRoot, blockState, later);
+
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(root(state)).isEqualTo(root(advance(blockState, later)));
+  }
+
+  @Test
+  void statesAreKeyedByBlockRoot() throws Exception {
+    long slot = blockState.getSlot() + 1;
+
+    cache.put(blockRoot, slot, advance(blockState, slot));
+    cache.get_advanced_state(Bytes32.random(), blockState, slot);
+    cache.get_advanced_state(blockRoot, blockState, slot);
+
+    assertThat(cache.getMissCount()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  void leastRecentlyUsedStatesAreEvicted() throws Exception {
+    for (int i = 1; i <= 5; i++) {
+      cache.get_advanced_state(blockRoot, blockState, blockState.getSlot() + i);
+    }
+
+    assertThat(cache.size()).isEqualTo(4);
+    cache.get_advanced_state(blockRoot, blockState, blockState.getSlot() + 1);
+    assertThat(cache.getHitCount()).isZero();
+  }
+
+  private BeaconStateWithCache advance(BeaconStateWithCache state, long slot) throws Exception {
+    BeaconStateWithCache copy = BeaconStateWithCache.deepCopy(state);
+    stateTransition.process_slots(copy, slot, blockRoot);
+    return copy;
+  }
+
+  private static Bytes32 root(BeaconStateWithCache state) {
+    return HashTreeUtil.hash_tree_root(state.toBytes());
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_beacon_proposer_index;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_domain;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.int_to_bytes;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.createInitialBeaconState;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.newBeaconBlock;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomTransfer;
+import static tech.pegasys.artemis.util.hashtree.HashTreeUtil.hash_tree_root;
+
+import java.util.ArrayList;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.storage.ChainStorageClient;
+import tech.pegasys.artemis.util.bls.BLSKeyPair;
+import tech.pegasys.artemis.util.bls.BLSSignature;
+
+@ExtendWith(BouncyCastleExtension.class)
+class JournaledStatesTest {
+
+  private final ChainStorageClient store = new ChainStorageClient();
+  private final JournaledStates states = new JournaledStates(store);
+  private final BeaconStateWithCache parentState = createInitialBeaconState(16);
+  private final Bytes32 parentStateRoot = hash_tree_root(parentState.toBytes());
+
+  @Test
+  void invalidBlockIsRejectedAndItsPostStateIsNotStored() {
+    states.add(parentStateRoot, parentState);
+    BeaconBlock block = newBlock(parentState);
+    block.getBody().getTransfers().add(randomTransfer());
+    Bytes32 claimedStateRoot = Bytes32.random();
+    block.setState_root(claimedStateRoot);
+
+    assertThatThrownBy(
+            () ->
+                states.apply_in_place(
+                    new StateTransition(), block, Bytes32.ZERO, parentStateRoot))
+        .isInstanceOf(StateTransitionException.class);
+
+    assertThat(store.getState(claimedStateRoot)).isEmpty();
+    assertThat(states.isTip(parentStateRoot)).isTrue();
+    assertThat(states.get(parentStateRoot)).containsSame(parentState);
+    assertThat(hash_tree_root(parentState.toBytes())).isEqualTo(parentStateRoot);
+  }
+
+  @Test
+  void blocksCanOnlyBeAppliedToTheNewestStateOfAChain() {
+    BeaconBlock block = newBlock(parentState);
+
+    assertThatThrownBy(
+            () ->
+                states.apply_in_place(
+                    new StateTransition(), block, Bytes32.ZERO, parentStateRoot))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Returns a block proposed at the slot after the given state, with a valid RANDAO reveal. */
+  private static BeaconBlock newBlock(BeaconStateWithCache state) {
+    long slot = state.getSlot() + 1;
+    BeaconBlock block =
+        newBeaconBlock(slot, Bytes32.ZERO, Bytes32.ZERO, new ArrayList<>(), new ArrayList<>());
+    BeaconStateWithCache next = BeaconStateWithCache.deepCopy(state);
+    next.incrementSlot();
+    long epoch = get_current_epoch(next);
+    block.setRandao_reveal(
+        BLSSignature.sign(
+            BLSKeyPair.random(get_beacon_proposer_index(next, slot)),
+            hash_tree_root(int_to_bytes(epoch, 8)),
+            get_domain(next.getFork(), epoch, Constants.DOMAIN_RANDAO)));
+    return block;
+  }
+}
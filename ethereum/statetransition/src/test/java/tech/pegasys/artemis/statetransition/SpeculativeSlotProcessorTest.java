@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.createInitialBeaconState;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
+
+@ExtendWith(BouncyCastleExtension.class)
+class SpeculativeSlotProcessorTest {
+
+  private final StateTransition stateTransition = new StateTransition();
+  private final SpeculativeSlotProcessor processor = new SpeculativeSlotProcessor(stateTransition);
+  private final Bytes32 headBlockRoot = Bytes32.random();
+
+  @Test
+  void precomputedStateMatchesEmptySlotTransition() throws Exception {
+    BeaconStateWithCache state = createInitialBeaconState(16);
+    Bytes32 stateRoot = HashTreeUtil.hash_tree_root(state.toBytes());
+    // Cross an epoch boundary
+    long slot = state.getSlot() + Constants.SLOTS_PER_EPOCH;
+
+    processor.precompute(state, headBlockRoot, slot);
+    Optional<BeaconStateWithCache> precomputed = processor.take(headBlockRoot, slot);
+
+    BeaconStateWithCache expected = BeaconStateWithCache.deepCopy(state);
+    stateTransition.process_slots(expected, slot, headBlockRoot);
+    assertThat(precomputed).isPresent();
+    assertThat(precomputed.get().getSlot()).isEqualTo(slot);
+    assertThat(HashTreeUtil.hash_tree_root(precomputed.get().toBytes()))
+        .isEqualTo(HashTreeUtil.hash_tree_root(expected.toBytes()));
+    assertThat(HashTreeUtil.hash_tree_root(state.toBytes())).isEqualTo(stateRoot);
+  }
+
+  @Test
+  void precomputedStateIsHandedOutOnce() {
+    BeaconStateWithCache state = createInitialBeaconState(16);
+    long slot = state.getSlot() + 1;
+
+    processor.precompute(state, headBlockRoot, slot);
+
+    assertThat(processor.take(headBlockRoot, slot)).isPresent();
+    assertThat(processor.take(headBlockRoot, slot)).isEmpty();
+  }
+
+  @Test
+  void precomputedStateIsDiscardedWhenHeadChanges() {
+    BeaconStateWithCache state = createInitialBeaconState(16);
+    long slot = state.getSlot() + 1;
+
+    processor.precompute(state, headBlockRoot, slot);
+
+    assertThat(processor.take(Bytes32.random(), slot)).isEmpty();
+    assertThat(processor.take(headBlockRoot, slot)).isEmpty();
+  }
+
+  @Test
+  void precomputedStateIsDiscardedForAnotherSlot() {
+    BeaconStateWithCache state = createInitialBeaconState(16);
+    long slot = state.getSlot() + 1;
+
+    processor.precompute(state, headBlockRoot, slot);
+
+    assertThat(processor.take(headBlockRoot, slot + 1)).isEmpty();
+  }
+}
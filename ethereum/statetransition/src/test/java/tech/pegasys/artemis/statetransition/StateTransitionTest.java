@@ -13,6 +13,7 @@
 
 package tech.pegasys.artemis.statetransition;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
 import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomDeposits;
 
@@ -27,6 +28,7 @@ import tech.pegasys.artemis.datastructures.blocks.Eth1Data;
 import tech.pegasys.artemis.datastructures.state.BeaconState;
 import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.util.hashtree.HashTreeUtil;
 
 @ExtendWith(BouncyCastleExtension.class)
 class StateTransitionTest {
@@ -85,4 +87,22 @@ class StateTransitionTest {
         .isEqualTo(BeaconStateUtil.merkle_root(state.getLatest_block_roots()));
     */
   }
+
+  @Test
+  void processSlotsMatchesEmptySlotTransitions() throws Exception {
+    BeaconStateWithCache state = (BeaconStateWithCache) newState();
+    BeaconStateWithCache fastForwarded = BeaconStateWithCache.deepCopy(state);
+    StateTransition stateTransition = new StateTransition();
+    Bytes32 previousBlockRoot = Bytes32.random();
+    long targetSlot = state.getSlot() + Constants.SLOTS_PER_EPOCH + 1;
+
+    while (state.getSlot() < targetSlot) {
+      stateTransition.initiate(state, null, previousBlockRoot);
+    }
+    stateTransition.process_slots(fastForwarded, targetSlot, previousBlockRoot);
+
+    assertThat(fastForwarded.getSlot()).isEqualTo(targetSlot);
+    assertThat(HashTreeUtil.hash_tree_root(fastForwarded.toBytes()))
+        .isEqualTo(HashTreeUtil.hash_tree_root(state.toBytes()));
+  }
 }
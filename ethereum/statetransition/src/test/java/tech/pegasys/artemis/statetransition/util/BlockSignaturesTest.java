@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_beacon_proposer_index;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.get_domain;
+import static tech.pegasys.artemis.datastructures.util.BeaconStateUtil.int_to_bytes;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.createInitialBeaconState;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.newBeaconBlock;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomTransfer;
+import static tech.pegasys.artemis.util.hashtree.HashTreeUtil.hash_tree_root;
+
+import java.util.ArrayList;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.statetransition.StateTransition;
+import tech.pegasys.artemis.statetransition.StateTransitionException;
+import tech.pegasys.artemis.util.bls.BLSKeyPair;
+import tech.pegasys.artemis.util.bls.BLSSignature;
+
+@ExtendWith(BouncyCastleExtension.class)
+class BlockSignaturesTest {
+
+  private static final int VALIDATOR_COUNT = 16;
+
+  @Test
+  void signaturesOfValidBlockVerify() throws Exception {
+    BeaconStateWithCache state = createInitialBeaconState(VALIDATOR_COUNT);
+    state.incrementSlot();
+    BeaconBlock block = newBlock(state);
+
+    BlockSignatures signatures = BlockSignatures.collect(state, block, false);
+
+    assertThat(signatures.size()).isEqualTo(1);
+    signatures.verify();
+  }
+
+  @Test
+  void invalidOperationSignatureFailsVerification() throws Exception {
+    BeaconStateWithCache state = createInitialBeaconState(VALIDATOR_COUNT);
+    state.incrementSlot();
+    BeaconBlock block = newBlock(state);
+    block.getBody().getTransfers().add(randomTransfer());
+
+    BlockSignatures signatures = BlockSignatures.collect(state, block, false);
+
+    assertThat(signatures.size()).isEqualTo(2);
+    assertThatThrownBy(signatures::verify).isInstanceOf(BlockProcessingException.class);
+  }
+
+  @Test
+  void blockWithInvalidSignatureIsRejectedBeforeMutatingState() throws Exception {
+    BeaconStateWithCache state = createInitialBeaconState(VALIDATOR_COUNT);
+    BeaconStateWithCache next = BeaconStateWithCache.deepCopy(state);
+    next.incrementSlot();
+    BeaconBlock block = newBlock(next);
+    block.getBody().getTransfers().add(randomTransfer());
+
+    assertThatThrownBy(() -> new StateTransition().initiate(state, block, Bytes32.ZERO))
+        .isInstanceOf(StateTransitionException.class);
+
+    // The Eth1 data vote of the block would be recorded before its transfers are processed
+    assertThat(state.getSlot()).isEqualTo(next.getSlot());
+    assertThat(state.getEth1_data_votes()).isEmpty();
+  }
+
+  /** Returns a block being proposed at the slot of the given state, with a valid RANDAO reveal. */
+  private static BeaconBlock newBlock(BeaconStateWithCache state) {
+    BeaconBlock block =
+        newBeaconBlock(
+            state.getSlot(), Bytes32.ZERO, Bytes32.ZERO, new ArrayList<>(), new ArrayList<>());
+    long epoch = get_current_epoch(state);
+    block.setRandao_reveal(
+        BLSSignature.sign(
+            BLSKeyPair.random(get_beacon_proposer_index(state, state.getSlot())),
+            hash_tree_root(int_to_bytes(epoch, 8)),
+            get_domain(state.getFork(), epoch, Constants.DOMAIN_RANDAO)));
+    return block;
+  }
+}
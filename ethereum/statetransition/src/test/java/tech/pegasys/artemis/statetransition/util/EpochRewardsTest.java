@@ -0,0 +1,309 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.statetransition.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomDeposits;
+import static tech.pegasys.artemis.datastructures.util.DataStructureUtil.randomEth1Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.operations.AttestationData;
+import tech.pegasys.artemis.datastructures.state.BeaconState;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.state.CrosslinkCommittee;
+import tech.pegasys.artemis.datastructures.state.PendingAttestation;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.ValidatorsUtil;
+
+@ExtendWith(BouncyCastleExtension.class)
+class EpochRewardsTest {
+
+  private static final int VALIDATOR_COUNT = 128;
+
+  private final Random random = new Random(1);
+
+  @Test
+  void rewardsMatchPerValidatorImplementationSoonAfterFinality() throws Exception {
+    assertMatchesPerValidatorImplementation(1);
+  }
+
+  @Test
+  void penaltiesMatchPerValidatorImplementationLongAfterFinality() throws Exception {
+    assertMatchesPerValidatorImplementation(6);
+  }
+
+  @Test
+  void participationEvaluatedOnPoolMatchesSequentialParticipation() {
+    BeaconStateWithCache state = createState(1);
+    EpochParticipation expected = new EpochParticipation(state);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      EpochParticipation participation = new EpochParticipation(state, pool);
+
+      assertThat(participation.getPreviousEpochAttesterIndices())
+          .containsExactly(expected.getPreviousEpochAttesterIndices());
+      assertThat(participation.getPreviousEpochAttesters())
+          .isEqualTo(expected.getPreviousEpochAttesters());
+      assertThat(participation.getPreviousEpochBoundaryAttesters())
+          .isEqualTo(expected.getPreviousEpochBoundaryAttesters());
+      assertThat(participation.getPreviousEpochHeadAttesters())
+          .isEqualTo(expected.getPreviousEpochHeadAttesters());
+      assertThat(participation.getCurrentEpochBoundaryAttesters())
+          .isEqualTo(expected.getCurrentEpochBoundaryAttesters());
+      for (int index : expected.getPreviousEpochAttesterIndices()) {
+        assertThat(participation.getInclusionSlot(index))
+            .isEqualTo(expected.getInclusionSlot(index));
+      }
+      for (long shard = 0; shard < Constants.SHARD_COUNT; shard++) {
+        assertThat(participation.getWinningRoot(shard)).isEqualTo(expected.getWinningRoot(shard));
+        assertThat(participation.getWinningRootAttesters(shard))
+            .isEqualTo(expected.getWinningRootAttesters(shard));
+        assertThat(participation.getWinningRootAttestingBalance(shard))
+            .isEqualTo(expected.getWinningRootAttestingBalance(shard));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void crosslinkRewardsEvaluatedOnPoolMatchSequentialRewards() throws Exception {
+    BeaconStateWithCache state = createState(1);
+    List<Long> balancesBefore = new ArrayList<>(state.getValidator_balances());
+    long previous_total_balance = BeaconStateUtil.previous_total_balance(state);
+    EpochParticipation participation = new EpochParticipation(state);
+    BeaconStateWithCache expected = BeaconStateWithCache.deepCopy(state);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      EpochProcessorUtil.crosslinkRewards(expected, previous_total_balance, participation, null);
+      EpochProcessorUtil.crosslinkRewards(state, previous_total_balance, participation, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertThat(expected.getValidator_balances()).isNotEqualTo(balancesBefore);
+    assertThat(state.getValidator_balances())
+        .containsExactlyElementsOf(expected.getValidator_balances());
+  }
+
+  private void assertMatchesPerValidatorImplementation(long currentEpoch) throws Exception {
+    BeaconStateWithCache state = createState(currentEpoch);
+    List<Long> balancesBefore = new ArrayList<>(state.getValidator_balances());
+    long previous_total_balance = BeaconStateUtil.previous_total_balance(state);
+    EpochParticipation participation = new EpochParticipation(state);
+    BeaconStateWithCache expected = BeaconStateWithCache.deepCopy(state);
+
+    justificationAndFinalization(expected, previous_total_balance, participation);
+    EpochProcessorUtil.justificationAndFinalization(state, previous_total_balance, participation);
+
+    assertThat(expected.getValidator_balances()).isNotEqualTo(balancesBefore);
+    assertThat(state.getValidator_balances())
+        .containsExactlyElementsOf(expected.getValidator_balances());
+  }
+
+  private BeaconStateWithCache createState(long currentEpoch) {
+    BeaconStateWithCache state = new BeaconStateWithCache();
+    BeaconStateUtil.get_genesis_beacon_state(
+        state, randomDeposits(VALIDATOR_COUNT), Constants.GENESIS_SLOT, randomEth1Data());
+    state.setSlot((currentEpoch + 1) * Constants.SLOTS_PER_EPOCH - 1);
+
+    long previous_epoch_start_slot = (currentEpoch - 1) * Constants.SLOTS_PER_EPOCH;
+    for (long slot = previous_epoch_start_slot; slot < state.getSlot(); slot++) {
+      state
+          .getLatest_block_roots()
+          .set(toIndex(slot % Constants.LATEST_BLOCK_ROOTS_LENGTH), Bytes32.random());
+    }
+
+    // Balances around the maximum effective balance, so that some effective balances change while
+    // rewards are applied
+    for (int index = 0; index < VALIDATOR_COUNT; index++) {
+      long offset = (random.nextInt(4_000) - 3_000) * 1_000_000L;
+      state.getValidator_balances().set(index, Constants.MAX_DEPOSIT_AMOUNT + offset);
+      if (random.nextInt(10) == 0) {
+        state.getValidator_registry().get(index).setSlashed(true);
+      }
+    }
+
+    for (long slot = previous_epoch_start_slot; slot < state.getSlot(); slot++) {
+      for (CrosslinkCommittee committee :
+          BeaconStateUtil.get_crosslink_committees_at_slot(state, slot)) {
+        // Two attestations per committee, so that some validators are included twice
+        for (int i = 0; i < 2; i++) {
+          state.getLatest_attestations().add(randomPendingAttestation(state, slot, committee));
+        }
+      }
+    }
+    return state;
+  }
+
+  private PendingAttestation randomPendingAttestation(
+      BeaconState state, long slot, CrosslinkCommittee committee) {
+    long epoch_start_slot =
+        BeaconStateUtil.get_epoch_start_slot(BeaconStateUtil.slot_to_epoch(slot));
+    Bytes32 beacon_block_root =
+        random.nextBoolean() ? BeaconStateUtil.get_block_root(state, slot) : Bytes32.random();
+    Bytes32 epoch_boundary_root =
+        random.nextInt(4) != 0
+            ? BeaconStateUtil.get_block_root(state, epoch_start_slot)
+            : Bytes32.random();
+    AttestationData data =
+        new AttestationData(
+            slot,
+            committee.getShard(),
+            beacon_block_root,
+            epoch_boundary_root,
+            random.nextBoolean() ? Bytes32.ZERO : Bytes32.random(),
+            state.getLatest_crosslinks().get(toIndex(committee.getShard())),
+            state.getJustified_epoch(),
+            Bytes32.ZERO);
+
+    byte[] aggregation_bitfield = new byte[(committee.getCommitteeSize() + 7) / 8];
+    for (int i = 0; i < committee.getCommitteeSize(); i++) {
+      if (random.nextInt(4) != 0) {
+        aggregation_bitfield[i / 8] |= (byte) (1 << (i % 8));
+      }
+    }
+    return new PendingAttestation(
+        Bytes.wrap(aggregation_bitfield),
+        data,
+        Bytes.wrap(new byte[aggregation_bitfield.length]),
+        slot + Constants.MIN_ATTESTATION_INCLUSION_DELAY + random.nextInt(4));
+  }
+
+  private static int toIndex(long value) {
+    return Math.toIntExact(value);
+  }
+
+  /**
+   * The per-validator implementation that {@link EpochRewards} replaced. Every reward and penalty
+   * is applied to the state as soon as it is computed.
+   */
+  private static void justificationAndFinalization(
+      BeaconState state, long previous_total_balance, EpochParticipation participation) {
+    long epochs_since_finality =
+        BeaconStateUtil.get_next_epoch(state) - state.getFinalized_epoch();
+    long current_epoch = BeaconStateUtil.get_current_epoch(state);
+    List<Long> balances = state.getValidator_balances();
+
+    if (epochs_since_finality <= 4L) {
+      for (BitSet attesters :
+          Arrays.asList(
+              participation.getPreviousEpochAttesters(),
+              participation.getPreviousEpochBoundaryAttesters(),
+              participation.getPreviousEpochHeadAttesters())) {
+        long previous_balance = EpochProcessorUtil.get_total_attesting_balance(state, attesters);
+        List<Integer> missing_indices =
+            IntStream.range(0, state.getValidator_registry().size())
+                .boxed()
+                .collect(Collectors.toList());
+        for (int index : indices(attesters)) {
+          long reward_delta =
+              EpochProcessorUtil.base_reward(state, index, previous_total_balance)
+                  * previous_balance
+                  / previous_total_balance;
+          EpochProcessorUtil.apply_penalty_or_reward(balances, index, reward_delta, true);
+          missing_indices.remove(missing_indices.indexOf(index));
+        }
+        for (int index : missing_indices) {
+          if (ValidatorsUtil.is_active_validator_index(state, index, current_epoch)) {
+            long reward_delta =
+                EpochProcessorUtil.base_reward(state, index, previous_total_balance)
+                    * previous_balance
+                    / previous_total_balance;
+            EpochProcessorUtil.apply_penalty_or_reward(balances, index, reward_delta, false);
+          }
+        }
+      }
+
+      for (int index : indices(participation.getPreviousEpochAttesters())) {
+        long reward_delta =
+            EpochProcessorUtil.base_reward(state, index, previous_total_balance)
+                * Constants.MIN_ATTESTATION_INCLUSION_DELAY
+                / participation.getInclusionDistance(index);
+        EpochProcessorUtil.apply_penalty_or_reward(balances, index, reward_delta, true);
+      }
+    } else {
+      for (BitSet attesters :
+          Arrays.asList(
+              participation.getPreviousEpochAttesters(),
+              participation.getPreviousEpochBoundaryAttesters())) {
+        for (int index : ValidatorsUtil.get_validators_not_present(indices(attesters))) {
+          if (ValidatorsUtil.is_active_validator_index(state, index, current_epoch)) {
+            long penalty =
+                inactivity_penalty(state, index, epochs_since_finality, previous_total_balance);
+            EpochProcessorUtil.apply_penalty_or_reward(balances, index, penalty, false);
+          }
+        }
+      }
+
+      for (int index :
+          ValidatorsUtil.get_validators_not_present(
+              indices(participation.getPreviousEpochHeadAttesters()))) {
+        if (ValidatorsUtil.is_active_validator_index(state, index, current_epoch)) {
+          EpochProcessorUtil.apply_penalty_or_reward(
+              balances,
+              index,
+              EpochProcessorUtil.base_reward(state, index, previous_total_balance),
+              false);
+        }
+      }
+
+      for (int index = 0; index < state.getValidator_registry().size(); index++) {
+        if (ValidatorsUtil.is_active_validator_index(state, index, current_epoch)
+            && state.getValidator_registry().get(index).isSlashed()) {
+          long penalty =
+              2L * inactivity_penalty(state, index, epochs_since_finality, previous_total_balance)
+                  + EpochProcessorUtil.base_reward(state, index, previous_total_balance);
+          EpochProcessorUtil.apply_penalty_or_reward(balances, index, penalty, false);
+        }
+      }
+
+      for (int index : indices(participation.getPreviousEpochHeadAttesters())) {
+        EpochProcessorUtil.apply_penalty_or_reward(
+            balances,
+            index,
+            EpochProcessorUtil.base_reward(state, index, previous_total_balance)
+                * Constants.MIN_ATTESTATION_INCLUSION_DELAY
+                / participation.getInclusionDistance(index),
+            false);
+      }
+    }
+  }
+
+  private static long inactivity_penalty(
+      BeaconState state, int index, long epochs_since_finality, long previous_total_balance) {
+    return EpochProcessorUtil.base_reward(state, index, previous_total_balance)
+        + BeaconStateUtil.get_effective_balance(state, index)
+            * epochs_since_finality
+            / Constants.INACTIVITY_PENALTY_QUOTIENT
+            / 2L;
+  }
+
+  private static List<Integer> indices(BitSet validators) {
+    return validators.stream().boxed().collect(Collectors.toList());
+  }
+}
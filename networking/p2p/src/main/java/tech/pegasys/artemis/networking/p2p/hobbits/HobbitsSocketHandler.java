@@ -14,6 +14,7 @@
 package tech.pegasys.artemis.networking.p2p.hobbits;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
 import java.time.Instant;
@@ -31,9 +32,12 @@ import org.apache.tuweni.plumtree.MessageSender;
 import org.apache.tuweni.plumtree.State;
 import org.apache.tuweni.units.bigints.UInt64;
 import tech.pegasys.artemis.data.TimeSeriesRecord;
-import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
-import tech.pegasys.artemis.datastructures.operations.Attestation;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlockView;
+import tech.pegasys.artemis.datastructures.operations.AttestationView;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
 import tech.pegasys.artemis.networking.p2p.hobbits.Codec.ProtocolType;
+import tech.pegasys.artemis.statetransition.HeadStateEvent;
 import tech.pegasys.artemis.util.alogger.ALogger;
 
 /** TCP persistent connection handler for hobbits messages. */
@@ -49,6 +53,8 @@ public final class HobbitsSocketHandler {
   private final Runnable handlerTermination;
   private final State p2pState;
   private final ConcurrentHashMap<String, Boolean> receivedMessages;
+  private volatile long headSlot = Constants.GENESIS_SLOT;
+  private volatile long finalizedSlot = Constants.GENESIS_SLOT;
 
   public HobbitsSocketHandler(
       EventBus eventBus,
@@ -157,15 +163,29 @@ public final class HobbitsSocketHandler {
       if (GossipMethod.GOSSIP.equals(gossipMessage.method())) {
         Bytes bytes = gossipMessage.body();
         String[] attributes = gossipMessage.getAttributes().split(",");
+        boolean relevant = false;
         if (attributes[0].equalsIgnoreCase("ATTESTATION")) {
-          this.eventBus.post(Attestation.fromBytes(bytes));
-          peer.setPeerGossip(bytes);
+          AttestationView attestation = AttestationView.wrap(bytes);
+          relevant = isRelevant(attestation);
+          if (relevant) {
+            this.eventBus.post(attestation.decode());
+          }
         } else if (attributes[0].equalsIgnoreCase("BLOCK")) {
-          this.eventBus.post(BeaconBlock.fromBytes(bytes));
+          BeaconBlockView block = BeaconBlockView.wrap(bytes);
+          relevant = isRelevant(block);
+          if (relevant) {
+            this.eventBus.post(block.decode());
+          }
+        }
+        // Dropped messages stay in receivedMessages, so a peer resending them is ignored above
+        if (relevant) {
           peer.setPeerGossip(bytes);
+          p2pState.receiveGossipMessage(
+              peer,
+              gossipMessage.getAttributes(),
+              gossipMessage.body(),
+              gossipMessage.messageHash());
         }
-        p2pState.receiveGossipMessage(
-            peer, gossipMessage.getAttributes(), gossipMessage.body(), gossipMessage.messageHash());
       } else if (GossipMethod.PRUNE.equals(gossipMessage.method())) {
         p2pState.receivePruneMessage(peer);
       } else if (GossipMethod.GRAFT.equals(gossipMessage.method())) {
@@ -176,6 +196,32 @@ public final class HobbitsSocketHandler {
     }
   }
 
+  /** Blocks at or before the finalized checkpoint can no longer change the chain. */
+  private boolean isRelevant(BeaconBlockView block) {
+    long slot = block.getSlot();
+    if (slot <= finalizedSlot) {
+      LOG.log(Level.DEBUG, "Dropping gossiped block from finalized slot " + slot);
+      return false;
+    }
+    return true;
+  }
+
+  /** Attestations older than an epoch can no longer be included in a block on top of the head. */
+  private boolean isRelevant(AttestationView attestation) {
+    long slot = attestation.getSlot();
+    if (slot + Constants.SLOTS_PER_EPOCH <= headSlot) {
+      LOG.log(Level.DEBUG, "Dropping gossiped attestation from stale slot " + slot);
+      return false;
+    }
+    return true;
+  }
+
+  @Subscribe
+  public void onNewHeadState(HeadStateEvent event) {
+    headSlot = event.getSlot();
+    finalizedSlot = BeaconStateUtil.get_epoch_start_slot(event.getFinalizedEpoch());
+  }
+
   private void sendReply(RPCMethod method, Object payload, long requestId) {
     sendBytes(RPCCodec.encode(method, payload, requestId));
   }
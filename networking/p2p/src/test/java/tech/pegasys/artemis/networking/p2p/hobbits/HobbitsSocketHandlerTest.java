@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.networking.p2p.hobbits;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import io.vertx.core.buffer.Buffer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.apache.tuweni.plumtree.EphemeralPeerRepository;
+import org.apache.tuweni.plumtree.MessageSender;
+import org.apache.tuweni.plumtree.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.artemis.data.TimeSeriesRecord;
+import tech.pegasys.artemis.datastructures.Constants;
+import tech.pegasys.artemis.datastructures.blocks.BeaconBlock;
+import tech.pegasys.artemis.datastructures.operations.Attestation;
+import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
+import tech.pegasys.artemis.datastructures.util.DataStructureUtil;
+import tech.pegasys.artemis.statetransition.HeadStateEvent;
+
+final class HobbitsSocketHandlerTest {
+
+  private final long finalizedEpoch = Constants.GENESIS_EPOCH + 2;
+  private final long finalizedSlot = BeaconStateUtil.get_epoch_start_slot(finalizedEpoch);
+  private final long headSlot = finalizedSlot + 3 * Constants.SLOTS_PER_EPOCH;
+
+  private final EventBus eventBus = new EventBus();
+  private final List<Object> posted = new ArrayList<>();
+  private final List<Bytes> relayed = new ArrayList<>();
+  private HobbitsSocketHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    State state =
+        new State(
+            new EphemeralPeerRepository(),
+            Hash::sha2_256,
+            (verb, attributes, peer, hash, bytes) -> {},
+            relayed::add,
+            (bytes, peer) -> true,
+            (peer) -> true,
+            200,
+            200);
+    handler =
+        new HobbitsSocketHandler(
+            eventBus,
+            "test",
+            new Peer(URI.create("hob+tcp://127.0.0.1:9000")),
+            new TimeSeriesRecord(),
+            (bytes) -> {},
+            () -> {},
+            state,
+            new ConcurrentHashMap<>());
+    eventBus.register(this);
+
+    BeaconStateWithCache headState = new BeaconStateWithCache();
+    headState.setSlot(headSlot);
+    headState.setFinalized_epoch(finalizedEpoch);
+    eventBus.post(new HeadStateEvent(headState, null));
+  }
+
+  @Subscribe
+  public void onBlock(BeaconBlock block) {
+    posted.add(block);
+  }
+
+  @Subscribe
+  public void onAttestation(Attestation attestation) {
+    posted.add(attestation);
+  }
+
+  @Test
+  void blocksUpToFinalizedSlotAreDropped() {
+    BeaconBlock finalized = DataStructureUtil.randomBeaconBlock(finalizedSlot);
+    BeaconBlock next = DataStructureUtil.randomBeaconBlock(finalizedSlot + 1);
+
+    gossip("BLOCK", finalized.toBytes());
+    gossip("BLOCK", next.toBytes());
+
+    assertEquals(1, posted.size());
+    assertEquals(next.getSlot(), ((BeaconBlock) posted.get(0)).getSlot());
+    assertEquals(1, relayed.size());
+    assertEquals(next.toBytes(), relayed.get(0));
+  }
+
+  @Test
+  void attestationsAnEpochBehindHeadAreDropped() {
+    Attestation stale = attestation(headSlot - Constants.SLOTS_PER_EPOCH);
+    Attestation recent = attestation(headSlot - Constants.SLOTS_PER_EPOCH + 1);
+
+    gossip("ATTESTATION", stale.toBytes());
+    gossip("ATTESTATION", recent.toBytes());
+
+    assertEquals(1, posted.size());
+    assertEquals(recent.getData().getSlot(), ((Attestation) posted.get(0)).getData().getSlot());
+    assertEquals(1, relayed.size());
+    assertEquals(recent.toBytes(), relayed.get(0));
+  }
+
+  @Test
+  void droppedMessagesAreNotProcessedAgain() {
+    Bytes32 hash = Bytes32.random();
+    Bytes stale = DataStructureUtil.randomBeaconBlock(finalizedSlot).toBytes();
+
+    gossip("BLOCK", hash, stale);
+    gossip("BLOCK", hash, stale);
+
+    assertTrue(posted.isEmpty());
+    assertTrue(relayed.isEmpty());
+  }
+
+  private static Attestation attestation(long slot) {
+    Attestation attestation = DataStructureUtil.randomAttestation();
+    attestation.getData().setSlot(slot);
+    return attestation;
+  }
+
+  private void gossip(String attributes, Bytes body) {
+    gossip(attributes, Bytes32.random(), body);
+  }
+
+  private void gossip(String attributes, Bytes32 hash, Bytes body) {
+    Bytes message =
+        GossipCodec.encode(MessageSender.Verb.GOSSIP, attributes, hash, Bytes32.random(), body);
+    handler.handleMessage(Buffer.buffer(message.toArrayUnsafe()));
+  }
+}
@@ -55,6 +55,7 @@ public class BeaconChainService implements ServiceInterface {
   @Override
   public void stop() {
     this.timer.stop();
+    this.stateProcessor.stop();
     this.eventBus.unregister(this);
   }
 
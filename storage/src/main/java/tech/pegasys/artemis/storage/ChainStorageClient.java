@@ -82,13 +82,22 @@ public class ChainStorageClient implements ChainStorage {
     // todo: post event to eventbus to notify the server that a new processed block has been added
   }
 
+  /**
+   * Remove calculated state from storage
+   *
+   * @param state_root
+   */
+  public void removeState(Bytes state_root) {
+    this.stateLookup.remove(state_root);
+  }
+
   /**
    * Add unprocessed block to storage
    *
    * @param block
    */
   public void addUnprocessedBlock(BeaconBlock block) {
-    ChainStorage.add(block, this.unprocessedBlocks);
+    ChainStorage.add(block.seal(), this.unprocessedBlocks);
   }
 
   /**
@@ -97,7 +106,7 @@ public class ChainStorageClient implements ChainStorage {
    * @param attestation
    */
   public void addUnprocessedAttestation(Attestation attestation) {
-    ChainStorage.add(attestation, unprocessedAttestations);
+    ChainStorage.add(attestation.seal(), unprocessedAttestations);
   }
 
   /**
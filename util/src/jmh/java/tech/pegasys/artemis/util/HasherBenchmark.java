@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.util;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares hashing two 32 byte nodes, as merkleization does, through Hash.keccak256 and through
+ * {@link Hasher}. Run with -prof gc to compare the allocation per hash, which is zero for the
+ * byte[] variant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HasherBenchmark {
+
+  private final Bytes32 left = Bytes32.random();
+  private final Bytes32 right = Bytes32.random();
+  private final byte[] leftBytes = left.toArray();
+  private final byte[] rightBytes = right.toArray();
+  private final byte[] out = new byte[Hasher.HASH_LENGTH];
+
+  @Setup
+  public void addProvider() {
+    Security.addProvider(new BouncyCastleProvider());
+  }
+
+  @Benchmark
+  public Bytes32 keccak256OfConcatenation() {
+    return Hash.keccak256(Bytes.concatenate(left, right));
+  }
+
+  @Benchmark
+  public Bytes32 hasherBytes() {
+    return Hasher.hash(left, right);
+  }
+
+  @Benchmark
+  public byte[] hasherArrays() {
+    Hasher.hash(leftBytes, rightBytes, out);
+    return out;
+  }
+}
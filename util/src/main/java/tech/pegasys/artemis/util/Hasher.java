@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.util;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.bouncycastle.crypto.digests.KeccakDigest;
+
+/**
+ * Keccak-256 hashing without per-call setup. Each thread keeps its own digest, so a hash neither
+ * looks up a digest nor concatenates its inputs, and the byte[] variants allocate nothing at all.
+ *
+ * <p>The results are the same as those of Hash.keccak256 on the concatenated inputs.
+ */
+public final class Hasher {
+
+  /** The length of a hash in bytes. */
+  public static final int HASH_LENGTH = 32;
+
+  private static final ThreadLocal<KeccakDigest> DIGESTS =
+      ThreadLocal.withInitial(() -> new KeccakDigest(256));
+
+  private Hasher() {}
+
+  /**
+   * Hashes the concatenation of two inputs.
+   *
+   * @param a - The first input.
+   * @param b - The second input.
+   * @param out - Receives the hash in its first {@link #HASH_LENGTH} bytes.
+   */
+  public static void hash(byte[] a, byte[] b, byte[] out) {
+    hash(a, 0, a.length, b, 0, b.length, out, 0);
+  }
+
+  /**
+   * Hashes the concatenation of two ranges of bytes.
+   *
+   * @param a - The array holding the first input.
+   * @param aOffset - The offset of the first input in its array.
+   * @param aLength - The length of the first input.
+   * @param b - The array holding the second input.
+   * @param bOffset - The offset of the second input in its array.
+   * @param bLength - The length of the second input.
+   * @param out - Receives the hash.
+   * @param outOffset - The offset in out to write the {@link #HASH_LENGTH} bytes of the hash at.
+   */
+  public static void hash(
+      byte[] a,
+      int aOffset,
+      int aLength,
+      byte[] b,
+      int bOffset,
+      int bLength,
+      byte[] out,
+      int outOffset) {
+    KeccakDigest digest = DIGESTS.get();
+    digest.update(a, aOffset, aLength);
+    digest.update(b, bOffset, bLength);
+    digest.doFinal(out, outOffset);
+  }
+
+  /**
+   * Hashes the concatenation of two inputs.
+   *
+   * @param a - The first input.
+   * @param b - The second input.
+   * @return The hash.
+   */
+  public static Bytes32 hash(Bytes a, Bytes b) {
+    byte[] out = new byte[HASH_LENGTH];
+    KeccakDigest digest = DIGESTS.get();
+    update(digest, a);
+    update(digest, b);
+    digest.doFinal(out, 0);
+    return Bytes32.wrap(out);
+  }
+
+  /**
+   * Hashes the concatenation of any number of inputs.
+   *
+   * @param inputs - The inputs, in order.
+   * @return The hash.
+   */
+  public static Bytes32 hash(Bytes... inputs) {
+    byte[] out = new byte[HASH_LENGTH];
+    KeccakDigest digest = DIGESTS.get();
+    for (Bytes input : inputs) {
+      update(digest, input);
+    }
+    digest.doFinal(out, 0);
+    return Bytes32.wrap(out);
+  }
+
+  private static void update(KeccakDigest digest, Bytes input) {
+    // Array-backed values such as hashes expose their array without copying it
+    byte[] bytes = input.toArrayUnsafe();
+    digest.update(bytes, 0, bytes.length);
+  }
+}
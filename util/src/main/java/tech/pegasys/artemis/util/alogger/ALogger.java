@@ -13,6 +13,7 @@
 
 package tech.pegasys.artemis.util.alogger;
 
+import java.util.function.Supplier;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,4 +39,23 @@ public class ALogger {
       this.logger.log(info, message);
     }
   }
+
+  /**
+   * Log a message that is only built if the given level is enabled. Use this for messages that are
+   * expensive to compute, e.g. ones that serialize or hash the state.
+   *
+   * @param level
+   * @param message
+   */
+  public void log(Level level, Supplier<String> message) {
+    if (this.logger.isEnabled(level)) {
+      this.logger.log(level, message.get());
+    }
+  }
+
+  public void log(Level level, Supplier<String> message, boolean printEnabled) {
+    if (printEnabled) {
+      log(level, message);
+    }
+  }
 }
@@ -54,6 +54,11 @@ public final class ArtemisConfiguration {
         9000,
         "Peer to peer advertised port",
         PropertyValidator.inRange(0, 65535));
+    builder.addInteger(
+        "node.epochProcessingParallelism",
+        1,
+        "Number of threads evaluating committees during epoch processing, 1 to disable",
+        PropertyValidator.inRange(1, 1024));
     builder.addInteger(
         "sim.numValidators",
         128,
@@ -67,6 +72,8 @@ public final class ArtemisConfiguration {
 
     builder.addBoolean("sim.enabled", false, "PoW simulation flag", null);
     builder.addString("sim.inputFile", "", "PoW simulation optional input file", null);
+    builder.addString(
+        "sim.genesisCacheDirectory", "", "Directory to cache the genesis state in", null);
     builder.addListOfString(
         "node.peers",
         Collections.emptyList(),
@@ -266,6 +273,11 @@ public final class ArtemisConfiguration {
     return config.getInteger("node.advertisedPort");
   }
 
+  /** @return the number of threads evaluating committees during epoch processing */
+  public int getEpochProcessingParallelism() {
+    return config.getInteger("node.epochProcessingParallelism");
+  }
+
   /** @return the network interface this node will bind to */
   public String getNetworkInterface() {
     return config.getString("node.networkInterface");
@@ -288,6 +300,13 @@ public final class ArtemisConfiguration {
     return inputFile;
   }
 
+  /** @return the directory to cache the genesis state in, or null to not cache it */
+  public Path getGenesisCacheDirectory() {
+    String directory = config.getString("sim.genesisCacheDirectory");
+    if (directory == null || directory.equals("")) return null;
+    return Paths.get(directory);
+  }
+
   /** @return if simulation is enabled or not */
   public boolean isSimulation() {
     return config.getBoolean("sim.enabled");
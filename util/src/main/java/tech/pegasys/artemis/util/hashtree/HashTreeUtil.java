@@ -13,14 +13,9 @@
 
 package tech.pegasys.artemis.util.hashtree;
 
-import static java.nio.ByteOrder.LITTLE_ENDIAN;
-
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
-import org.apache.tuweni.crypto.Hash;
 import org.apache.tuweni.ssz.SSZ;
 
 /** This class is a collection of tree hash root convenience methods */
@@ -60,45 +55,12 @@ public final class HashTreeUtil {
   }
 
   /**
-   * Hashes a list of homogeneous values.
+   * Hashes a list of homogeneous values. See {@link Merkleizer} for how the levels are hashed.
    *
    * @param values a list of homogeneous values
    * @return the merkle hash of the list of values
    */
   public static Bytes merkleHash(List<Bytes> values) {
-    Bytes littleEndianLength = Bytes.ofUnsignedInt(values.size(), LITTLE_ENDIAN);
-    Bytes32 valuesLength = Bytes32.rightPad(littleEndianLength);
-
-    List<Bytes> chunks;
-    if (values.isEmpty()) {
-      chunks = new ArrayList<>();
-      chunks.add(Bytes.wrap(new byte[128]));
-    } else if (values.get(0).size() < 128) {
-      int itemsPerChunk = (int) Math.floor(128 / (double) values.get(0).size());
-      chunks = new ArrayList<>();
-
-      for (int i = 0; i * itemsPerChunk < values.size(); i++) {
-        Bytes[] chunkItems =
-            values
-                .subList(i * itemsPerChunk, Math.min((i + 1) * itemsPerChunk, values.size()))
-                .toArray(new Bytes[0]);
-        chunks.add(Bytes.concatenate(chunkItems));
-      }
-    } else {
-      chunks = values;
-    }
-    while (chunks.size() > 1) {
-      if (chunks.size() % 2 == 1) {
-        chunks.add(Bytes.wrap(new byte[128]));
-      }
-      Iterator<Bytes> iterator = chunks.iterator();
-      List<Bytes> hashRound = new ArrayList<>();
-      while (iterator.hasNext()) {
-        hashRound.add(Hash.keccak256(Bytes.concatenate(iterator.next(), iterator.next())));
-      }
-      chunks = hashRound;
-    }
-
-    return Hash.keccak256(Bytes.concatenate(chunks.get(0), valuesLength));
+    return Merkleizer.merkleHash(values);
   }
 }
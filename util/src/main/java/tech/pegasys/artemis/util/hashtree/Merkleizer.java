@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.util.hashtree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.artemis.util.Hasher;
+
+/**
+ * Merkleizes lists into flat byte buffers. Each level of the tree is written back to back into a
+ * buffer that is reused for the levels above it. Levels with many nodes are split across the common
+ * fork-join pool, as the nodes of a level only depend on the level below.
+ */
+public final class Merkleizer {
+
+  private static final int CHUNK_SIZE = 128;
+  private static final byte[] ZERO_CHUNK = new byte[CHUNK_SIZE];
+  private static final int NODES_PER_TASK = 1 << 10;
+  private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+  private Merkleizer() {}
+
+  /**
+   * Hashes a list of homogeneous values as {@link HashTreeUtil#merkleHash(List)} describes: values
+   * shorter than a chunk are packed into 128 byte chunks, odd levels are padded with a zero chunk,
+   * and the root is hashed together with the length of the list.
+   *
+   * @param values - A list of homogeneous values.
+   * @return The merkle hash of the list of values.
+   */
+  public static Bytes32 merkleHash(List<? extends Bytes> values) {
+    byte[] length =
+        Bytes32.rightPad(Bytes.ofUnsignedInt(values.size(), LITTLE_ENDIAN)).toArrayUnsafe();
+    if (values.isEmpty()) {
+      byte[] root = new byte[Hasher.HASH_LENGTH];
+      Hasher.hash(ZERO_CHUNK, length, root);
+      return Bytes32.wrap(root);
+    }
+
+    // Lay the values out back to back, and find where each chunk starts
+    int itemSize = values.get(0).size();
+    int itemsPerChunk = itemSize == 0 ? values.size() : Math.max(1, CHUNK_SIZE / itemSize);
+    int chunkCount = (values.size() + itemsPerChunk - 1) / itemsPerChunk;
+    int[] chunkOffsets = new int[chunkCount + 1];
+    int totalSize = 0;
+    for (int i = 0; i < values.size(); i++) {
+      if (i % itemsPerChunk == 0) {
+        chunkOffsets[i / itemsPerChunk] = totalSize;
+      }
+      totalSize += values.get(i).size();
+    }
+    chunkOffsets[chunkCount] = totalSize;
+    byte[] leaves = new byte[totalSize];
+    int offset = 0;
+    for (Bytes value : values) {
+      byte[] bytes = value.toArrayUnsafe();
+      System.arraycopy(bytes, 0, leaves, offset, bytes.length);
+      offset += bytes.length;
+    }
+
+    byte[] root = new byte[Hasher.HASH_LENGTH];
+    if (chunkCount == 1) {
+      Hasher.hash(leaves, 0, leaves.length, length, 0, length.length, root, 0);
+      return Bytes32.wrap(root);
+    }
+
+    // The levels above the leaves alternate between two buffers
+    int count = (chunkCount + 1) / 2;
+    byte[] level = new byte[count * Hasher.HASH_LENGTH];
+    hashLevel(leaves, chunkOffsets, chunkCount, level);
+    byte[] next = new byte[((count + 1) / 2) * Hasher.HASH_LENGTH];
+    while (count > 1) {
+      hashLevel(level, null, count, next);
+      count = (count + 1) / 2;
+      byte[] hashed = next;
+      next = level;
+      level = hashed;
+    }
+    Hasher.hash(level, 0, Hasher.HASH_LENGTH, length, 0, length.length, root, 0);
+    return Bytes32.wrap(root);
+  }
+
+  /**
+   * Computes the merkle root of {@code BeaconStateUtil.merkle_root}, where node i of the tree is
+   * the hash of nodes 2i and 2i + 1 and the leaves are nodes n to 2n - 1. The tree is kept in a
+   * single buffer and filled in place, one power of two range of nodes at a time.
+   *
+   * @param leaves - The leaves, which are not hashed themselves.
+   * @return The root of the tree.
+   */
+  public static Bytes32 merkleRoot(List<Bytes32> leaves) {
+    int n = leaves.size();
+    checkArgument(n > 0, "Cannot compute the merkle root of an empty list");
+    byte[] tree = new byte[2 * n * Hasher.HASH_LENGTH];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(
+          leaves.get(i).toArrayUnsafe(), 0, tree, (n + i) * Hasher.HASH_LENGTH, Hasher.HASH_LENGTH);
+    }
+
+    // The children of the nodes in [2^k, 2^(k+1)) are all at 2^(k+1) or above
+    int to = n;
+    while (to > 1) {
+      int from = Integer.highestOneBit(to - 1);
+      int rangeFrom = from;
+      int rangeTo = to;
+      if (to - from >= PARALLEL_THRESHOLD) {
+        int tasks = (to - from + NODES_PER_TASK - 1) / NODES_PER_TASK;
+        IntStream.range(0, tasks)
+            .parallel()
+            .forEach(
+                task ->
+                    hashNodes(
+                        tree,
+                        rangeFrom + task * NODES_PER_TASK,
+                        Math.min(rangeTo, rangeFrom + (task + 1) * NODES_PER_TASK)));
+      } else {
+        hashNodes(tree, from, to);
+      }
+      to = from;
+    }
+    return Bytes32.wrap(tree, Hasher.HASH_LENGTH);
+  }
+
+  private static void hashNodes(byte[] tree, int from, int to) {
+    for (int i = from; i < to; i++) {
+      Hasher.hash(
+          tree,
+          2 * i * Hasher.HASH_LENGTH,
+          Hasher.HASH_LENGTH,
+          tree,
+          (2 * i + 1) * Hasher.HASH_LENGTH,
+          Hasher.HASH_LENGTH,
+          tree,
+          i * Hasher.HASH_LENGTH);
+    }
+  }
+
+  /**
+   * Hashes the nodes of a level in pairs into the level above it.
+   *
+   * @param in - The nodes of the level.
+   * @param offsets - Where each node starts in the buffer, or null if the nodes are hashes.
+   * @param count - The number of nodes in the level.
+   * @param out - Receives the hashes of the pairs.
+   */
+  private static void hashLevel(byte[] in, int[] offsets, int count, byte[] out) {
+    int pairs = (count + 1) / 2;
+    if (pairs >= PARALLEL_THRESHOLD) {
+      int tasks = (pairs + NODES_PER_TASK - 1) / NODES_PER_TASK;
+      IntStream.range(0, tasks)
+          .parallel()
+          .forEach(
+              task ->
+                  hashPairs(
+                      in,
+                      offsets,
+                      count,
+                      out,
+                      task * NODES_PER_TASK,
+                      Math.min(pairs, (task + 1) * NODES_PER_TASK)));
+    } else {
+      hashPairs(in, offsets, count, out, 0, pairs);
+    }
+  }
+
+  private static void hashPairs(byte[] in, int[] offsets, int count, byte[] out, int from, int to) {
+    for (int pair = from; pair < to; pair++) {
+      int left = 2 * pair;
+      int right = left + 1;
+      int outOffset = pair * Hasher.HASH_LENGTH;
+      int leftOffset = offset(offsets, left);
+      int leftLength = offset(offsets, right) - leftOffset;
+      if (right < count) {
+        int rightOffset = offset(offsets, right);
+        int rightLength = offset(offsets, right + 1) - rightOffset;
+        Hasher.hash(in, leftOffset, leftLength, in, rightOffset, rightLength, out, outOffset);
+      } else {
+        // An odd level is padded with a zero chunk
+        Hasher.hash(in, leftOffset, leftLength, ZERO_CHUNK, 0, CHUNK_SIZE, out, outOffset);
+      }
+    }
+  }
+
+  private static int offset(int[] offsets, int node) {
+    return offsets == null ? node * Hasher.HASH_LENGTH : offsets[node];
+  }
+}
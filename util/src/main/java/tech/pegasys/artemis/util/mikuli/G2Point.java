@@ -18,15 +18,14 @@ import static tech.pegasys.artemis.util.mikuli.Util.calculateYFlag;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.security.SecureRandom;
-import java.security.Security;
+import java.util.Arrays;
 import java.util.Objects;
 import org.apache.milagro.amcl.BLS381.BIG;
 import org.apache.milagro.amcl.BLS381.ECP2;
 import org.apache.milagro.amcl.BLS381.FP2;
 import org.apache.milagro.amcl.BLS381.ROM;
 import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.crypto.Hash;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import tech.pegasys.artemis.util.Hasher;
 
 /**
  * G2 is the subgroup of elliptic curve similar to G1 and the points are identical except for where
@@ -64,22 +63,17 @@ public final class G2Point implements Group<G2Point> {
    * @return a point from the G2 group representing the message hash
    */
   public static G2Point hashToG2(Bytes message, long domain) {
-    Security.addProvider(new BouncyCastleProvider());
-    Bytes domainBytes = Bytes.ofUnsignedLong(domain);
-    Bytes padding = Bytes.wrap(new byte[16]);
-
-    byte[] xReBytes =
-        Bytes.concatenate(
-                padding,
-                Hash.keccak256(
-                    Bytes.concatenate(message, domainBytes, Bytes.fromHexString("0x01"))))
-            .toArray();
-    byte[] xImBytes =
-        Bytes.concatenate(
-                padding,
-                Hash.keccak256(
-                    Bytes.concatenate(message, domainBytes, Bytes.fromHexString("0x02"))))
-            .toArray();
+    byte[] messageBytes = message.toArrayUnsafe();
+    // The domain, big endian, followed by the index of the coordinate
+    byte[] suffix = Arrays.copyOf(Bytes.ofUnsignedLong(domain).toArrayUnsafe(), Long.BYTES + 1);
+
+    // Each coordinate is a hash, left padded with 16 zero bytes
+    byte[] xReBytes = new byte[16 + Hasher.HASH_LENGTH];
+    suffix[Long.BYTES] = 0x01;
+    Hasher.hash(messageBytes, 0, messageBytes.length, suffix, 0, suffix.length, xReBytes, 16);
+    byte[] xImBytes = new byte[16 + Hasher.HASH_LENGTH];
+    suffix[Long.BYTES] = 0x02;
+    Hasher.hash(messageBytes, 0, messageBytes.length, suffix, 0, suffix.length, xImBytes, 16);
 
     BIG xRe = BIG.fromBytes(xReBytes);
     BIG xIm = BIG.fromBytes(xImBytes);
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(BouncyCastleExtension.class)
+class HasherTest {
+
+  private final Bytes a = Bytes.random(128);
+  private final Bytes b = Bytes.random(45);
+  private final Bytes32 expected = Hash.keccak256(Bytes.concatenate(a, b));
+
+  @Test
+  void hashesTheConcatenationOfArrays() {
+    byte[] out = new byte[Hasher.HASH_LENGTH];
+    Hasher.hash(a.toArray(), b.toArray(), out);
+    assertThat(Bytes32.wrap(out)).isEqualTo(expected);
+
+    // The digest is reset after each hash
+    Arrays.fill(out, (byte) 0);
+    Hasher.hash(a.toArray(), b.toArray(), out);
+    assertThat(Bytes32.wrap(out)).isEqualTo(expected);
+  }
+
+  @Test
+  void hashesRangesIntoAnOffset() {
+    byte[] input = Bytes.concatenate(Bytes.random(3), a, b, Bytes.random(7)).toArray();
+    byte[] out = new byte[Hasher.HASH_LENGTH + 5];
+    Hasher.hash(input, 3, a.size(), input, 3 + a.size(), b.size(), out, 5);
+    assertThat(Bytes.wrap(out, 5, Hasher.HASH_LENGTH)).isEqualTo(expected);
+    assertThat(Bytes.wrap(out, 0, 5)).isEqualTo(Bytes.wrap(new byte[5]));
+  }
+
+  @Test
+  void hashesBytes() {
+    assertThat(Hasher.hash(a, b)).isEqualTo(expected);
+    assertThat(Hasher.hash(a.slice(0, 100), a.slice(100), b)).isEqualTo(expected);
+    assertThat(Hasher.hash(a)).isEqualTo(Hash.keccak256(a));
+  }
+}
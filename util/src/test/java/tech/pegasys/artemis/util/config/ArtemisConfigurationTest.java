@@ -39,6 +39,15 @@ final class ArtemisConfigurationTest {
             ArtemisConfiguration.fromString("node.identity=\"2345\"\nnode.advertisedPort=100000"));
   }
 
+  @Test
+  void invalidEpochProcessingParallelism() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            ArtemisConfiguration.fromString(
+                "node.identity=\"2345\"\nnode.epochProcessingParallelism=0"));
+  }
+
   @Test
   void validPeer() {
     ArtemisConfiguration.fromString(
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.pegasys.artemis.util.hashtree;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.apache.tuweni.junit.BouncyCastleExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(BouncyCastleExtension.class)
+class MerkleizerTest {
+
+  @Test
+  void merkleHashMatchesHashingEachLevel() {
+    for (int size : new int[] {8, 32, 100, 128, 200}) {
+      for (int count : new int[] {0, 1, 2, 3, 5, 16, 17, 1000, 20001}) {
+        List<Bytes> values = randomValues(size, size > 128 ? count % 100 : count);
+        assertThat(Merkleizer.merkleHash(values)).isEqualTo(referenceMerkleHash(values));
+      }
+    }
+  }
+
+  @Test
+  void merkleRootMatchesHashingEachNode() {
+    for (int count : new int[] {1, 2, 3, 13, 8192, 10000}) {
+      List<Bytes32> leaves = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        leaves.add(Bytes32.random());
+      }
+      assertThat(Merkleizer.merkleRoot(leaves)).isEqualTo(referenceMerkleRoot(leaves));
+    }
+  }
+
+  private static List<Bytes> randomValues(int size, int count) {
+    List<Bytes> values = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      values.add(Bytes.random(size));
+    }
+    return values;
+  }
+
+  private static Bytes referenceMerkleHash(List<Bytes> values) {
+    List<Bytes> chunks = new ArrayList<>();
+    if (values.isEmpty()) {
+      chunks.add(Bytes.wrap(new byte[128]));
+    } else {
+      int itemsPerChunk = Math.max(1, 128 / values.get(0).size());
+      for (int i = 0; i < values.size(); i += itemsPerChunk) {
+        chunks.add(
+            Bytes.concatenate(
+                values
+                    .subList(i, Math.min(i + itemsPerChunk, values.size()))
+                    .toArray(new Bytes[0])));
+      }
+    }
+    while (chunks.size() > 1) {
+      if (chunks.size() % 2 == 1) {
+        chunks.add(Bytes.wrap(new byte[128]));
+      }
+      List<Bytes> level = new ArrayList<>();
+      for (int i = 0; i < chunks.size(); i += 2) {
+        level.add(Hash.keccak256(Bytes.concatenate(chunks.get(i), chunks.get(i + 1))));
+      }
+      chunks = level;
+    }
+    Bytes32 length = Bytes32.rightPad(Bytes.ofUnsignedInt(values.size(), LITTLE_ENDIAN));
+    return Hash.keccak256(Bytes.concatenate(chunks.get(0), length));
+  }
+
+  private static Bytes32 referenceMerkleRoot(List<Bytes32> leaves) {
+    Bytes32[] nodes = new Bytes32[leaves.size() * 2];
+    for (int i = 0; i < leaves.size(); i++) {
+      nodes[leaves.size() + i] = leaves.get(i);
+    }
+    for (int i = leaves.size() - 1; i > 0; i--) {
+      nodes[i] = Hash.keccak256(Bytes.concatenate(nodes[2 * i], nodes[2 * i + 1]));
+    }
+    return nodes[1];
+  }
+}
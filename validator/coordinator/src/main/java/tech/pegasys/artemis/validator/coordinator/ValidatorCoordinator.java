@@ -34,9 +34,11 @@ import tech.pegasys.artemis.datastructures.operations.Attestation;
 import tech.pegasys.artemis.datastructures.operations.Deposit;
 import tech.pegasys.artemis.datastructures.state.BeaconState;
 import tech.pegasys.artemis.datastructures.state.BeaconStateWithCache;
+import tech.pegasys.artemis.datastructures.state.StateJournal;
 import tech.pegasys.artemis.datastructures.util.AttestationUtil;
 import tech.pegasys.artemis.datastructures.util.BeaconStateUtil;
 import tech.pegasys.artemis.datastructures.util.DataStructureUtil;
+import tech.pegasys.artemis.datastructures.util.GenesisStateBuilder;
 import tech.pegasys.artemis.services.ServiceConfig;
 import tech.pegasys.artemis.statetransition.HeadStateEvent;
 import tech.pegasys.artemis.statetransition.StateTransition;
@@ -75,15 +77,22 @@ public class ValidatorCoordinator {
 
     initializeValidators();
 
-    stateTransition = new StateTransition(printEnabled);
+    stateTransition =
+        new StateTransition(printEnabled, config.getConfig().getEpochProcessingParallelism());
     BeaconStateWithCache initialBeaconState =
-        DataStructureUtil.createInitialBeaconState(numValidators);
+        GenesisStateBuilder.get_genesis_state(
+            numValidators, config.getConfig().getGenesisCacheDirectory());
     Bytes32 initialStateRoot = HashTreeUtil.hash_tree_root(initialBeaconState.toBytes());
     BeaconBlock genesisBlock = BeaconBlock.createGenesis(initialStateRoot);
 
     createBlockIfNecessary(initialBeaconState, genesisBlock);
   }
 
+  public void stop() {
+    this.eventBus.unregister(this);
+    stateTransition.close();
+  }
+
   @Subscribe
   public void onNewSlot(Date date) {
     if (validatorBlock != null) {
@@ -111,10 +120,9 @@ public class ValidatorCoordinator {
         attestationsQueue.removeIf(attestation -> attestation.equals(blockAttestation));
       }
     }
-    // Copy state so that state transition during block creation does not manipulate headState in
-    // storage
-    BeaconStateWithCache newHeadState = BeaconStateWithCache.deepCopy(headState);
-    createBlockIfNecessary(newHeadState, headBlock);
+    // The event carries its own copy of the head state, which block creation applies its block to
+    // in place and then rolls back
+    createBlockIfNecessary(headState, headBlock);
   }
 
   @Subscribe
@@ -157,13 +165,14 @@ public class ValidatorCoordinator {
         BeaconStateUtil.get_beacon_proposer_index(headState, headState.getSlot() + 1);
     BLSPublicKey proposerPubkey = headState.getValidator_registry().get(proposerIndex).getPubkey();
     if (validatorSet.containsKey(proposerPubkey)) {
-      Bytes32 blockRoot = HashTreeUtil.hash_tree_root(headBlock.toBytes());
+      Bytes32 blockRoot = headBlock.hashTreeRoot();
       createNewBlock(headState, blockRoot, validatorSet.get(proposerPubkey));
     }
   }
 
   private void createNewBlock(
       BeaconStateWithCache headState, Bytes32 blockRoot, BLSKeyPair keypair) {
+    StateJournal journal = headState.startJournal();
     try {
       List<Attestation> current_attestations;
       final Bytes32 MockStateRoot = Bytes32.ZERO;
@@ -185,6 +194,8 @@ public class ValidatorCoordinator {
             DataStructureUtil.newBeaconBlock(
                 headState.getSlot() + 1, blockRoot, MockStateRoot, newDeposits, new ArrayList<>());
       }
+      // Sealed up front so the body is encoded and hashed once across the transition and signing
+      block.seal();
 
       BLSSignature epoch_signature = setEpochSignature(headState, keypair);
       block.setRandao_reveal(epoch_signature);
@@ -209,6 +220,8 @@ public class ValidatorCoordinator {
       LOG.log(Level.INFO, "End ValidatorCoordinator", printEnabled);
     } catch (StateTransitionException e) {
       LOG.log(Level.WARN, e.toString(), printEnabled);
+    } finally {
+      journal.rollback();
     }
   }
 
@@ -224,7 +237,8 @@ public class ValidatorCoordinator {
     Bytes32 messageHash = HashTreeUtil.hash_tree_root(BeaconStateUtil.int_to_bytes(epoch, 8));
     LOG.log(Level.INFO, "Sign Epoch", printEnabled);
     LOG.log(Level.INFO, "Proposer pubkey: " + keypair.getPublicKey(), printEnabled);
-    LOG.log(Level.INFO, "state: " + HashTreeUtil.hash_tree_root(state.toBytes()), printEnabled);
+    LOG.log(
+        Level.INFO, () -> "state: " + HashTreeUtil.hash_tree_root(state.toBytes()), printEnabled);
     LOG.log(Level.INFO, "slot: " + slot, printEnabled);
     LOG.log(Level.INFO, "domain: " + domain, printEnabled);
     return BLSSignature.sign(keypair, messageHash, domain);
@@ -249,7 +263,8 @@ public class ValidatorCoordinator {
     BLSSignature signature = BLSSignature.sign(keypair, proposalRoot, domain);
     LOG.log(Level.INFO, "Sign Proposal", printEnabled);
     LOG.log(Level.INFO, "Proposer pubkey: " + keypair.getPublicKey(), printEnabled);
-    LOG.log(Level.INFO, "state: " + HashTreeUtil.hash_tree_root(state.toBytes()), printEnabled);
+    LOG.log(
+        Level.INFO, () -> "state: " + HashTreeUtil.hash_tree_root(state.toBytes()), printEnabled);
     LOG.log(Level.INFO, "proposal root: " + proposalRoot.toHexString(), printEnabled);
     LOG.log(Level.INFO, "block signature: " + signature.toString(), printEnabled);
     LOG.log(Level.INFO, "slot: " + state.getSlot(), printEnabled);